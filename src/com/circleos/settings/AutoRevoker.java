@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.circleos.PermissionUsageRecord;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageInfo;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Slog;
+
+import com.circleos.settings.privacy.PrivacyDashboardData;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Client-driven auto-revoke: finds Circle OS grants an app has not used
+ * in {@link #UNUSED_THRESHOLD_MS} and clears them, one package chunk at a time.
+ *
+ * Only grants whose use the privacy service logs by name are judged here:
+ * network and sensors (see {@link CirclePermissions}). Contacts and storage
+ * have no logged name, and lobby-mode apps follow the service's own rules,
+ * so a completed pass ends with one
+ * {@link ICirclePrivacyManager#revokeUnusedPermissions} call that leaves
+ * those to the service.
+ *
+ * Packages are visited in name order. Each revocation is appended to the
+ * report file as soon as it is written. After each chunk of
+ * {@link #CHUNK_SIZE} the last finished package is committed as a cursor,
+ * together with the report's counters, so a stopped job resumes where it
+ * left off. A package revoked after the cursor is judged again on resume,
+ * finds nothing left to revoke, and is not reported twice. The cursor is
+ * cleared when a pass completes.
+ *
+ * {@link #preview} is the dry-run: same selection, no writes, no cursor.
+ */
+public final class AutoRevoker {
+
+    private static final String TAG = "CircleAutoRevoke";
+
+    static final long UNUSED_THRESHOLD_MS = 90L * 24 * 60 * 60 * 1000;
+    static final int  CHUNK_SIZE = 25;
+
+    private static final String PREF         = "circle_auto_revoke";
+    private static final String KEY_CURSOR   = "cursor";
+    private static final String KEY_STARTED  = "started_at";
+    private static final String KEY_FINISHED = "finished_at";
+    private static final String KEY_ACTIVE   = "active_ms";
+    private static final String KEY_SCANNED  = "scanned";
+    /** One JSON {@link Candidate} per line, appended as each write happens. */
+    private static final String REVOKED_FILE = "auto_revoke_revoked.jsonl";
+
+    /** Lets the caller abort between packages. */
+    public interface StopSignal {
+        void check() throws InterruptedException;
+    }
+
+    /** One app and the grants it has not used. */
+    public static final class Candidate {
+        public final String       packageName;
+        public final List<String> permissions;
+
+        Candidate(String packageName, List<String> permissions) {
+            this.packageName = packageName;
+            this.permissions = permissions;
+        }
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("package", packageName)
+                    .put("permissions", new JSONArray(permissions));
+        }
+
+        static Candidate fromJson(JSONObject o) throws JSONException {
+            JSONArray perms = o.getJSONArray("permissions");
+            List<String> list = new ArrayList<>(perms.length());
+            for (int j = 0; j < perms.length(); j++) list.add(perms.getString(j));
+            return new Candidate(o.getString("package"), list);
+        }
+    }
+
+    /** Outcome of one revocation pass (possibly spanning several job runs). */
+    public static final class Report {
+        public long startedAt;
+        public long finishedAt;        // 0 while the pass is still in progress
+        public long activeMs;          // time spent working, summed across resumes
+        public int  packagesScanned;
+        public final List<Candidate> revoked = new ArrayList<>();
+
+        public boolean isComplete() {
+            return finishedAt != 0;
+        }
+
+        public int permissionCount() {
+            int n = 0;
+            for (Candidate c : revoked) n += c.permissions.size();
+            return n;
+        }
+    }
+
+    private final Context               mContext;
+    private final ICirclePrivacyManager mManager;
+
+    public AutoRevoker(Context context, ICirclePrivacyManager manager) {
+        mContext = context.getApplicationContext();
+        mManager = manager;
+    }
+
+    /** Dry run: every current candidate, without writing anything. */
+    public List<Candidate> preview(StopSignal stop) throws RemoteException, InterruptedException {
+        long now = System.currentTimeMillis();
+        List<Candidate> out = new ArrayList<>();
+        for (PackageInfo pkg : eligiblePackages(now)) {
+            stop.check();
+            Candidate c = evaluate(pkg.packageName, mManager.getPolicy(pkg.packageName), now);
+            if (c != null) out.add(c);
+        }
+        return out;
+    }
+
+    /**
+     * Runs (or resumes) a revocation pass. Throws if stopped or if the
+     * service fails; progress up to the last finished chunk is kept.
+     */
+    public Report run(StopSignal stop) throws RemoteException, InterruptedException {
+        SharedPreferences prefs = mContext.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        String cursor = prefs.getString(KEY_CURSOR, null);
+        Report report = cursor != null ? loadReport(mContext) : null;
+        if (report == null || report.isComplete()) {
+            report = new Report();
+            report.startedAt = System.currentTimeMillis();
+            cursor = null;
+            revokedFile(mContext).delete();
+            saveCounters(prefs.edit(), report).commit();
+        } else {
+            Slog.i(TAG, "Resuming auto-revoke after " + cursor);
+        }
+
+        long now = System.currentTimeMillis();
+        List<PackageInfo> packages = eligiblePackages(now);
+        int i = 0;
+        while (i < packages.size() && cursor != null
+                && packages.get(i).packageName.compareTo(cursor) <= 0) {
+            i++;
+        }
+
+        while (i < packages.size()) {
+            long chunkStart = SystemClock.elapsedRealtime();
+            int end = Math.min(i + CHUNK_SIZE, packages.size());
+            for (; i < end; i++) {
+                stop.check();
+                String pkg = packages.get(i).packageName;
+                AppPrivacyPolicy policy = mManager.getPolicy(pkg);
+                Candidate c = evaluate(pkg, policy, now);
+                report.packagesScanned++;
+                if (c != null) {
+                    revoke(policy, c.permissions);
+                    mManager.setPolicy(pkg, policy);
+                    PrivacyDashboardData.get().markStale(pkg);
+                    report.revoked.add(c);
+                    appendRevoked(c);
+                }
+            }
+            checkpoint(prefs, report, packages.get(end - 1).packageName, chunkStart);
+        }
+
+        // Grants the log cannot show, and lobby-mode apps, follow the service's rules
+        stop.check();
+        mManager.revokeUnusedPermissions();
+        PrivacyDashboardData.get().invalidateAll();
+
+        report.finishedAt = System.currentTimeMillis();
+        saveCounters(prefs.edit(), report).remove(KEY_CURSOR).commit();
+        Slog.i(TAG, "Auto-revoke pass: " + report.permissionCount() + " grants from "
+                + report.revoked.size() + " of " + report.packagesScanned + " apps in "
+                + report.activeMs + " ms");
+        return report;
+    }
+
+    /** Commits the report counters and the cursor in one write, once per chunk. */
+    private static void checkpoint(SharedPreferences prefs, Report report, String lastDone,
+            long since) {
+        report.activeMs += SystemClock.elapsedRealtime() - since;
+        saveCounters(prefs.edit(), report).putString(KEY_CURSOR, lastDone).commit();
+    }
+
+    private static SharedPreferences.Editor saveCounters(SharedPreferences.Editor edit,
+            Report report) {
+        return edit.putLong(KEY_STARTED, report.startedAt)
+                .putLong(KEY_FINISHED, report.finishedAt)
+                .putLong(KEY_ACTIVE, report.activeMs)
+                .putInt(KEY_SCANNED, report.packagesScanned);
+    }
+
+    /** The last saved report, complete or in progress; null if none. */
+    public static Report loadReport(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        if (!prefs.contains(KEY_STARTED)) return null;
+        Report r = new Report();
+        r.startedAt       = prefs.getLong(KEY_STARTED, 0);
+        r.finishedAt      = prefs.getLong(KEY_FINISHED, 0);
+        r.activeMs        = prefs.getLong(KEY_ACTIVE, 0);
+        r.packagesScanned = prefs.getInt(KEY_SCANNED, 0);
+
+        File file = revokedFile(context);
+        if (!file.exists()) return r;
+        CircleTrace.begin("file loadAutoRevokeReport");
+        try (BufferedReader in = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.isEmpty()) continue;
+                try {
+                    r.revoked.add(Candidate.fromJson(new JSONObject(line)));
+                } catch (JSONException e) {
+                    Slog.w(TAG, "Skipping torn auto-revoke report line");
+                }
+            }
+        } catch (IOException e) {
+            Slog.w(TAG, "Unreadable auto-revoke report", e);
+        } finally {
+            CircleTrace.end();
+        }
+        return r;
+    }
+
+    /**
+     * Appends one revocation to the report file and syncs it. Each record
+     * starts with a newline, so a line torn by a crash stays on its own
+     * and is skipped by {@link #loadReport}.
+     */
+    private void appendRevoked(Candidate c) {
+        CircleTrace.begin("file appendAutoRevokeReport");
+        try (FileOutputStream out = new FileOutputStream(revokedFile(mContext), true)) {
+            out.write(("\n" + c.toJson()).getBytes(StandardCharsets.UTF_8));
+            out.getFD().sync();
+        } catch (IOException | JSONException e) {
+            Slog.w(TAG, "Failed to record revocation for " + c.packageName, e);
+        } finally {
+            CircleTrace.end();
+        }
+    }
+
+    private static File revokedFile(Context context) {
+        return new File(context.getFilesDir(), REVOKED_FILE);
+    }
+
+    /** User apps old enough to have had 90 days to use their grants, sorted by name. */
+    private List<PackageInfo> eligiblePackages(long now) {
+        List<PackageInfo> out = new ArrayList<>();
+        for (PackageInfo pkg : mContext.getPackageManager().getInstalledPackages(0)) {
+            if (!DefaultPolicies.isUserApp(pkg.applicationInfo)) continue;
+            if (now - pkg.firstInstallTime < UNUSED_THRESHOLD_MS) continue;
+            out.add(pkg);
+        }
+        out.sort((a, b) -> a.packageName.compareTo(b.packageName));
+        return out;
+    }
+
+    /**
+     * Returns the named grants in {@code policy} with no usage in the window,
+     * or null. Lobby-mode apps are left to the service.
+     */
+    private Candidate evaluate(String pkg, AppPrivacyPolicy policy, long now)
+            throws RemoteException {
+        if (policy == null || policy.lobbyMode) return null;
+        List<String> granted = CirclePermissions.namedGrants(policy);
+        if (granted.isEmpty()) return null;
+
+        Set<String> used = new HashSet<>();
+        List<PermissionUsageRecord> records = mManager.getUsageLog(pkg, now - UNUSED_THRESHOLD_MS);
+        if (records != null) {
+            for (PermissionUsageRecord r : records) used.add(r.permission);
+        }
+        granted.removeAll(used);
+        return granted.isEmpty() ? null : new Candidate(pkg, granted);
+    }
+
+    private static void revoke(AppPrivacyPolicy policy, List<String> permissions) {
+        for (String perm : permissions) {
+            if (CirclePermissions.NETWORK.equals(perm)) policy.networkAllowed = false;
+            else policy.allowedSensors.remove(CirclePermissions.sensorOf(perm));
+        }
+    }
+}
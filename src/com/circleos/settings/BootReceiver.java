@@ -13,7 +13,10 @@ import android.util.Slog;
 /**
  * Triggered on BOOT_COMPLETED to:
  *   1. Show setup wizard if this is the first boot.
- *   2. Schedule the threat intel update job.
+ *   2. Schedule the auto-revoke and threat intel jobs.
+ *
+ * Both are deferrable {@link BootTaskScheduler} tasks, so nothing here
+ * touches disk or JobScheduler on the main thread during the boot rush.
  */
 public class BootReceiver extends BroadcastReceiver {
 
@@ -27,17 +30,38 @@ public class BootReceiver extends BroadcastReceiver {
 
         Slog.i(TAG, "BOOT_COMPLETED received");
 
-        // Schedule recurring jobs
-        ThreatIntelUpdater.schedule(context);
-
-        // Launch setup wizard on first boot
-        boolean wizardDone = context.getSharedPreferences(PREF, Context.MODE_PRIVATE)
-                .getBoolean(KEY_DONE, false);
-        if (!wizardDone) {
-            Intent wizard = new Intent(context, SetupWizardActivity.class);
-            wizard.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-            context.startActivity(wizard);
-            Slog.i(TAG, "Launched setup wizard (first boot)");
+        new BootTaskScheduler()
+                .add(new ScheduleJobsTask())
+                .add(new SetupWizardTask())
+                .run(context, goAsync());
+    }
+
+    /** Schedule recurring jobs that are missing or out of date. */
+    private static final class ScheduleJobsTask implements BootTaskScheduler.Task {
+        @Override public String name() { return "schedule_jobs"; }
+        @Override public boolean isCritical() { return false; }
+
+        @Override
+        public void run(Context context) {
+            CircleJobs.ensureScheduled(context);
+        }
+    }
+
+    /** Launch setup wizard on first boot. */
+    private static final class SetupWizardTask implements BootTaskScheduler.Task {
+        @Override public String name() { return "setup_wizard"; }
+        @Override public boolean isCritical() { return false; }
+
+        @Override
+        public void run(Context context) {
+            boolean wizardDone = context.getSharedPreferences(PREF, Context.MODE_PRIVATE)
+                    .getBoolean(KEY_DONE, false);
+            if (!wizardDone) {
+                Intent wizard = new Intent(context, SetupWizardActivity.class);
+                wizard.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+                context.startActivity(wizard);
+                Slog.i(TAG, "Launched setup wizard (first boot)");
+            }
         }
     }
 }
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Slog;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs BootReceiver's work in two tiers and times every task.
+ *
+ *   critical   — run inline on the main thread inside onReceive()
+ *   deferrable — run in order on a background thread, {@link #DEFER_DELAY_MS}
+ *                after BOOT_COMPLETED, to stay out of the boot rush
+ *
+ * The broadcast is held open with goAsync() until the deferred tasks end.
+ * Each task's wall time is logged and kept in the "circle_boot_metrics"
+ * preferences (last value per task, plus the critical-path total).
+ */
+final class BootTaskScheduler {
+
+    private static final String TAG = "CircleBootTasks";
+
+    static final String METRICS_PREF = "circle_boot_metrics";
+    static final String KEY_CRITICAL_TOTAL = "critical_total_ms";
+    static final String KEY_DEFERRED_TOTAL = "deferred_total_ms";
+
+    /** Delay before deferrable tasks start; well inside the broadcast timeout. */
+    private static final long DEFER_DELAY_MS = 3_000;
+
+    /** One unit of boot work. */
+    interface Task {
+        /** Short stable name, used as the metrics key. */
+        String name();
+
+        /** Critical tasks run synchronously on the main thread. */
+        boolean isCritical();
+
+        void run(Context context);
+    }
+
+    private final List<Task> mTasks = new ArrayList<>();
+
+    BootTaskScheduler add(Task task) {
+        mTasks.add(task);
+        return this;
+    }
+
+    /**
+     * Runs critical tasks now and schedules the rest; {@code result} is
+     * finished once the last deferrable task completes.
+     */
+    void run(Context context, BroadcastReceiver.PendingResult result) {
+        Context app = context.getApplicationContext();
+        List<Task> deferred = new ArrayList<>();
+        long[] durations = new long[mTasks.size()];
+
+        long criticalTotal = 0;
+        for (int i = 0; i < mTasks.size(); i++) {
+            Task task = mTasks.get(i);
+            if (task.isCritical()) {
+                durations[i] = runTimed(app, task);
+                criticalTotal += durations[i];
+            } else {
+                deferred.add(task);
+                durations[i] = -1;
+            }
+        }
+        final long criticalMs = criticalTotal;
+
+        HandlerThread thread = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        new Handler(thread.getLooper()).postDelayed(() -> {
+            try {
+                long deferredTotal = 0;
+                for (int i = 0; i < mTasks.size(); i++) {
+                    if (durations[i] != -1) continue;
+                    durations[i] = runTimed(app, mTasks.get(i));
+                    deferredTotal += durations[i];
+                }
+                record(app, durations, criticalMs, deferredTotal);
+            } finally {
+                if (result != null) result.finish();
+                thread.quitSafely();
+            }
+        }, DEFER_DELAY_MS);
+    }
+
+    private static long runTimed(Context context, Task task) {
+        long start = SystemClock.elapsedRealtime();
+        try {
+            task.run(context);
+        } catch (RuntimeException e) {
+            Slog.e(TAG, "Boot task " + task.name() + " failed", e);
+        }
+        long ms = SystemClock.elapsedRealtime() - start;
+        Slog.i(TAG, task.name() + (task.isCritical() ? " [critical] " : " [deferred] ")
+                + ms + " ms");
+        return ms;
+    }
+
+    private void record(Context context, long[] durations, long criticalMs, long deferredMs) {
+        SharedPreferences.Editor e = context
+                .getSharedPreferences(METRICS_PREF, Context.MODE_PRIVATE).edit();
+        for (int i = 0; i < mTasks.size(); i++) {
+            e.putLong(mTasks.get(i).name() + "_ms", durations[i]);
+        }
+        e.putLong(KEY_CRITICAL_TOTAL, criticalMs);
+        e.putLong(KEY_DEFERRED_TOTAL, deferredMs);
+        e.apply();
+        Slog.i(TAG, "Boot work: " + criticalMs + " ms on main thread, "
+                + deferredMs + " ms deferred");
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.os.Process;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * App-wide worker pools. These are never shut down; callers cancel their
+ * own work through the {@link java.util.concurrent.Future} they get back.
+ */
+public final class CircleExecutors {
+
+    private static final int BACKGROUND_THREADS = 2;
+    private static final int PER_USER_THREADS   = 3;
+
+    private static final ExecutorService sBackground = newPool("circle-bg", BACKGROUND_THREADS);
+
+    private static final ExecutorService sPerUser = newPool("circle-user", PER_USER_THREADS);
+
+    private static final ScheduledThreadPoolExecutor sScheduler = newScheduler("circle-sched");
+
+    private CircleExecutors() {}
+
+    /** Low-priority pool for job, boot and maintenance work. */
+    public static ExecutorService background() {
+        return sBackground;
+    }
+
+    /**
+     * Bounded pool for fanning one load out across users and profiles.
+     * The caller blocks on the results, so it must not itself run here.
+     */
+    public static ExecutorService perUser() {
+        return sPerUser;
+    }
+
+    /**
+     * Single shared thread for periodic and delayed work (status polls,
+     * timeouts). Tasks must be short; hand anything long to {@link #background()}.
+     */
+    public static ScheduledExecutorService scheduler() {
+        return sScheduler;
+    }
+
+    static ThreadPoolExecutor newPool(String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), new NamedThreadFactory(name));
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    private static ScheduledThreadPoolExecutor newScheduler(String name) {
+        ScheduledThreadPoolExecutor pool =
+                new ScheduledThreadPoolExecutor(1, new NamedThreadFactory(name));
+        pool.setRemoveOnCancelPolicy(true);
+        return pool;
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String mName;
+        private final AtomicInteger mCount = new AtomicInteger();
+
+        NamedThreadFactory(String name) {
+            mName = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                r.run();
+            }, mName + "-" + mCount.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Slog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * App-wide executor for binder calls to the circle.* services.
+ *
+ *  - Calls run on a small bounded pool, never on the main thread. Each
+ *    service gets at most {@link #MAX_PER_SERVICE} threads; further calls
+ *    to it wait their turn, so one hung service cannot starve the others.
+ *  - Each call has a timeout, counted from when it starts running. On
+ *    expiry its waiters get a {@link TimeoutException}. A thread blocked in
+ *    a binder transaction cannot be interrupted, so the call stays
+ *    registered under its key and keeps its thread until it returns;
+ *    later calls with that key join it rather than issue another IPC.
+ *    Once every thread of a service is stuck past its timeout, calls to
+ *    that service fail at once with a {@link TimeoutException}.
+ *  - Calls made with the same non-null key while one is in flight share
+ *    that call and its result instead of issuing another IPC. Only use a
+ *    key for calls that are safe to merge (reads, idempotent commands).
+ *  - Callbacks run on the main thread, and never after their {@link Scope}
+ *    is cancelled. Activities own a Scope and cancel it in onDestroy. A
+ *    call nobody waits on any more is interrupted.
+ */
+public final class CircleIpc {
+
+    private static final String TAG = "CircleIpc";
+
+    /** Threads one service may occupy at a time. */
+    public static final int MAX_PER_SERVICE = 2;
+
+    /** Enough for every service to use its share at once. */
+    private static final int IPC_THREADS = 3 * MAX_PER_SERVICE;
+
+    /** Default per-call timeout. */
+    public static final long DEFAULT_TIMEOUT_MS = 10_000;
+
+    /** Timeout value for calls that are only ended by their {@link Scope}. */
+    public static final long NO_TIMEOUT = 0;
+
+    private static final ExecutorService sPool = CircleExecutors.newPool("circle-ipc", IPC_THREADS);
+    private static final Handler sMain = new Handler(Looper.getMainLooper());
+
+    private static final Object sLock = new Object();
+    private static final HashMap<String, InFlight<?>> sInFlight = new HashMap<>();  // guarded by sLock
+    private static final HashMap<String, Lane> sLanes = new HashMap<>();        // guarded by sLock
+
+    private CircleIpc() {}
+
+    /** A binder call, run on an IPC thread. */
+    public interface Call<T> {
+        T call() throws Exception;
+    }
+
+    /** Receives the outcome of a call on the main thread. */
+    public interface Callback<T> {
+        void onResult(T result);
+        default void onError(Exception e) {
+            Slog.w(TAG, "IPC failed", e);
+        }
+    }
+
+    /** Lifetime of a group of calls, usually an activity's. */
+    public static final class Scope {
+        private final List<InFlight<?>> mCalls = new ArrayList<>();  // guarded by sLock
+        private boolean mCancelled;                                  // guarded by sLock
+
+        /**
+         * Drops this scope's pending callbacks, and interrupts calls no
+         * other scope is waiting on. Idempotent.
+         */
+        public void cancel() {
+            synchronized (sLock) {
+                mCancelled = true;
+                for (InFlight<?> f : new ArrayList<>(mCalls)) {
+                    if (f.detach(this)) f.abandon();
+                }
+                mCalls.clear();
+            }
+        }
+
+        boolean isCancelled() {
+            synchronized (sLock) {
+                return mCancelled;
+            }
+        }
+    }
+
+    /** {@link #enqueue(Scope, String, String, long, Call, Callback)} with the default timeout. */
+    public static <T> void enqueue(Scope scope, String service, String key,
+            Call<T> call, Callback<T> callback) {
+        enqueue(scope, service, key, DEFAULT_TIMEOUT_MS, call, callback);
+    }
+
+    /**
+     * Runs {@code call} on the IPC pool, or joins an in-flight call with the
+     * same {@code key}.
+     *
+     * @param scope     owner of {@code callback}; null for process lifetime
+     * @param service   the {@link CircleServices} name the call talks to
+     * @param key       coalescing key, or null to always issue a new call
+     * @param timeoutMs how long waiters wait once the call runs, or {@link #NO_TIMEOUT}
+     * @param callback  main-thread result receiver, or null for fire-and-forget
+     */
+    public static <T> void enqueue(Scope scope, String service, String key, long timeoutMs,
+            Call<T> call, Callback<T> callback) {
+        synchronized (sLock) {
+            if (scope != null && scope.mCancelled) return;
+            if (key != null) {
+                @SuppressWarnings("unchecked")
+                InFlight<T> existing = (InFlight<T>) sInFlight.get(key);
+                if (existing != null) {
+                    existing.attach(scope, callback);
+                    existing.rearm(timeoutMs);
+                    return;
+                }
+            }
+            Lane lane = sLanes.get(service);
+            if (lane == null) sLanes.put(service, lane = new Lane(service));
+            InFlight<T> f = new InFlight<>(lane, key, timeoutMs, call);
+            f.attach(scope, callback);
+            if (lane.isHung()) {
+                f.finish(null, lane.hungError());
+                return;
+            }
+            if (key != null) sInFlight.put(key, f);
+            if (lane.mRunning < MAX_PER_SERVICE) f.start();
+            else lane.mQueue.add(f);
+        }
+    }
+
+    /** Calls to one service: those running and those waiting for a thread. */
+    private static final class Lane {
+        final String mService;
+        final ArrayDeque<InFlight<?>> mQueue = new ArrayDeque<>();  // guarded by sLock
+        int mRunning;                                               // guarded by sLock
+        int mExpired;      // running past their timeout; guarded by sLock
+
+        Lane(String service) {
+            mService = service;
+        }
+
+        /** Holds sLock. True if every thread of this service is stuck. */
+        boolean isHung() {
+            return mRunning >= MAX_PER_SERVICE && mExpired == mRunning;
+        }
+
+        TimeoutException hungError() {
+            return new TimeoutException(mService + " is not responding");
+        }
+
+        /** Holds sLock. A call's thread has returned; lets the next one run. */
+        void release(InFlight<?> f) {
+            mRunning--;
+            if (f.mExpired) mExpired--;
+            InFlight<?> next = mQueue.poll();
+            if (next != null) next.start();
+        }
+
+        /** Holds sLock. Fails queued calls once nothing can run them. */
+        void failQueuedIfHung() {
+            if (!isHung()) return;
+            InFlight<?> f;
+            while ((f = mQueue.poll()) != null) f.finish(null, hungError());
+        }
+    }
+
+    /** One call and everyone waiting on it. */
+    private static final class InFlight<T> {
+        final Lane    mLane;
+        final String  mKey;
+        final long    mTimeoutMs;
+        final Call<T> mCall;
+        final List<Scope>       mScopes    = new ArrayList<>(2);   // guarded by sLock
+        final List<Callback<T>> mCallbacks = new ArrayList<>(2);   // guarded by sLock
+        ScheduledFuture<?> mTimeout;                               // guarded by sLock
+        Thread             mThread;    // while running; guarded by sLock
+        boolean            mStarted;                               // guarded by sLock
+        boolean            mExpired;                               // guarded by sLock
+        boolean            mDone;                                  // guarded by sLock
+
+        InFlight(Lane lane, String key, long timeoutMs, Call<T> call) {
+            mLane      = lane;
+            mKey       = key;
+            mTimeoutMs = timeoutMs;
+            mCall      = call;
+        }
+
+        /** Holds sLock. */
+        void attach(Scope scope, Callback<T> callback) {
+            mScopes.add(scope);
+            mCallbacks.add(callback);
+            if (scope != null) scope.mCalls.add(this);
+        }
+
+        /** Holds sLock. Returns true if nobody is left waiting. */
+        boolean detach(Scope scope) {
+            for (int i = mScopes.size() - 1; i >= 0; i--) {
+                if (mScopes.get(i) == scope) {
+                    mScopes.remove(i);
+                    mCallbacks.remove(i);
+                }
+            }
+            return !mDone && mScopes.isEmpty();
+        }
+
+        /** Holds sLock. Gives waiters who joined after a timeout one of their own. */
+        void rearm(long timeoutMs) {
+            if (mExpired && mTimeout == null) arm(timeoutMs);
+        }
+
+        /** Holds sLock. */
+        void start() {
+            mStarted = true;
+            mLane.mRunning++;
+            sPool.execute(this::run);
+        }
+
+        private void run() {
+            synchronized (sLock) {
+                if (mDone) {                // abandoned before it got a thread
+                    mLane.release(this);
+                    return;
+                }
+                mThread = Thread.currentThread();
+                arm(mTimeoutMs);
+            }
+            T result = null;
+            Exception error = null;
+            CircleTrace.begin("CircleIpc ", mKey);
+            try {
+                result = mCall.call();
+            } catch (Exception e) {
+                error = e;
+            } finally {
+                CircleTrace.end();
+                synchronized (sLock) {
+                    mThread = null;
+                    Thread.interrupted();   // an abandon() that raced the return
+                    mLane.release(this);
+                }
+            }
+            finish(result, error);
+        }
+
+        /** Holds sLock. */
+        private void arm(long timeoutMs) {
+            if (timeoutMs <= NO_TIMEOUT) return;
+            mTimeout = CircleExecutors.scheduler().schedule(
+                    () -> expire(timeoutMs), timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * Fails the current waiters but keeps the call registered, so its
+         * thread is accounted for and new callers join it.
+         */
+        private void expire(long timeoutMs) {
+            synchronized (sLock) {
+                if (mDone || mTimeout == null) return;
+                mTimeout = null;
+                if (!mExpired) {
+                    mExpired = true;
+                    mLane.mExpired++;
+                }
+                deliver(null, new TimeoutException((mKey != null ? mKey : mLane.mService)
+                        + " timed out after " + timeoutMs + " ms"));
+                for (Scope s : mScopes) {
+                    if (s != null) s.mCalls.remove(this);
+                }
+                mScopes.clear();
+                mCallbacks.clear();
+                mLane.failQueuedIfHung();
+            }
+        }
+
+        /** Holds sLock. Nobody waits any more: drop the call, interrupting it if running. */
+        void abandon() {
+            if (mDone) return;
+            mDone = true;
+            unregister();
+            if (!mStarted) mLane.mQueue.remove(this);
+            else if (mThread != null) mThread.interrupt();
+        }
+
+        /** Delivers the outcome to every waiter, unless already done. */
+        void finish(T result, Exception error) {
+            synchronized (sLock) {
+                if (mDone) return;
+                mDone = true;
+                unregister();
+                deliver(result, error);
+            }
+        }
+
+        /** Holds sLock. Posts the outcome to the current waiters. */
+        private void deliver(T result, Exception error) {
+            for (int i = 0; i < mCallbacks.size(); i++) {
+                Scope scope = mScopes.get(i);
+                Callback<T> cb = mCallbacks.get(i);
+                if (cb == null) continue;
+                sMain.post(() -> {
+                    if (scope != null && scope.isCancelled()) return;
+                    if (error != null) cb.onError(error);
+                    else cb.onResult(result);
+                });
+            }
+        }
+
+        /** Holds sLock. */
+        private void unregister() {
+            if (mKey != null && sInFlight.get(mKey) == this) sInFlight.remove(mKey);
+            if (mTimeout != null) mTimeout.cancel(false);
+            mTimeout = null;
+            for (Scope s : mScopes) {
+                if (s != null) s.mCalls.remove(this);
+            }
+        }
+    }
+}
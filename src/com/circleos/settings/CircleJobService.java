@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Slog;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+
+/**
+ * Base for this app's JobServices; gives them the same threading,
+ * failure and cancellation rules.
+ *
+ *  - {@link #doWork} runs on the shared {@link CircleExecutors#background()} pool.
+ *  - Returning normally finishes the job; throwing finishes it with
+ *    reschedule=true so JobScheduler applies the job's backoff policy.
+ *    A finished first run lets {@link CircleJobs} schedule the periodic job.
+ *  - onStopJob() interrupts the worker and asks for a reschedule.
+ *    Work should call {@link #checkStopped()} between units of work;
+ *    once stopped, jobFinished() is never called.
+ */
+public abstract class CircleJobService extends JobService {
+
+    private Future<?> mRun;
+    private volatile boolean mStopped;
+
+    /** Tag used for this job's log lines. */
+    protected abstract String tag();
+
+    /**
+     * Performs the job on a worker thread.
+     *
+     * @return true to ask JobScheduler to retry with backoff
+     */
+    protected abstract boolean doWork(JobParameters params) throws Exception;
+
+    @Override
+    public final boolean onStartJob(JobParameters params) {
+        mStopped = false;
+        mRun = CircleExecutors.background().submit(() -> {
+            boolean reschedule;
+            try {
+                reschedule = doWork(params);
+            } catch (InterruptedException | CancellationException e) {
+                return; // stopped; onStopJob already answered JobScheduler
+            } catch (Exception e) {
+                Slog.e(tag(), "Job failed", e);
+                reschedule = true;
+            }
+            if (mStopped) return;
+            if (!reschedule) CircleJobs.onRunFinished(this, params);
+            jobFinished(params, reschedule);
+        });
+        return true; // job running asynchronously
+    }
+
+    @Override
+    public final boolean onStopJob(JobParameters params) {
+        mStopped = true;
+        if (mRun != null) mRun.cancel(true /* interrupt */);
+        Slog.i(tag(), "Job stopped by JobScheduler");
+        return true; // reschedule
+    }
+
+    /** Throws if JobScheduler has stopped this job. */
+    protected final void checkStopped() throws InterruptedException {
+        if (mStopped || Thread.currentThread().isInterrupted()) {
+            throw new InterruptedException("job stopped");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.PersistableBundle;
+import android.util.Slog;
+
+import com.circleos.settings.mesh.MeshHistoryJobService;
+
+import java.security.SecureRandom;
+import java.util.Objects;
+
+/**
+ * Single registry of this app's periodic jobs.
+ *
+ * {@link #ensureScheduled(Context)} is safe to call on every boot: a job is
+ * only (re)scheduled when it is missing or its spec has changed, so the
+ * periodic timer is not reset each time. The spec is fingerprinted into the
+ * job's extras because JobScheduler may clamp interval/flex values, which
+ * makes field-by-field comparison with the pending JobInfo unreliable.
+ *
+ * Every job gets exponential backoff on failure, and a per-device phase so
+ * a fleet that booted together does not run in the same minute. A flex
+ * window alone is not enough: devices scheduled at the same moment open
+ * their windows at the same moment too. So a missing job is first
+ * scheduled as a one-shot run, delayed by a device-specific offset into
+ * its interval. The periodic job is scheduled when that run succeeds, which
+ * anchors its period at the offset. Each device also gets its own flex,
+ * between half and all of the spec's. Both come from a random seed drawn
+ * once per device and kept in preferences.
+ */
+public final class CircleJobs {
+
+    private static final String TAG = "CircleJobs";
+    private static final String EXTRA_SPEC = "circle_job_spec";
+    private static final String EXTRA_FIRST_RUN = "circle_job_first_run";
+
+    private static final String PREF     = "circle_jobs";
+    private static final String KEY_SEED = "phase_seed";
+
+    /** Set in a spec's id to get the id of its one-shot first run. */
+    private static final int FIRST_RUN_ID_BIT = 0x100;
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY  = 24 * HOUR;
+
+    public static final int JOB_AUTO_REVOKE  = 0xC1C1E001;
+    public static final int JOB_THREAT_INTEL = 0xC1C1E002;
+    public static final int JOB_USAGE_ANOMALY = 0xC1C1E003;
+    public static final int JOB_MESH_HISTORY  = 0xC1C1E004;
+
+    /** Revoke unused permissions weekly, while charging. */
+    static final Spec AUTO_REVOKE = new Spec(JOB_AUTO_REVOKE, AutoRevokeJobService.class,
+            7 * DAY, 1 * DAY, JobInfo.NETWORK_TYPE_NONE, true /* charging */, false,
+            60 * 60 * 1000L);
+
+    /** Refresh threat intel daily on Wi-Fi, in a window of up to the last 6 h of the period. */
+    static final Spec THREAT_INTEL = new Spec(JOB_THREAT_INTEL, ThreatIntelUpdater.class,
+            DAY, 6 * HOUR, JobInfo.NETWORK_TYPE_UNMETERED, false, false,
+            30 * 60 * 1000L);
+
+    /**
+     * Scan new usage records for bursts hourly, unless the battery is low.
+     * Each run costs IPCs per app; flags last a week, so an hour late is fine.
+     */
+    static final Spec USAGE_ANOMALY = new Spec(JOB_USAGE_ANOMALY, UsageAnomalyJobService.class,
+            HOUR, 20 * 60 * 1000L, JobInfo.NETWORK_TYPE_NONE, false, true /* battery not low */,
+            10 * 60 * 1000L);
+
+    /** Sample mesh health for the mesh screen's history every 15 min, batched loosely. */
+    static final Spec MESH_HISTORY = new Spec(JOB_MESH_HISTORY,
+            MeshHistoryJobService.class, 15 * 60 * 1000L, 10 * 60 * 1000L,
+            JobInfo.NETWORK_TYPE_NONE, false, false, 5 * 60 * 1000L);
+
+    private static final Spec[] ALL = { AUTO_REVOKE, THREAT_INTEL, USAGE_ANOMALY, MESH_HISTORY };
+
+    private CircleJobs() {}
+
+    /** Makes sure every registered job is pending with its current spec. */
+    public static void ensureScheduled(Context context) {
+        for (Spec spec : ALL) ensureScheduled(context, spec);
+    }
+
+    static void ensureScheduled(Context context, Spec spec) {
+        JobScheduler js = context.getSystemService(JobScheduler.class);
+        if (js == null) return;
+
+        JobInfo pending = js.getPendingJob(spec.id);
+        if (hasSpec(pending, spec)) return;     // already scheduled with this spec; keep its timer
+        if (hasSpec(js.getPendingJob(spec.firstRunId()), spec)) return;   // first run still due
+
+        // New or changed: start over from this device's phase
+        if (pending != null) js.cancel(spec.id);
+        long seed = seed(context);
+        long delay = spec.phaseMs(seed);
+        int result = js.schedule(spec.buildFirstRun(context, delay));
+        Slog.i(TAG, spec.service.getSimpleName()
+                + (pending == null ? " scheduled" : " rescheduled (spec changed)")
+                + ", first run in " + (delay / 60_000) + " min"
+                + (result == JobScheduler.RESULT_SUCCESS ? "" : " — FAILED"));
+    }
+
+    /**
+     * Called by {@link CircleJobService} when a run has finished without
+     * asking for a retry. After a first run, schedules the periodic job.
+     */
+    static void onRunFinished(Context context, JobParameters params) {
+        PersistableBundle extras = params.getExtras();
+        if (extras == null || !extras.getBoolean(EXTRA_FIRST_RUN, false)) return;
+        JobScheduler js = context.getSystemService(JobScheduler.class);
+        if (js == null) return;
+        for (Spec spec : ALL) {
+            if (spec.firstRunId() != params.getJobId()) continue;
+            int result = js.schedule(spec.buildPeriodic(context, seed(context)));
+            Slog.i(TAG, spec.service.getSimpleName() + " first run done, periodic job "
+                    + (result == JobScheduler.RESULT_SUCCESS ? "scheduled" : "FAILED"));
+            return;
+        }
+    }
+
+    private static boolean hasSpec(JobInfo job, Spec spec) {
+        return job != null && job.getExtras() != null
+                && job.getExtras().getInt(EXTRA_SPEC, 0) == spec.fingerprint();
+    }
+
+    /** This device's random phase seed, drawn on first use. */
+    private static synchronized long seed(Context context) {
+        SharedPreferences prefs = context.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+        long seed = prefs.getLong(KEY_SEED, 0);
+        if (seed == 0) {
+            do seed = new SecureRandom().nextLong(); while (seed == 0);
+            prefs.edit().putLong(KEY_SEED, seed).commit();
+        }
+        return seed;
+    }
+
+    /** Immutable description of one periodic job. */
+    static final class Spec {
+        final int      id;
+        final Class<?> service;
+        final long     intervalMs;
+        final long     flexMs;
+        final int      networkType;
+        final boolean  requiresCharging;
+        final boolean  requiresBatteryNotLow;
+        final long     backoffMs;
+
+        Spec(int id, Class<?> service, long intervalMs, long flexMs, int networkType,
+                boolean requiresCharging, boolean requiresBatteryNotLow, long backoffMs) {
+            this.id                    = id;
+            this.service               = service;
+            this.intervalMs            = intervalMs;
+            this.flexMs                = flexMs;
+            this.networkType           = networkType;
+            this.requiresCharging      = requiresCharging;
+            this.requiresBatteryNotLow = requiresBatteryNotLow;
+            this.backoffMs             = backoffMs;
+        }
+
+        int fingerprint() {
+            return Objects.hash(id, service.getName(), intervalMs, flexMs, networkType,
+                    requiresCharging, requiresBatteryNotLow, backoffMs);
+        }
+
+        int firstRunId() {
+            return id | FIRST_RUN_ID_BIT;
+        }
+
+        /** Delay of the first run, in [0, interval). Differs per job on one device. */
+        long phaseMs(long seed) {
+            return Math.floorMod(mix(seed ^ id), intervalMs);
+        }
+
+        /** Flex window for this device, in [flex / 2, flex]. */
+        long flexMs(long seed) {
+            long half = flexMs / 2;
+            return half + Math.floorMod(mix(seed + id), flexMs - half + 1);
+        }
+
+        JobInfo buildFirstRun(Context context, long delayMs) {
+            PersistableBundle extras = extras();
+            extras.putBoolean(EXTRA_FIRST_RUN, true);
+            return builder(context, firstRunId(), extras)
+                    .setMinimumLatency(delayMs)
+                    .build();
+        }
+
+        JobInfo buildPeriodic(Context context, long seed) {
+            return builder(context, id, extras())
+                    .setPeriodic(intervalMs, flexMs(seed))
+                    .build();
+        }
+
+        private PersistableBundle extras() {
+            PersistableBundle extras = new PersistableBundle();
+            extras.putInt(EXTRA_SPEC, fingerprint());
+            return extras;
+        }
+
+        private JobInfo.Builder builder(Context context, int jobId, PersistableBundle extras) {
+            return new JobInfo.Builder(jobId, new ComponentName(context, service))
+                    .setRequiredNetworkType(networkType)
+                    .setRequiresCharging(requiresCharging)
+                    .setRequiresBatteryNotLow(requiresBatteryNotLow)
+                    .setBackoffCriteria(backoffMs, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                    .setPersisted(true)
+                    .setExtras(extras);
+        }
+
+        /** SplitMix64 finalizer; spreads nearby inputs across the whole range. */
+        private static long mix(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+    }
+}
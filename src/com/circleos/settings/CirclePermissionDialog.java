@@ -11,9 +11,7 @@ import android.circleos.ICirclePrivacyManager;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.IBinder;
 import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.view.View;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -48,9 +46,12 @@ public class CirclePermissionDialog extends Activity {
     private String mPermission;
     private String mContext;
 
+    private final ScreenTimer mTimer = new ScreenTimer("PermissionDialog");
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(R.layout.dialog_permission);
 
         mPackageName = getIntent().getStringExtra(EXTRA_PACKAGE_NAME);
@@ -63,6 +64,7 @@ public class CirclePermissionDialog extends Activity {
         }
 
         setupViews();
+        mTimer.contentShown();
     }
 
     private void setupViews() {
@@ -101,24 +103,41 @@ public class CirclePermissionDialog extends Activity {
         });
     }
 
+    /** Persists off the main thread; runs to completion after the dialog finishes. */
     private void applyChoice(boolean granted, boolean persist) {
         if (!persist) return; // one-shot: system handles the immediate grant; don't persist
+        String pkg = mPackageName;
+        String permission = mPermission;
+        CircleIpc.enqueue(null, CircleServices.PRIVACY, null, () -> {
+            persistChoice(pkg, permission, granted);
+            return null;
+        }, null);
+    }
+
+    private static void persistChoice(String packageName, String permission, boolean granted) {
         try {
-            IBinder b = ServiceManager.getService("circle.privacy");
-            if (b == null) return;
-            ICirclePrivacyManager manager = ICirclePrivacyManager.Stub.asInterface(b);
-            AppPrivacyPolicy policy = manager.getPolicy(mPackageName);
-            if ("com.circleos.permission.NETWORK".equals(mPermission)) {
-                policy.networkAllowed = granted;
-            } else if (mPermission != null && mPermission.startsWith("com.circleos.permission.")) {
-                String sensor = mPermission.substring("com.circleos.permission.".length());
-                if (granted) {
-                    if (!policy.allowedSensors.contains(sensor)) policy.allowedSensors.add(sensor);
-                } else {
+            ICirclePrivacyManager manager = CircleServices.privacy();
+            if (manager == null) return;
+            AppPrivacyPolicy policy = manager.getPolicy(packageName);
+            if (policy == null) return;
+            long before = PolicyBits.encode(policy);
+            long after = before;
+            String sensor = CirclePermissions.sensorOf(permission);
+            if (CirclePermissions.NETWORK.equals(permission)) {
+                after = PolicyBits.with(before, PolicyBits.NETWORK, granted);
+            } else if (sensor != null) {
+                long bit = PolicyBits.sensorBit(sensor);
+                if (bit == 0) {                 // registry full: edit the list directly
                     policy.allowedSensors.remove(sensor);
+                    if (granted) policy.allowedSensors.add(sensor);
+                    manager.setPolicy(packageName, policy);
+                    return;
                 }
+                after = PolicyBits.with(before, bit, granted);
             }
-            manager.setPolicy(mPackageName, policy);
+            if (after == before) return;    // already recorded; skip the write
+            PolicyBits.apply(after, policy);
+            manager.setPolicy(packageName, policy);
         } catch (RemoteException e) {
             Slog.e(TAG, "Failed to persist permission choice", e);
         }
@@ -0,0 +1,54 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Circle OS permission names, as the framework uses them. The permission
+ * hook in system_server sends them to {@link CirclePermissionDialog}, and
+ * the privacy service logs them in {@code PermissionUsageRecord.permission}.
+ *
+ * Network and each sensor have a name. Contacts, storage and lobby mode
+ * have none, so their use cannot be read from the usage log; decisions
+ * about them belong to the privacy service.
+ */
+public final class CirclePermissions {
+
+    public static final String PREFIX  = "com.circleos.permission.";
+    public static final String NETWORK = PREFIX + "NETWORK";
+
+    private CirclePermissions() {}
+
+    /** "com.circleos.permission.GYROSCOPE" for "GYROSCOPE". */
+    public static String forSensor(String sensor) {
+        return PREFIX + sensor;
+    }
+
+    /** The sensor {@code permission} names, or null for network or a non-Circle name. */
+    public static String sensorOf(String permission) {
+        if (permission == null || !permission.startsWith(PREFIX) || NETWORK.equals(permission)) {
+            return null;
+        }
+        return permission.substring(PREFIX.length());
+    }
+
+    /** Grants in {@code policy} whose use the service logs under a permission name. */
+    public static List<String> namedGrants(AppPrivacyPolicy policy) {
+        List<String> out = new ArrayList<>();
+        if (policy.networkAllowed) out.add(NETWORK);
+        for (String sensor : policy.allowedSensors) out.add(forSensor(sensor));
+        return out;
+    }
+
+    /** "ACCELEROMETER" for "com.circleos.permission.ACCELEROMETER". */
+    public static String shortName(String permission) {
+        return permission.startsWith(PREFIX) ? permission.substring(PREFIX.length()) : permission;
+    }
+}
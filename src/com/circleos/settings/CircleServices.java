@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.ICirclePrivacyManager;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.os.ServiceManager;
+import android.os.SystemClock;
+import android.util.Slog;
+
+import com.circleos.settings.fake.FakeServices;
+import com.circleos.settings.mesh.MeshPeerFeed;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import za.co.circleos.mesh.ICircleMeshService;
+import za.co.circleos.update.ICircleUpdateService;
+
+/**
+ * Process-wide registry of connections to the circle.* system services.
+ *
+ * Each service is looked up once and its proxy cached, with a death
+ * recipient linked to the binder. When the service process dies the cached
+ * proxy is dropped and {@link Listener}s are told; while anyone is
+ * listening the registry retries the lookup with exponential backoff and
+ * announces the service when it is back. Without listeners reconnection is
+ * lazy: the next accessor call looks the service up again, unless a recent
+ * lookup failed and the backoff has not elapsed yet, in which case it
+ * returns null straight away.
+ *
+ * Proxies are wrapped by {@link IpcStats} so every call is counted and traced.
+ *
+ * Accessors may be called from any thread and return null when the service
+ * is unavailable. On debuggable builds with fake services switched on they
+ * return the in-process fakes from {@link FakeServices} instead.
+ */
+public final class CircleServices {
+
+    private static final String TAG = "CircleServices";
+
+    public static final String PRIVACY = "circle.privacy";
+    public static final String MESH    = "circle.mesh";
+    public static final String UPDATE  = "circle.update";
+
+    private static final long MIN_BACKOFF_MS = 1_000;
+    private static final long MAX_BACKOFF_MS = 60_000;
+
+    /** Receives connection changes on the main thread. */
+    public interface Listener {
+        default void onServiceDied(String name) {}
+        default void onServiceAvailable(String name) {}
+    }
+
+    private static final Handler sMain = new Handler(Looper.getMainLooper());
+    private static final CopyOnWriteArrayList<Listener> sListeners = new CopyOnWriteArrayList<>();
+
+    private static final Connection<ICirclePrivacyManager> sPrivacy =
+            new Connection<>(PRIVACY, ICirclePrivacyManager.class,
+                    ICirclePrivacyManager.Stub::asInterface);
+    private static final Connection<ICircleMeshService> sMesh =
+            new Connection<>(MESH, ICircleMeshService.class,
+                    ICircleMeshService.Stub::asInterface);
+    private static final Connection<ICircleUpdateService> sUpdate =
+            new Connection<>(UPDATE, ICircleUpdateService.class,
+                    ICircleUpdateService.Stub::asInterface);
+
+    private CircleServices() {}
+
+    public static ICirclePrivacyManager privacy() {
+        if (FakeServices.isEnabled()) return FakeServices.privacy();
+        return sPrivacy.get();
+    }
+
+    public static ICircleMeshService mesh() {
+        if (FakeServices.isEnabled()) return FakeServices.mesh();
+        return sMesh.get();
+    }
+
+    public static ICircleUpdateService update() {
+        if (FakeServices.isEnabled()) return FakeServices.update();
+        return sUpdate.get();
+    }
+
+    /**
+     * Per-peer deltas from circle.mesh, or null if the service cannot
+     * supply them. The v1 AIDL reports only a peer count, so only the fake
+     * service has a feed.
+     */
+    public static MeshPeerFeed meshPeers() {
+        if (FakeServices.isEnabled()) return FakeServices.meshPeers();
+        return null;
+    }
+
+    /** {@link #privacy()} for use inside {@link CircleIpc} calls: throws instead of returning null. */
+    public static ICirclePrivacyManager requirePrivacy() throws RemoteException {
+        ICirclePrivacyManager manager = privacy();
+        if (manager == null) throw new RemoteException(PRIVACY + " unavailable");
+        return manager;
+    }
+
+    /**
+     * Drops the cached proxy for {@code name} after a call on it failed with
+     * a {@link RemoteException}, so the next accessor call reconnects.
+     */
+    public static void invalidate(String name) {
+        Connection<?> c = forName(name);
+        if (c != null) c.onDead();
+    }
+
+    public static void addListener(Listener l) {
+        if (sListeners.addIfAbsent(l)) {
+            // Anything currently down gets a reconnect loop now that someone cares
+            sPrivacy.ensureRetrying();
+            sMesh.ensureRetrying();
+            sUpdate.ensureRetrying();
+        }
+    }
+
+    public static void removeListener(Listener l) {
+        sListeners.remove(l);
+    }
+
+    private static Connection<?> forName(String name) {
+        switch (name) {
+            case PRIVACY: return sPrivacy;
+            case MESH:    return sMesh;
+            case UPDATE:  return sUpdate;
+            default:      return null;
+        }
+    }
+
+    private static void dispatch(String name, boolean available) {
+        sMain.post(() -> {
+            for (Listener l : sListeners) {
+                if (available) l.onServiceAvailable(name);
+                else l.onServiceDied(name);
+            }
+        });
+    }
+
+    /** Cached proxy for one service plus its reconnect state. */
+    private static final class Connection<T> {
+        private final String mName;
+        private final Class<T> mType;
+        private final Function<IBinder, T> mAsInterface;
+
+        private T       mProxy;                  // guarded by this
+        private IBinder mBinder;                 // guarded by this
+        private long    mBackoffMs;              // guarded by this; 0 = no recent failure
+        private long    mNextLookupAt;           // guarded by this; elapsedRealtime
+        private boolean mLost;                   // guarded by this; down, not yet back
+        private ScheduledFuture<?> mRetry;       // guarded by this
+
+        private final IBinder.DeathRecipient mDeath;
+
+        Connection(String name, Class<T> type, Function<IBinder, T> asInterface) {
+            mName = name;
+            mType = type;
+            mAsInterface = asInterface;
+            mDeath = () -> {
+                Slog.w(TAG, mName + " died");
+                onDead();
+            };
+        }
+
+        T get() {
+            T proxy;
+            synchronized (this) {
+                if (mProxy == null && SystemClock.elapsedRealtime() >= mNextLookupAt) {
+                    connectLocked();
+                }
+                proxy = mProxy;
+            }
+            if (proxy == null) ensureRetrying();
+            return proxy;
+        }
+
+        /** Holds this. Looks the service up once and updates backoff. */
+        private void connectLocked() {
+            IBinder b = ServiceManager.getService(mName);
+            if (b != null) {
+                try {
+                    b.linkToDeath(mDeath, 0);
+                } catch (RemoteException e) {
+                    b = null; // died between lookup and link
+                }
+            }
+            if (b == null) {
+                mLost = true;
+                mBackoffMs = mBackoffMs == 0 ? MIN_BACKOFF_MS
+                        : Math.min(mBackoffMs * 2, MAX_BACKOFF_MS);
+                mNextLookupAt = SystemClock.elapsedRealtime() + mBackoffMs;
+                return;
+            }
+            mBinder = b;
+            mProxy = IpcStats.instrument(mType, mName, mAsInterface.apply(b));
+            mBackoffMs = 0;
+            mNextLookupAt = 0;
+            if (mLost) {
+                mLost = false;
+                Slog.i(TAG, mName + " is back");
+                dispatch(mName, true);
+            }
+        }
+
+        /** Binder death, or a call on the proxy failed. */
+        void onDead() {
+            synchronized (this) {
+                if (mProxy == null) return;
+                mBinder.unlinkToDeath(mDeath, 0);
+                mBinder = null;
+                mProxy = null;
+                mLost = true;
+                mNextLookupAt = 0;
+            }
+            dispatch(mName, false);
+            ensureRetrying();
+        }
+
+        /** Keeps retrying with backoff while the service is lost and someone listens. */
+        synchronized void ensureRetrying() {
+            if (!mLost || mRetry != null || sListeners.isEmpty()) return;
+            long delay = Math.max(MIN_BACKOFF_MS,
+                    mNextLookupAt - SystemClock.elapsedRealtime());
+            mRetry = CircleExecutors.scheduler().schedule(
+                    this::retry, delay, TimeUnit.MILLISECONDS);
+        }
+
+        private void retry() {
+            synchronized (this) {
+                mRetry = null;
+                if (mProxy == null) connectLocked();
+            }
+            ensureRetrying();
+        }
+    }
+}
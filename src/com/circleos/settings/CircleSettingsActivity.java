@@ -5,6 +5,7 @@
 package com.circleos.settings;
 
 import android.app.Activity;
+import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
@@ -13,23 +14,82 @@ import android.widget.LinearLayout;
 import android.widget.TextView;
 
 import com.circleos.settings.mesh.MeshSettingsActivity;
+import com.circleos.settings.mesh.MeshStatusMonitor;
+import com.circleos.settings.privacy.DashboardSnapshot;
 import com.circleos.settings.privacy.PrivacyDashboardActivity;
+import com.circleos.settings.privacy.PrivacyDashboardData;
+import com.circleos.settings.threat.BlocklistOverviewActivity;
 import com.circleos.settings.update.UpdateSettingsActivity;
+import com.circleos.settings.update.UpdateStatusMonitor;
 
 /**
  * Top-level hub for CircleOS settings.
  *
- * Shows three cards:
+ * Shows four cards:
  *   - Privacy      → PrivacyDashboardActivity
  *   - Mesh Network → MeshSettingsActivity
  *   - System Update → UpdateSettingsActivity
+ *   - Threat Intelligence → BlocklistOverviewActivity
+ *
+ * The service cards carry a summary badge. The first frame is drawn
+ * without touching any service or the disk; {@link HubSummaryCache} is read
+ * on a worker and its values fill any badge not yet live. While resumed, the
+ * mesh and update badges follow {@link MeshStatusMonitor} and
+ * {@link UpdateStatusMonitor}, which the detail screens share, so the hub
+ * issues no binder calls of its own for them. The privacy score is the
+ * dashboard's average; when this process has none, or its scores have
+ * expired, the hub runs or joins the dashboard's load to get one.
  */
-public class CircleSettingsActivity extends Activity {
+public class CircleSettingsActivity extends Activity
+        implements MeshStatusMonitor.Listener, UpdateStatusMonitor.Listener {
+
+    private final CircleIpc.Scope mScope = new CircleIpc.Scope();
+    private final ScreenTimer     mTimer = new ScreenTimer("Hub");
+
+    private TextView mPrivacyBadge;
+    private TextView mMeshBadge;
+    private TextView mUpdateBadge;
+
+    // Set once a badge shows a live value, so the cache does not overwrite it
+    private boolean mPrivacyLive;
+    private boolean mMeshLive;
+    private boolean mUpdateLive;
+
+    private boolean mMeshRunning;
+    private int     mMeshPeers;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(buildLayout());
+        // A few keys, but still a file read; keep it off the cold-start path
+        Context app = getApplicationContext();
+        CircleExecutors.scheduler().execute(() -> {
+            HubSummaryCache.Summary s = HubSummaryCache.read(app);
+            runOnUiThread(() -> bindCached(s));
+        });
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        MeshStatusMonitor.get().addListener(this);
+        UpdateStatusMonitor.get().addListener(this);
+        refreshPrivacy();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        UpdateStatusMonitor.get().removeListener(this);
+        MeshStatusMonitor.get().removeListener(this);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mScope.cancel();
     }
 
     private View buildLayout() {
@@ -47,28 +107,145 @@ public class CircleSettingsActivity extends Activity {
         root.addView(title);
 
         // Cards
+        mPrivacyBadge = makeBadge();
         root.addView(buildCard(
                 "Privacy",
                 "App permissions, network isolation, audit log",
                 0xFF1A1A2E,
+                mPrivacyBadge,
                 v -> startActivity(new Intent(this, PrivacyDashboardActivity.class))));
 
+        mMeshBadge = makeBadge();
         root.addView(buildCard(
                 "Mesh Network",
                 "P2P discovery, peer list, device identity",
                 0xFF2E4057,
+                mMeshBadge,
                 v -> startActivity(new Intent(this, MeshSettingsActivity.class))));
 
+        mUpdateBadge = makeBadge();
         root.addView(buildCard(
                 "System Update",
                 "OTA channel, check for updates, download status",
                 0xFF048A81,
+                mUpdateBadge,
                 v -> startActivity(new Intent(this, UpdateSettingsActivity.class))));
 
+        root.addView(buildCard(
+                "Threat Intelligence",
+                "Blocklist statistics, bulk domain check",
+                0xFF6B2737,
+                null,
+                v -> startActivity(new Intent(this, BlocklistOverviewActivity.class))));
+
         return root;
     }
 
-    private View buildCard(String title, String subtitle, int color, View.OnClickListener click) {
+    // ── Summaries ─────────────────────────────────────────────────────────────
+
+    private void bindCached(HubSummaryCache.Summary s) {
+        if (isDestroyed()) return;
+        if (!mPrivacyLive) bindPrivacy(s.privacyScore);
+        if (!mMeshLive && s.meshRunning >= 0) bindMesh(s.meshRunning == 1, s.meshPeers);
+        if (!mUpdateLive && s.updateState >= 0) bindUpdate(s.updateState, s.updateVersion);
+        mTimer.contentShown();
+    }
+
+    private void refreshPrivacy() {
+        PrivacyDashboardData data = PrivacyDashboardData.get();
+        int score = data.averageScore();
+        if (score >= 0) showPrivacyScore(score);
+        if (!data.needsLoad()) return;
+        PrivacyDashboardData.enqueueLoad(mScope, this, new CircleIpc.Callback<DashboardSnapshot>() {
+            @Override public void onResult(DashboardSnapshot snapshot) {
+                showPrivacyScore(snapshot.averageScore());
+            }
+            @Override public void onError(Exception e) {
+                // Keep showing the last score; the dashboard reports failures
+            }
+        });
+    }
+
+    private void showPrivacyScore(int score) {
+        mPrivacyLive = true;
+        bindPrivacy(score);
+        HubSummaryCache.putPrivacyScore(this, score);
+    }
+
+    // ── MeshStatusMonitor.Listener ────────────────────────────────────────────
+
+    @Override
+    public void onRunningChanged(boolean running) {
+        mMeshRunning = running;
+        showMesh();
+    }
+
+    @Override
+    public void onPeerCountChanged(int peers) {
+        mMeshPeers = peers;
+        showMesh();
+    }
+
+    @Override
+    public void onUnavailable(String reason) {
+        mMeshLive = true;
+        mMeshBadge.setText("Unavailable");
+    }
+
+    private void showMesh() {
+        mMeshLive = true;
+        bindMesh(mMeshRunning, mMeshPeers);
+        HubSummaryCache.putMesh(this, mMeshRunning, mMeshPeers);
+    }
+
+    // ── UpdateStatusMonitor.Listener ──────────────────────────────────────────
+
+    @Override
+    public void onUpdateStatus(UpdateStatusMonitor.UpdateStatus status) {
+        mUpdateLive = true;
+        if (status.error != null) {
+            mUpdateBadge.setText("Unavailable");
+            return;
+        }
+        bindUpdate(status.state, status.version);
+        HubSummaryCache.putUpdate(this, status.state, status.version);
+    }
+
+    private void bindPrivacy(int score) {
+        mPrivacyBadge.setText(score >= 0 ? "Privacy score " + score : "Open to compute privacy score");
+    }
+
+    private void bindMesh(boolean running, int peers) {
+        if (!running) {
+            mMeshBadge.setText("Stopped");
+        } else {
+            mMeshBadge.setText("Running · " + peers + (peers == 1 ? " peer" : " peers"));
+        }
+    }
+
+    private void bindUpdate(int state, String version) {
+        String text = UpdateStatusMonitor.stateName(state);
+        if (version != null && !version.isEmpty()
+                && state != UpdateStatusMonitor.STATE_IDLE) {
+            text += " · " + version;
+        }
+        mUpdateBadge.setText(text);
+    }
+
+    // ── Views ─────────────────────────────────────────────────────────────────
+
+    private TextView makeBadge() {
+        TextView tv = new TextView(this);
+        tv.setText("…");
+        tv.setTextSize(12);
+        tv.setTextColor(0xFFFFFFFF);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(0, dp(10), 0, 0);
+        return tv;
+    }
+
+    private View buildCard(String title, String subtitle, int color, TextView badge,
+                           View.OnClickListener click) {
         LinearLayout card = new LinearLayout(this);
         card.setOrientation(LinearLayout.VERTICAL);
         card.setBackgroundColor(color);
@@ -93,6 +270,8 @@ public class CircleSettingsActivity extends Activity {
         tvSub.setPadding(0, dp(4), 0, 0);
         card.addView(tvSub);
 
+        if (badge != null) card.addView(badge);
+
         card.setOnClickListener(click);
         return card;
     }
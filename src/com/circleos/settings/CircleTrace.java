@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.os.Trace;
+
+/**
+ * Named systrace/perfetto sections for the app's hot paths: binder calls,
+ * database and file operations, list binds.
+ *
+ * Sections are always begun and ended in pairs on the same thread, so an
+ * unbalanced end can't close someone else's section even if tracing is
+ * switched on mid-way. Names built from a prefix and a variable part are
+ * only concatenated while tracing is enabled; otherwise the bare prefix is
+ * used and nothing is allocated.
+ */
+public final class CircleTrace {
+
+    private CircleTrace() {}
+
+    public static void begin(String section) {
+        Trace.beginSection(section);
+    }
+
+    public static void begin(String prefix, String name) {
+        Trace.beginSection(Trace.isEnabled() && name != null ? prefix + name : prefix);
+    }
+
+    public static void end() {
+        Trace.endSection();
+    }
+}
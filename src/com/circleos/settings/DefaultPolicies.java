@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.content.pm.ApplicationInfo;
+
+/**
+ * The default-deny policy written for every user-installed app, shared by
+ * the first-boot wizard and the package-change receiver.
+ */
+public final class DefaultPolicies {
+
+    private DefaultPolicies() {}
+
+    /** Default policy: deny-all (all fields false = deny). */
+    public static AppPrivacyPolicy newDefaultDeny() {
+        AppPrivacyPolicy policy = new AppPrivacyPolicy();
+        policy.networkAllowed  = false;
+        policy.contactsAllowed = false;
+        policy.storageAllowed  = false;
+        return policy;
+    }
+
+    /** System apps retain their existing permissions and never get a default. */
+    public static boolean isUserApp(ApplicationInfo info) {
+        return info != null && (info.flags & ApplicationInfo.FLAG_SYSTEM) == 0;
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+/**
+ * Last-known values behind the settings hub's summary badges, kept on disk
+ * so the hub's first frame can show them before any service is asked.
+ * Writers are the hub itself and any screen that computes one of the
+ * values anyway (e.g. the privacy dashboard's average score).
+ *
+ * The first access loads the file, and a main-thread edit would wait for
+ * that load, so writes are handed to {@link CircleExecutors#scheduler()}
+ * and {@link #read} must be called off the main thread.
+ */
+public final class HubSummaryCache {
+
+    private static final String PREF = "circle_hub_summary";
+
+    private static final String KEY_PRIVACY_SCORE  = "privacy_score";
+    private static final String KEY_MESH_RUNNING   = "mesh_running";
+    private static final String KEY_MESH_PEERS     = "mesh_peers";
+    private static final String KEY_UPDATE_STATE   = "update_state";
+    private static final String KEY_UPDATE_VERSION = "update_version";
+
+    /** Immutable snapshot; -1 / null means never observed. */
+    public static final class Summary {
+        public final int     privacyScore;
+        public final int     meshRunning;    // -1 unknown, 0 stopped, 1 running
+        public final int     meshPeers;
+        public final int     updateState;
+        public final String  updateVersion;
+
+        Summary(int privacyScore, int meshRunning, int meshPeers, int updateState,
+                String updateVersion) {
+            this.privacyScore  = privacyScore;
+            this.meshRunning   = meshRunning;
+            this.meshPeers     = meshPeers;
+            this.updateState   = updateState;
+            this.updateVersion = updateVersion;
+        }
+    }
+
+    private HubSummaryCache() {}
+
+    /** Worker thread; loads the file on first use. */
+    public static Summary read(Context context) {
+        SharedPreferences p = prefs(context);
+        return new Summary(
+                p.getInt(KEY_PRIVACY_SCORE, -1),
+                p.getInt(KEY_MESH_RUNNING, -1),
+                p.getInt(KEY_MESH_PEERS, -1),
+                p.getInt(KEY_UPDATE_STATE, -1),
+                p.getString(KEY_UPDATE_VERSION, null));
+    }
+
+    public static void putPrivacyScore(Context context, int score) {
+        Context app = context.getApplicationContext();
+        CircleExecutors.scheduler().execute(() ->
+                prefs(app).edit().putInt(KEY_PRIVACY_SCORE, score).apply());
+    }
+
+    public static void putMesh(Context context, boolean running, int peers) {
+        Context app = context.getApplicationContext();
+        CircleExecutors.scheduler().execute(() -> prefs(app).edit()
+                .putInt(KEY_MESH_RUNNING, running ? 1 : 0)
+                .putInt(KEY_MESH_PEERS, peers)
+                .apply());
+    }
+
+    public static void putUpdate(Context context, int state, String version) {
+        Context app = context.getApplicationContext();
+        CircleExecutors.scheduler().execute(() -> prefs(app).edit()
+                .putInt(KEY_UPDATE_STATE, state)
+                .putString(KEY_UPDATE_VERSION, version)
+                .apply());
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.os.SystemClock;
+import android.os.Trace;
+
+import java.io.PrintWriter;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-method counters and latency histograms for every call on a circle.*
+ * service proxy, shown by {@code adb shell dumpsys activity provider
+ * com.circleos.settings/.IpcStatsProvider}.
+ *
+ * Always on, user builds included. {@link CircleServices} wraps each
+ * proxy it hands out, so every binder call is counted, whether it goes
+ * through {@link CircleIpc} or is made directly by a worker (backup,
+ * profiles, the dashboard load, the anomaly scan). Recording is a few
+ * {@link LongAdder} increments, which don't contend across threads and
+ * are small next to a binder round trip. While tracing is on, each call
+ * also gets a trace section named after the method.
+ *
+ * Latencies go into power-of-two microsecond buckets, so p50 and p99 are
+ * reported as the bucket's upper bound: at most a factor of two high.
+ */
+public final class IpcStats {
+
+    private static final int BUCKETS = 25;    // [2^i, 2^(i+1)) µs; the last also holds anything slower
+
+    private static final ConcurrentHashMap<String, MethodStats> sStats = new ConcurrentHashMap<>();
+
+    private IpcStats() {}
+
+    /** Counters for one service method. */
+    static final class MethodStats {
+        final String      name;
+        final String      traceName;
+        final LongAdder   calls       = new LongAdder();
+        final LongAdder   errors      = new LongAdder();
+        final LongAdder   totalMicros = new LongAdder();
+        final LongAdder[] buckets     = new LongAdder[BUCKETS];
+
+        MethodStats(String name) {
+            this.name = name;
+            this.traceName = "ipc " + name;
+            for (int i = 0; i < BUCKETS; i++) buckets[i] = new LongAdder();
+        }
+
+        void record(long micros, boolean error) {
+            calls.increment();
+            if (error) errors.increment();
+            totalMicros.add(micros);
+            int b = micros <= 1 ? 0 : 63 - Long.numberOfLeadingZeros(micros);
+            buckets[Math.min(b, BUCKETS - 1)].increment();
+        }
+
+        /** Upper bound of the bucket holding the {@code q} quantile, in µs; 0 if no calls. */
+        long quantileMicros(long[] counts, long total, double q) {
+            if (total == 0) return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) return 1L << (i + 1);
+            }
+            return 1L << BUCKETS;
+        }
+    }
+
+    static MethodStats stats(String name) {
+        MethodStats s = sStats.get(name);
+        return s != null ? s : sStats.computeIfAbsent(name, MethodStats::new);
+    }
+
+    /**
+     * Returns {@code target} wrapped so that every method declared by
+     * {@code type} is counted and traced under "{@code service}.method".
+     * Exceptions thrown by the target, RemoteException included, pass
+     * through unchanged.
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T instrument(Class<T> type, String service, T target) {
+        if (target == null) return null;
+        ConcurrentHashMap<Method, MethodStats> byMethod = new ConcurrentHashMap<>();
+        InvocationHandler handler = (proxy, method, args) -> {
+            if (method.getDeclaringClass() != type) return invoke(target, method, args);
+            MethodStats s = byMethod.get(method);
+            if (s == null) {
+                s = byMethod.computeIfAbsent(method, m -> stats(service + "." + m.getName()));
+            }
+            // Read once, so the section is ended iff it was begun
+            boolean traced = Trace.isEnabled();
+            if (traced) CircleTrace.begin(s.traceName);
+            long start = SystemClock.elapsedRealtimeNanos();
+            boolean error = true;
+            try {
+                Object result = invoke(target, method, args);
+                error = false;
+                return result;
+            } finally {
+                s.record((SystemClock.elapsedRealtimeNanos() - start) / 1000, error);
+                if (traced) CircleTrace.end();
+            }
+        };
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /** Writes one line per method, sorted by name. */
+    public static void dump(String prefix, PrintWriter pw) {
+        List<MethodStats> all = new ArrayList<>(sStats.values());
+        all.sort((a, b) -> a.name.compareTo(b.name));
+        pw.println(prefix + "IPC stats (" + all.size() + " methods):");
+        long[] counts = new long[BUCKETS];
+        for (MethodStats s : all) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = s.buckets[i].sum();
+                total += counts[i];
+            }
+            long calls = s.calls.sum();
+            long avg = calls > 0 ? s.totalMicros.sum() / calls : 0;
+            pw.println(prefix + "  " + s.name
+                    + " calls=" + calls
+                    + " errors=" + s.errors.sum()
+                    + " avg=" + formatMicros(avg)
+                    + " p50<=" + formatMicros(s.quantileMicros(counts, total, 0.50))
+                    + " p99<=" + formatMicros(s.quantileMicros(counts, total, 0.99)));
+        }
+    }
+
+    private static String formatMicros(long us) {
+        if (us < 1000) return us + "us";
+        if (us < 1_000_000) return (us / 1000) + "ms";
+        return String.format(Locale.US, "%.1fs", us / 1e6);
+    }
+}
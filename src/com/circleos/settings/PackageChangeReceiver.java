@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.ICirclePrivacyManager;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.util.Slog;
+
+import com.circleos.settings.privacy.PrivacyDashboardData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keeps policies and dashboard data current as packages come and go.
+ *
+ *   ADDED (fresh install) → default-deny policy for that package only
+ *   ADDED / REPLACED      → dashboard entry marked stale
+ *   REMOVED (uninstall)   → dashboard entry dropped
+ *
+ * Policy writes are coalesced: each broadcast is held open with goAsync()
+ * and flushed together once installs go quiet for {@link #BATCH_QUIET_MS},
+ * so a restore or store batch update costs one pass, not one per package.
+ * Nothing is written before the setup wizard finishes — it covers every
+ * package installed up to that point itself.
+ */
+public class PackageChangeReceiver extends BroadcastReceiver {
+
+    private static final String TAG  = "CirclePackageChange";
+    private static final String PREF = "circle_setup";
+    private static final String KEY_DONE = "wizard_done";
+
+    /** Flush once no new install has arrived for this long. */
+    private static final long BATCH_QUIET_MS = 1_500;
+    /** ...but never hold a broadcast longer than this. */
+    private static final long BATCH_MAX_WAIT_MS = 6_000;
+
+    private static final Object sLock = new Object();
+    private static final Set<String> sPendingPackages = new LinkedHashSet<>();
+    private static final List<PendingResult> sPendingResults = new ArrayList<>();
+    private static long sBatchStart;
+    private static Handler sHandler;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        Uri data = intent.getData();
+        String action = intent.getAction();
+        if (data == null || action == null) return;
+        String pkg = data.getSchemeSpecificPart();
+        boolean replacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+
+        switch (action) {
+            case Intent.ACTION_PACKAGE_ADDED:
+                PrivacyDashboardData.get().markStale(pkg);
+                if (!replacing) enqueue(context.getApplicationContext(), pkg, goAsync());
+                break;
+            case Intent.ACTION_PACKAGE_REPLACED:
+                PrivacyDashboardData.get().markStale(pkg);
+                break;
+            case Intent.ACTION_PACKAGE_REMOVED:
+                if (!replacing) PrivacyDashboardData.get().remove(pkg);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private static void enqueue(Context context, String pkg, PendingResult result) {
+        synchronized (sLock) {
+            if (sHandler == null) {
+                HandlerThread t = new HandlerThread(TAG, Process.THREAD_PRIORITY_BACKGROUND);
+                t.start();
+                sHandler = new Handler(t.getLooper());
+            }
+            long now = SystemClock.uptimeMillis();
+            if (sPendingPackages.isEmpty()) sBatchStart = now;
+            sPendingPackages.add(pkg);
+            sPendingResults.add(result);
+
+            // Debounce, bounded by the oldest held broadcast
+            long flushAt = Math.min(now + BATCH_QUIET_MS, sBatchStart + BATCH_MAX_WAIT_MS);
+            sHandler.removeCallbacksAndMessages(null);
+            sHandler.postAtTime(() -> flush(context), flushAt);
+        }
+    }
+
+    private static void flush(Context context) {
+        List<String> packages;
+        List<PendingResult> results;
+        synchronized (sLock) {
+            packages = new ArrayList<>(sPendingPackages);
+            results  = new ArrayList<>(sPendingResults);
+            sPendingPackages.clear();
+            sPendingResults.clear();
+        }
+        try {
+            applyDefaults(context, packages);
+        } finally {
+            for (PendingResult r : results) r.finish();
+        }
+    }
+
+    private static void applyDefaults(Context context, List<String> packages) {
+        boolean wizardDone = context.getSharedPreferences(PREF, Context.MODE_PRIVATE)
+                .getBoolean(KEY_DONE, false);
+        if (!wizardDone) return;
+
+        ICirclePrivacyManager manager = CircleServices.privacy();
+        if (manager == null) { Slog.w(TAG, "circle.privacy not available"); return; }
+
+        PackageManager pm = context.getPackageManager();
+        int applied = 0;
+        for (String pkg : packages) {
+            try {
+                ApplicationInfo info = pm.getApplicationInfo(pkg, 0);
+                if (!DefaultPolicies.isUserApp(info)) continue;
+                manager.setPolicy(pkg, DefaultPolicies.newDefaultDeny());
+                applied++;
+            } catch (PackageManager.NameNotFoundException e) {
+                // Uninstalled again before the batch ran
+            } catch (RemoteException e) {
+                Slog.e(TAG, "Failed to apply default policy to " + pkg, e);
+            }
+        }
+        Slog.i(TAG, "Default-deny applied to " + applied + " of " + packages.size()
+                + " newly installed packages");
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.circleos.PermissionUsageRecord;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.RemoteException;
+import android.os.TransactionTooLargeException;
+import android.util.Slog;
+
+import com.circleos.settings.privacy.PrivacyDashboardData;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming export and restore of every app's {@link AppPrivacyPolicy},
+ * for moving a user to a new device.
+ *
+ * Format, gzip-compressed, all big-endian via Data streams:
+ *   int   MAGIC, short VERSION, long createdAt, byte flags
+ *   then records, each a type byte:
+ *     POLICY  utf package, byte grants, short n, n × utf sensor
+ *     USAGE   utf package, int n, n × (long time, utf action, utf permission,
+ *             bool hasExtra, [utf extra])
+ *     END     int policyCount
+ * Sensors are written by name, never as {@link PolicyBits}, whose bit
+ * numbers are local to one process.
+ *
+ * Both directions hold one app at a time, so memory does not grow with
+ * the number of apps. Restore reads a record, compares it with the live
+ * policy as PolicyBits and skips it if nothing differs; changed policies
+ * are written in batches of {@link #BATCH}. Each written package goes into
+ * a {@link PolicyJournal} tagged with the backup's timestamp, synced once
+ * per batch, so a restore that dies part-way resumes after the last
+ * durable batch. The journal is deleted when END is reached.
+ *
+ * Audit history is exported for reference only: the privacy service has
+ * no call to write usage records, so restore counts and skips them. The
+ * service can only be asked for records since a time, so export asks for
+ * the last 90 days and falls back to 30, then 7, when that is too large
+ * for one binder transaction, then keeps at most
+ * {@link #MAX_USAGE_RECORDS} of the newest. An app whose history still
+ * cannot be read is exported without it rather than failing the export.
+ */
+public final class PolicyBackup {
+
+    private static final String TAG = "CirclePolicyBackup";
+
+    public static final String MIME_TYPE = "application/octet-stream";
+
+    private static final int   MAGIC   = 0x43504231;    // "CPB1"
+    private static final short VERSION = 1;
+
+    private static final byte FLAG_HAS_USAGE = 1;
+
+    private static final byte TYPE_POLICY = 1;
+    private static final byte TYPE_USAGE  = 2;
+    private static final byte TYPE_END    = 3;
+
+    private static final int GRANT_NETWORK  = 1;
+    private static final int GRANT_CONTACTS = 1 << 1;
+    private static final int GRANT_STORAGE  = 1 << 2;
+    private static final int GRANT_LOBBY    = 1 << 3;
+
+    private static final int BATCH = 32;
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+    private static final long[] USAGE_WINDOWS_MS = { 90 * DAY_MS, 30 * DAY_MS, 7 * DAY_MS };
+    private static final int MAX_USAGE_RECORDS = 5000;
+    private static final String JOURNAL = "policy_restore";
+    private static final String JOURNAL_TAG = "#backup:";   // never a package name
+
+    /** Called on the worker thread after every {@code n} apps. */
+    public interface Progress {
+        void onProgress(int apps);
+    }
+
+    /** Counts from one export. */
+    public static final class ExportResult {
+        public int apps;
+        public int usageOmitted;     // apps exported without their audit history
+    }
+
+    /** Counts from one restore. */
+    public static final class Result {
+        public int applied;
+        public int unchanged;
+        public int notInstalled;
+        public int resumed;          // applied by an earlier, interrupted run
+        public int usageSkipped;
+        public long elapsedMs;
+    }
+
+    private PolicyBackup() {}
+
+    // ── Export ────────────────────────────────────────────────────────────────
+
+    /** Writes every user app's policy, and optionally its recent audit history, to {@code out}. */
+    public static ExportResult export(Context context, ICirclePrivacyManager manager, OutputStream out,
+            boolean includeUsage, Progress progress)
+            throws IOException, RemoteException, InterruptedException {
+        CircleTrace.begin("PolicyBackup#export");
+        try {
+            DataOutputStream data = new DataOutputStream(new BufferedOutputStream(
+                    new GZIPOutputStream(out)));
+            data.writeInt(MAGIC);
+            data.writeShort(VERSION);
+            data.writeLong(System.currentTimeMillis());
+            data.writeByte(includeUsage ? FLAG_HAS_USAGE : 0);
+
+            ExportResult result = new ExportResult();
+            int count = 0;
+            for (ApplicationInfo app : context.getPackageManager().getInstalledApplications(0)) {
+                if (!DefaultPolicies.isUserApp(app)) continue;
+                if (Thread.interrupted()) throw new InterruptedException();
+                String pkg = app.packageName;
+                AppPrivacyPolicy policy = manager.getPolicy(pkg);
+                if (policy == null) continue;
+                writePolicy(data, pkg, policy);
+                if (includeUsage) {
+                    List<PermissionUsageRecord> records = readUsage(manager, pkg);
+                    if (records == null) result.usageOmitted++;
+                    else if (!records.isEmpty()) writeUsage(data, pkg, records);
+                }
+                if (++count % BATCH == 0 && progress != null) progress.onProgress(count);
+            }
+            data.writeByte(TYPE_END);
+            data.writeInt(count);
+            data.close();
+            if (progress != null) progress.onProgress(count);
+            result.apps = count;
+            if (result.usageOmitted > 0) {
+                Slog.w(TAG, "Export: audit history left out for " + result.usageOmitted + " apps");
+            }
+            return result;
+        } finally {
+            CircleTrace.end();
+        }
+    }
+
+    private static void writePolicy(DataOutputStream data, String pkg, AppPrivacyPolicy p)
+            throws IOException {
+        int grants = 0;
+        if (p.networkAllowed)  grants |= GRANT_NETWORK;
+        if (p.contactsAllowed) grants |= GRANT_CONTACTS;
+        if (p.storageAllowed)  grants |= GRANT_STORAGE;
+        if (p.lobbyMode)       grants |= GRANT_LOBBY;
+        List<String> sensors = p.allowedSensors != null ? p.allowedSensors : new ArrayList<>();
+        data.writeByte(TYPE_POLICY);
+        data.writeUTF(pkg);
+        data.writeByte(grants);
+        data.writeShort(sensors.size());
+        for (String s : sensors) data.writeUTF(s);
+    }
+
+    /**
+     * The newest records of {@code pkg}, within the widest window that fits
+     * in one transaction, or null if none could be read.
+     */
+    private static List<PermissionUsageRecord> readUsage(ICirclePrivacyManager manager,
+            String pkg) {
+        for (long window : USAGE_WINDOWS_MS) {
+            try {
+                List<PermissionUsageRecord> records =
+                        manager.getUsageLog(pkg, System.currentTimeMillis() - window);
+                if (records == null) return new ArrayList<>();
+                if (records.size() > MAX_USAGE_RECORDS) {
+                    records.sort((a, b) -> Long.compare(b.timestamp, a.timestamp));
+                    records = records.subList(0, MAX_USAGE_RECORDS);
+                }
+                return records;
+            } catch (TransactionTooLargeException e) {
+                Slog.w(TAG, "Audit history of " + pkg + " over " + window / DAY_MS
+                        + " days is too large, narrowing");
+            } catch (RemoteException | RuntimeException e) {
+                Slog.w(TAG, "Cannot read audit history of " + pkg, e);
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private static void writeUsage(DataOutputStream data, String pkg,
+            List<PermissionUsageRecord> records) throws IOException {
+        data.writeByte(TYPE_USAGE);
+        data.writeUTF(pkg);
+        data.writeInt(records.size());
+        for (PermissionUsageRecord r : records) {
+            data.writeLong(r.timestamp);
+            data.writeUTF(r.action != null ? r.action : "");
+            data.writeUTF(r.permission != null ? r.permission : "");
+            data.writeBoolean(r.extra != null);
+            if (r.extra != null) data.writeUTF(r.extra);
+        }
+    }
+
+    // ── Restore ───────────────────────────────────────────────────────────────
+
+    /**
+     * Applies the policies in {@code in} to the installed apps. Throws
+     * IOException for a foreign, newer or truncated stream; batches written
+     * before the error stay applied and are journaled for the retry.
+     */
+    public static Result restore(Context context, ICirclePrivacyManager manager, InputStream in,
+            Progress progress) throws IOException, RemoteException, InterruptedException {
+        CircleTrace.begin("PolicyBackup#restore");
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        PolicyJournal journal = PolicyJournal.open(context, JOURNAL);
+        try {
+            DataInputStream data = new DataInputStream(new BufferedInputStream(
+                    new GZIPInputStream(in)));
+            if (data.readInt() != MAGIC) throw new IOException("Not a CircleOS policy backup");
+            short version = data.readShort();
+            if (version > VERSION) throw new IOException("Backup version " + version + " is newer than this device supports");
+            String tag = JOURNAL_TAG + data.readLong();
+            data.readByte();        // flags; records are self-describing
+
+            Set<String> done = journal.load();
+            if (!done.contains(tag)) {
+                journal.delete();   // left by a different backup
+                done.clear();
+                journal.append(tag);
+            }
+
+            PackageManager pm = context.getPackageManager();
+            List<String> batchPkgs = new ArrayList<>(BATCH);
+            List<AppPrivacyPolicy> batchPolicies = new ArrayList<>(BATCH);
+            int seen = 0;
+            while (true) {
+                if (Thread.interrupted()) throw new InterruptedException();
+                byte type = data.readByte();
+                if (type == TYPE_END) {
+                    data.readInt();
+                    break;
+                } else if (type == TYPE_USAGE) {
+                    result.usageSkipped += skipUsage(data);
+                    continue;
+                } else if (type != TYPE_POLICY) {
+                    throw new IOException("Corrupt backup: record type " + type);
+                }
+
+                String pkg = data.readUTF();
+                long wanted = readPolicyBits(data);
+                if (++seen % BATCH == 0 && progress != null) progress.onProgress(seen);
+
+                if (done.contains(pkg)) { result.resumed++; continue; }
+                if (!isInstalled(pm, pkg)) { result.notInstalled++; continue; }
+                AppPrivacyPolicy current = manager.getPolicy(pkg);
+                if (PolicyBits.encode(current) == wanted) { result.unchanged++; continue; }
+
+                AppPrivacyPolicy target = current != null ? current : new AppPrivacyPolicy();
+                PolicyBits.apply(wanted, target);
+                batchPkgs.add(pkg);
+                batchPolicies.add(target);
+                if (batchPkgs.size() == BATCH) {
+                    result.applied += flush(manager, journal, batchPkgs, batchPolicies);
+                }
+            }
+            result.applied += flush(manager, journal, batchPkgs, batchPolicies);
+            journal.delete();
+            if (progress != null) progress.onProgress(seen);
+        } finally {
+            journal.close();
+            CircleTrace.end();
+        }
+        result.elapsedMs = System.currentTimeMillis() - start;
+        Slog.i(TAG, "Restore: " + result.applied + " applied, " + result.unchanged
+                + " unchanged, " + result.notInstalled + " not installed, " + result.resumed
+                + " resumed in " + result.elapsedMs + "ms");
+        return result;
+    }
+
+    /**
+     * Writes one batch, journaling each package, then makes the journal
+     * durable once. The service has no bulk setter, so the batch saves
+     * fsyncs and cache invalidation rather than binder calls.
+     */
+    private static int flush(ICirclePrivacyManager manager, PolicyJournal journal,
+            List<String> pkgs, List<AppPrivacyPolicy> policies)
+            throws RemoteException, IOException {
+        int n = pkgs.size();
+        if (n == 0) return 0;
+        PrivacyDashboardData cache = PrivacyDashboardData.get();
+        for (int i = 0; i < n; i++) {
+            manager.setPolicy(pkgs.get(i), policies.get(i));
+            journal.append(pkgs.get(i));
+            cache.markStale(pkgs.get(i));
+        }
+        journal.sync();
+        pkgs.clear();
+        policies.clear();
+        return n;
+    }
+
+    private static long readPolicyBits(DataInputStream data) throws IOException {
+        int grants = data.readUnsignedByte();
+        long bits = 0;
+        if ((grants & GRANT_NETWORK) != 0)  bits |= PolicyBits.NETWORK;
+        if ((grants & GRANT_CONTACTS) != 0) bits |= PolicyBits.CONTACTS;
+        if ((grants & GRANT_STORAGE) != 0)  bits |= PolicyBits.STORAGE;
+        if ((grants & GRANT_LOBBY) != 0)    bits |= PolicyBits.LOBBY;
+        int sensors = data.readUnsignedShort();
+        for (int i = 0; i < sensors; i++) bits |= PolicyBits.sensorBit(data.readUTF());
+        return bits;
+    }
+
+    private static int skipUsage(DataInputStream data) throws IOException {
+        data.readUTF();
+        int n = data.readInt();
+        for (int i = 0; i < n; i++) {
+            data.readLong();
+            data.readUTF();
+            data.readUTF();
+            if (data.readBoolean()) data.readUTF();
+        }
+        return n;
+    }
+
+    private static boolean isInstalled(PackageManager pm, String pkg) {
+        try {
+            return DefaultPolicies.isUserApp(pm.getApplicationInfo(pkg, 0));
+        } catch (PackageManager.NameNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.util.Slog;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * Exports all app privacy policies to a file the user picks, and restores
+ * them from one, via {@link PolicyBackup}. Both run on a background
+ * thread with running counts; leaving the screen cancels them, and an
+ * interrupted restore resumes from its journal when started again.
+ */
+public class PolicyBackupActivity extends Activity {
+
+    private static final String TAG = "CirclePolicyBackupUi";
+
+    private static final int REQUEST_EXPORT  = 1;
+    private static final int REQUEST_RESTORE = 2;
+
+    private CheckBox  mIncludeUsage;
+    private Button    mBtnExport;
+    private Button    mBtnRestore;
+    private TextView  mTvStatus;
+    private Future<?> mTask;
+
+    private final ScreenTimer mTimer = new ScreenTimer("PolicyBackup");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+        mTimer.contentShown();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mTask != null) mTask.cancel(true);
+    }
+
+    private void onExport() {
+        String name = "circleos-privacy-"
+                + new SimpleDateFormat("yyyyMMdd-HHmm", Locale.US).format(new Date()) + ".cpb";
+        Intent create = new Intent(Intent.ACTION_CREATE_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType(PolicyBackup.MIME_TYPE)
+                .putExtra(Intent.EXTRA_TITLE, name);
+        startActivityForResult(create, REQUEST_EXPORT);
+    }
+
+    private void onRestore() {
+        Intent open = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType("*/*");
+        startActivityForResult(open, REQUEST_RESTORE);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (resultCode != RESULT_OK || data == null || data.getData() == null) return;
+        Uri uri = data.getData();
+        if (requestCode == REQUEST_EXPORT) startExport(uri);
+        else if (requestCode == REQUEST_RESTORE) startRestore(uri);
+    }
+
+    private void startExport(Uri uri) {
+        boolean includeUsage = mIncludeUsage.isChecked();
+        Context app = getApplicationContext();
+        run("Exporting…", () -> {
+            try (OutputStream out = app.getContentResolver().openOutputStream(uri)) {
+                if (out == null) throw new IOException("Cannot open " + uri);
+                PolicyBackup.ExportResult r = PolicyBackup.export(app,
+                        CircleServices.requirePrivacy(), out, includeUsage,
+                        apps -> status(String.format(Locale.US, "Exporting… %,d apps", apps)));
+                String s = String.format(Locale.US, "Exported %,d apps%s", r.apps,
+                        includeUsage ? " with recent audit history" : "");
+                if (r.usageOmitted > 0) {
+                    s += String.format(Locale.US, "\nAudit history could not be read for %,d apps",
+                            r.usageOmitted);
+                }
+                return s;
+            }
+        });
+    }
+
+    private void startRestore(Uri uri) {
+        Context app = getApplicationContext();
+        run("Restoring…", () -> {
+            try (InputStream in = app.getContentResolver().openInputStream(uri)) {
+                if (in == null) throw new IOException("Cannot open " + uri);
+                PolicyBackup.Result r = PolicyBackup.restore(app, CircleServices.requirePrivacy(),
+                        in, apps -> status(String.format(Locale.US,
+                                "Restoring… %,d apps read", apps)));
+                String s = String.format(Locale.US,
+                        "Restored in %.1fs\n%,d changed · %,d already matched · %,d not installed",
+                        r.elapsedMs / 1000.0, r.applied, r.unchanged, r.notInstalled);
+                if (r.resumed > 0) s += String.format(Locale.US, " · %,d from an earlier run", r.resumed);
+                if (r.usageSkipped > 0) s += "\nAudit history in the backup is not restored";
+                return s;
+            }
+        });
+    }
+
+    /** Body of a background task; returns the final status line. */
+    private interface Task {
+        String run() throws Exception;
+    }
+
+    private void run(String label, Task task) {
+        if (mTask != null) mTask.cancel(true);
+        mTvStatus.setText(label);
+        setRunning(true);
+        mTask = CircleExecutors.background().submit(() -> {
+            String summary;
+            try {
+                summary = task.run();
+            } catch (InterruptedException e) {
+                return; // screen closed
+            } catch (Exception e) {
+                Slog.e(TAG, label + " failed", e);
+                summary = "Error: " + e.getMessage();
+            }
+            String done = summary;
+            runOnUiThread(() -> {
+                mTvStatus.setText(done);
+                setRunning(false);
+            });
+        });
+    }
+
+    private void status(String text) {
+        runOnUiThread(() -> mTvStatus.setText(text));
+    }
+
+    private void setRunning(boolean running) {
+        mBtnExport.setEnabled(!running);
+        mBtnRestore.setEnabled(!running);
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+
+        root.addView(makeTitle("Backup & Restore"));
+
+        LinearLayout exportCard = makeCard();
+        exportCard.addView(makeLabel("Save every app's privacy settings to a file, "
+                + "to restore on this or another device.", 13, 0xFF666666));
+        mIncludeUsage = new CheckBox(this);
+        mIncludeUsage.setText("Include recent audit history");
+        exportCard.addView(mIncludeUsage);
+        mBtnExport = makeButton("Export…", 0xFF1A1A2E);
+        mBtnExport.setOnClickListener(v -> onExport());
+        exportCard.addView(mBtnExport);
+        root.addView(exportCard);
+
+        LinearLayout restoreCard = makeCard();
+        restoreCard.addView(makeLabel("Apply settings from a backup. Apps that are "
+                + "not installed, or already match, are left alone.", 13, 0xFF666666));
+        mBtnRestore = makeButton("Restore…", 0xFF2E4057);
+        mBtnRestore.setOnClickListener(v -> onRestore());
+        restoreCard.addView(mBtnRestore);
+        root.addView(restoreCard);
+
+        mTvStatus = makeLabel("", 13, 0xFF048A81);
+        mTvStatus.setPadding(dp(4), dp(6), dp(4), 0);
+        root.addView(mTvStatus);
+
+        return root;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private LinearLayout makeCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xFFFFFFFF);
+        card.setPadding(dp(16), dp(12), dp(16), dp(12));
+        card.setLayoutParams(cardParams());
+        return card;
+    }
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private Button makeButton(String text, int color) {
+        Button b = new Button(this);
+        b.setText(text);
+        b.setTextColor(0xFFFFFFFF);
+        b.setBackgroundColor(color);
+        return b;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
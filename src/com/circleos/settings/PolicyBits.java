@@ -0,0 +1,164 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.util.Slog;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Encodes the grant fields of an {@link AppPrivacyPolicy} as one long, so
+ * equality, diffing and bulk comparison are single-word operations.
+ *
+ * Layout:
+ *   bits 0-3   network, contacts, storage, lobby
+ *   bit  7     {@link #NO_POLICY}: the service had no policy
+ *   bits 8-55  one bit per sensor, from the sensor registry
+ *   bits 56-63 never set; callers may pack a small value there
+ *
+ * The built-in sensors always hold the first sensor bits in a fixed
+ * order. Any other sensor name met while encoding is given the next free
+ * bit for the life of the process. Bit assignments are therefore not
+ * stable across processes: encoded values are for in-memory caching and
+ * comparison only, never for disk or IPC.
+ *
+ * Only the fields above are coded. Use {@link #apply} to write bits back
+ * onto a policy fetched from the service, so anything else it carries is
+ * kept.
+ */
+public final class PolicyBits {
+
+    private static final String TAG = "CirclePolicyBits";
+
+    public static final long NETWORK   = 1L;
+    public static final long CONTACTS  = 1L << 1;
+    public static final long STORAGE   = 1L << 2;
+    public static final long LOBBY     = 1L << 3;
+    public static final long NO_POLICY = 1L << 7;
+
+    public static final long FLAGS_MASK = NETWORK | CONTACTS | STORAGE | LOBBY;
+
+    private static final int FIRST_SENSOR_BIT = 8;
+    private static final int MAX_SENSORS      = 48;
+    public  static final long SENSORS_MASK    = ((1L << MAX_SENSORS) - 1) << FIRST_SENSOR_BIT;
+
+    /** First bit callers may use for their own data alongside a policy. */
+    public static final int SPARE_SHIFT = FIRST_SENSOR_BIT + MAX_SENSORS;
+
+    private static final String[] BUILTIN_SENSORS = {
+        "ACCELEROMETER", "GYROSCOPE", "BAROMETER", "MAGNETOMETER"
+    };
+
+    // ── Sensor registry ───────────────────────────────────────────────────────
+
+    private static final ConcurrentHashMap<String, Integer> sSensorIndex = new ConcurrentHashMap<>();
+    private static volatile String[] sSensors = new String[0];      // copy-on-write, by index
+    private static boolean sFullLogged;                              // guarded by PolicyBits.class
+
+    static {
+        for (String s : BUILTIN_SENSORS) register(s);
+    }
+
+    private PolicyBits() {}
+
+    /** The bit for {@code sensor}, assigning one if it is new; 0 if the registry is full. */
+    public static long sensorBit(String sensor) {
+        Integer index = sSensorIndex.get(sensor);
+        if (index == null) index = register(sensor);
+        return index < 0 ? 0 : 1L << (FIRST_SENSOR_BIT + index);
+    }
+
+    /** Sensor name for a single sensor bit, or null if none is assigned. */
+    public static String sensorName(long bit) {
+        int index = Long.numberOfTrailingZeros(bit) - FIRST_SENSOR_BIT;
+        String[] sensors = sSensors;
+        return index >= 0 && index < sensors.length ? sensors[index] : null;
+    }
+
+    private static synchronized int register(String sensor) {
+        Integer existing = sSensorIndex.get(sensor);
+        if (existing != null) return existing;
+        String[] old = sSensors;
+        if (old.length >= MAX_SENSORS) {
+            if (!sFullLogged) {
+                Slog.w(TAG, "Sensor registry full; not coding " + sensor);
+                sFullLogged = true;
+            }
+            return -1;
+        }
+        String[] grown = new String[old.length + 1];
+        System.arraycopy(old, 0, grown, 0, old.length);
+        grown[old.length] = sensor;
+        sSensors = grown;
+        sSensorIndex.put(sensor, old.length);
+        return old.length;
+    }
+
+    // ── Codec ─────────────────────────────────────────────────────────────────
+
+    public static long encode(AppPrivacyPolicy policy) {
+        if (policy == null) return NO_POLICY;
+        long bits = 0;
+        if (policy.networkAllowed)  bits |= NETWORK;
+        if (policy.contactsAllowed) bits |= CONTACTS;
+        if (policy.storageAllowed)  bits |= STORAGE;
+        if (policy.lobbyMode)       bits |= LOBBY;
+        if (policy.allowedSensors != null) {
+            for (String sensor : policy.allowedSensors) bits |= sensorBit(sensor);
+        }
+        return bits;
+    }
+
+    /** A fresh policy carrying exactly the coded fields, or null for {@link #NO_POLICY}. */
+    public static AppPrivacyPolicy decode(long bits) {
+        if ((bits & NO_POLICY) != 0) return null;
+        AppPrivacyPolicy policy = new AppPrivacyPolicy();
+        apply(bits, policy);
+        return policy;
+    }
+
+    /** Overwrites the coded fields of {@code target}; other fields are untouched. */
+    public static void apply(long bits, AppPrivacyPolicy target) {
+        target.networkAllowed  = (bits & NETWORK)  != 0;
+        target.contactsAllowed = (bits & CONTACTS) != 0;
+        target.storageAllowed  = (bits & STORAGE)  != 0;
+        target.lobbyMode       = (bits & LOBBY)    != 0;
+        target.allowedSensors  = sensors(bits);
+    }
+
+    /** Granted sensor names in bit order. */
+    public static List<String> sensors(long bits) {
+        List<String> out = new ArrayList<>(Long.bitCount(bits & SENSORS_MASK));
+        for (long rest = bits & SENSORS_MASK; rest != 0; rest &= rest - 1) {
+            String name = sensorName(Long.lowestOneBit(rest));
+            if (name != null) out.add(name);
+        }
+        return out;
+    }
+
+    // ── Word operations ───────────────────────────────────────────────────────
+
+    public static boolean has(long bits, long flag) {
+        return (bits & flag) != 0;
+    }
+
+    public static long with(long bits, long flag, boolean on) {
+        return on ? bits | flag : bits & ~flag;
+    }
+
+    /** Bits granted in {@code after} but not in {@code before}. */
+    public static long granted(long before, long after) {
+        return after & ~before;
+    }
+
+    /** Bits granted in {@code before} but not in {@code after}. */
+    public static long revoked(long before, long after) {
+        return before & ~after;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.content.Context;
+import android.util.Slog;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append-only on-disk journal of packages that have had a policy written.
+ *
+ * One package name per line. A line only counts once its trailing newline
+ * is on disk, so a torn write from a killed process is ignored on the next
+ * load. Entries are fsync'd every {@link #SYNC_EVERY} appends — replaying
+ * the unsynced tail after a crash is safe because every policy write
+ * recorded here is idempotent.
+ *
+ * The journal is deleted once the owner has durably recorded completion.
+ */
+final class PolicyJournal implements AutoCloseable {
+
+    private static final String TAG = "CirclePolicyJournal";
+    private static final int SYNC_EVERY = 16;
+
+    private final File mFile;
+    private FileOutputStream mOut;
+    private int mUnsynced;
+
+    PolicyJournal(File file) {
+        mFile = file;
+    }
+
+    /** Journal stored in the app's no-backup dir so it never migrates devices. */
+    static PolicyJournal open(Context context, String name) {
+        return new PolicyJournal(new File(context.getNoBackupFilesDir(), name + ".journal"));
+    }
+
+    /** Returns the set of packages with a complete journal entry. */
+    Set<String> load() {
+        Set<String> done = new HashSet<>();
+        if (!mFile.exists()) return done;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new FileInputStream(mFile), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1) {
+                if (c == '\n') {
+                    if (line.length() > 0) done.add(line.toString());
+                    line.setLength(0);
+                } else {
+                    line.append((char) c);
+                }
+            }
+            // Anything left in 'line' had no terminator — a torn write; drop it.
+        } catch (IOException e) {
+            Slog.w(TAG, "Unreadable journal " + mFile + ", starting over", e);
+            done.clear();
+        }
+        return done;
+    }
+
+    /** Records {@code packageName} as applied. */
+    void append(String packageName) throws IOException {
+        if (mOut == null) mOut = new FileOutputStream(mFile, true /* append */);
+        mOut.write((packageName + "\n").getBytes(StandardCharsets.UTF_8));
+        if (++mUnsynced >= SYNC_EVERY) sync();
+    }
+
+    /** Forces all appended entries to disk. */
+    void sync() throws IOException {
+        if (mOut == null || mUnsynced == 0) return;
+        mOut.flush();
+        mOut.getFD().sync();
+        mUnsynced = 0;
+    }
+
+    @Override
+    public void close() {
+        if (mOut == null) return;
+        try {
+            sync();
+            mOut.close();
+        } catch (IOException e) {
+            Slog.w(TAG, "Failed to close journal " + mFile, e);
+        }
+        mOut = null;
+    }
+
+    /** Discards the journal; call only after completion is durably recorded elsewhere. */
+    void delete() {
+        close();
+        if (mFile.exists() && !mFile.delete()) {
+            Slog.w(TAG, "Failed to delete journal " + mFile);
+        }
+    }
+}
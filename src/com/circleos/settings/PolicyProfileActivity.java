@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.app.Activity;
+import android.content.Context;
+import android.os.Bundle;
+import android.util.Slog;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * Lists the built-in {@link PolicyProfiles}. Each can be previewed (a dry
+ * run listing the apps that would change) or applied; both run on a
+ * background thread and report progress. Leaving the screen stops a run
+ * between apps; the writes already sent stay applied.
+ */
+public class PolicyProfileActivity extends Activity {
+
+    private static final String TAG = "CirclePolicyProfileUi";
+
+    private static final int MAX_LISTED = 10;
+
+    private final List<Button> mButtons = new ArrayList<>();
+    private TextView  mTvStatus;
+    private Future<?> mTask;
+
+    private final ScreenTimer mTimer = new ScreenTimer("PolicyProfile");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+        mTimer.contentShown();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mTask != null) mTask.cancel(true);
+    }
+
+    private void run(PolicyProfiles.Profile profile, boolean dryRun) {
+        if (mTask != null) mTask.cancel(true);
+        mTvStatus.setText((dryRun ? "Checking " : "Applying ") + profile.name + "…");
+        setRunning(true);
+        Context app = getApplicationContext();
+        mTask = CircleExecutors.background().submit(() -> {
+            String summary;
+            try {
+                PolicyProfiles.Result r = PolicyProfiles.apply(app,
+                        CircleServices.requirePrivacy(), profile, dryRun,
+                        (scanned, changed) -> status(String.format(Locale.US,
+                                "%s… %,d apps checked, %,d to change", profile.name,
+                                scanned, changed)),
+                        () -> {
+                            if (Thread.currentThread().isInterrupted()) {
+                                throw new InterruptedException();
+                            }
+                        });
+                summary = dryRun ? describePreview(profile, r) : describeApplied(profile, r);
+            } catch (InterruptedException e) {
+                return; // screen closed
+            } catch (Exception e) {
+                Slog.e(TAG, "Profile " + profile.id + " failed", e);
+                summary = "Error: " + e.getMessage();
+            }
+            String done = summary;
+            runOnUiThread(() -> {
+                mTvStatus.setText(done);
+                setRunning(false);
+            });
+        });
+    }
+
+    private static String describePreview(PolicyProfiles.Profile p, PolicyProfiles.Result r) {
+        if (r.changed == 0) {
+            return String.format(Locale.US, "%s: %,d apps match, all already set up", p.name, r.matched);
+        }
+        StringBuilder sb = new StringBuilder(String.format(Locale.US,
+                "%s would change %,d of %,d matching apps:", p.name, r.changed, r.matched));
+        int n = Math.min(MAX_LISTED, r.changedPackages.size());
+        for (int i = 0; i < n; i++) sb.append("\n  ").append(r.changedPackages.get(i));
+        if (r.changedPackages.size() > n) sb.append("\n  … and ").append(r.changedPackages.size() - n).append(" more");
+        return sb.toString();
+    }
+
+    private static String describeApplied(PolicyProfiles.Profile p, PolicyProfiles.Result r) {
+        String s = String.format(Locale.US, "%s applied in %.1fs: %,d changed, %,d already matched",
+                p.name, r.elapsedMs / 1000.0, r.changed - r.failed, r.matched - r.changed);
+        if (r.failed > 0) s += String.format(Locale.US, ", %,d failed", r.failed);
+        return s;
+    }
+
+    private void status(String text) {
+        runOnUiThread(() -> mTvStatus.setText(text));
+    }
+
+    private void setRunning(boolean running) {
+        for (Button b : mButtons) b.setEnabled(!running);
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        ScrollView scroll = new ScrollView(this);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+        scroll.addView(root);
+
+        root.addView(makeTitle("Privacy Profiles"));
+
+        for (PolicyProfiles.Profile profile : PolicyProfiles.builtIn()) {
+            LinearLayout card = makeCard();
+            card.addView(makeLabel(profile.name, 16, 0xFF1A1A2E));
+            card.addView(makeLabel(profile.description, 13, 0xFF666666));
+            LinearLayout row = makeRow();
+            Button preview = makeButton("Preview", 0xFF2E4057);
+            preview.setOnClickListener(v -> run(profile, true));
+            row.addView(preview);
+            row.addView(spacer());
+            Button apply = makeButton("Apply", 0xFF1A1A2E);
+            apply.setOnClickListener(v -> run(profile, false));
+            row.addView(apply);
+            mButtons.add(preview);
+            mButtons.add(apply);
+            card.addView(row);
+            root.addView(card);
+        }
+
+        mTvStatus = makeLabel("", 13, 0xFF048A81);
+        mTvStatus.setPadding(dp(4), dp(6), dp(4), 0);
+        root.addView(mTvStatus);
+
+        return scroll;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private LinearLayout makeCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xFFFFFFFF);
+        card.setPadding(dp(16), dp(12), dp(16), dp(12));
+        card.setLayoutParams(cardParams());
+        return card;
+    }
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private Button makeButton(String text, int color) {
+        Button b = new Button(this);
+        b.setText(text);
+        b.setTextColor(0xFFFFFFFF);
+        b.setBackgroundColor(color);
+        return b;
+    }
+
+    private LinearLayout makeRow() {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setPadding(0, dp(6), 0, dp(2));
+        return row;
+    }
+
+    private View spacer() {
+        View v = new View(this);
+        v.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        return v;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
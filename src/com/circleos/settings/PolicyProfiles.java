@@ -0,0 +1,214 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.RemoteException;
+import android.util.Slog;
+
+import com.circleos.settings.privacy.PrivacyDashboardData;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Named policy profiles applied across a group of apps.
+ *
+ * A {@link Profile} is a {@link Rule} that picks target apps plus two
+ * {@link PolicyBits} masks: grants to set and grants to clear. Anything
+ * neither mask mentions keeps the app's current value. For each target
+ * the engine computes {@code (current & ~clear) | set}. If that equals
+ * the current policy the app is skipped, so only writes that change
+ * something are sent, and re-applying a profile writes nothing.
+ *
+ * Rules look at package facts first (category, installer) and the policy
+ * is fetched only for apps that pass. Writes go out in batches of
+ * {@link #BATCH}, with progress after each.
+ */
+public final class PolicyProfiles {
+
+    private static final String TAG = "CirclePolicyProfiles";
+
+    private static final int BATCH = 32;
+
+    /** Installers whose apps are not treated as sideloaded. */
+    private static final Set<String> STORE_INSTALLERS = new HashSet<>(Arrays.asList(
+            "com.android.vending", "org.fdroid.fdroid", "com.aurora.store"));
+
+    /** Every grant a profile can clear, i.e. all but lobby mode. */
+    private static final long ALL_GRANTS = PolicyBits.NETWORK | PolicyBits.CONTACTS
+            | PolicyBits.STORAGE | PolicyBits.SENSORS_MASK;
+
+    /**
+     * Selects target apps. The policy is fetched, and {@link #matchesPolicy}
+     * asked, only for apps that pass {@link #matchesApp}.
+     */
+    public interface Rule {
+        boolean matchesApp(ApplicationInfo app, PackageManager pm);
+        default boolean matchesPolicy(long policy) { return true; }
+    }
+
+    public static final class Profile {
+        public final String id;
+        public final String name;
+        public final String description;
+        final Rule rule;
+        final long set;
+        final long clear;
+
+        Profile(String id, String name, String description, Rule rule, long set, long clear) {
+            this.id          = id;
+            this.name        = name;
+            this.description = description;
+            this.rule        = rule;
+            this.set         = set;
+            this.clear       = clear & ~set;
+        }
+
+        /** The policy this profile turns {@code current} into. */
+        long applyTo(long current) {
+            return (current & ~clear) | set;
+        }
+    }
+
+    public interface Progress {
+        void onProgress(int scanned, int changed);
+    }
+
+    /** Counts from one run. */
+    public static final class Result {
+        public int scanned;          // user apps looked at
+        public int matched;          // apps the rule selected
+        public int changed;          // writes sent (or that would be, for a preview)
+        public int failed;
+        public final List<String> changedPackages = new ArrayList<>();
+        public long elapsedMs;
+    }
+
+    private static final List<Profile> BUILT_IN = Collections.unmodifiableList(Arrays.asList(
+            new Profile("strict", "Strict",
+                    "Every app that holds any grant loses all of them",
+                    new Rule() {
+                        @Override public boolean matchesApp(ApplicationInfo app, PackageManager pm) {
+                            return true;
+                        }
+                        @Override public boolean matchesPolicy(long policy) {
+                            return (policy & ALL_GRANTS) != 0;
+                        }
+                    },
+                    0, ALL_GRANTS),
+            new Profile("social", "Social apps",
+                    "Social apps get network and contacts, but no sensors",
+                    (app, pm) -> app.category == ApplicationInfo.CATEGORY_SOCIAL,
+                    PolicyBits.NETWORK | PolicyBits.CONTACTS,
+                    PolicyBits.SENSORS_MASK),
+            new Profile("games", "Games",
+                    "Games get motion sensors only; no contacts, storage or other sensors",
+                    (app, pm) -> app.category == ApplicationInfo.CATEGORY_GAME,
+                    PolicyBits.sensorBit("ACCELEROMETER") | PolicyBits.sensorBit("GYROSCOPE"),
+                    PolicyBits.CONTACTS | PolicyBits.STORAGE | PolicyBits.SENSORS_MASK),
+            new Profile("sideloaded", "Sideloaded apps",
+                    "Apps not installed from a store lose network access",
+                    (app, pm) -> {
+                        String installer = installerOf(pm, app.packageName);
+                        return installer == null || !STORE_INSTALLERS.contains(installer);
+                    },
+                    0, PolicyBits.NETWORK)));
+
+    private PolicyProfiles() {}
+
+    public static List<Profile> builtIn() {
+        return BUILT_IN;
+    }
+
+    /**
+     * Applies {@code profile} to every matching user app, or with
+     * {@code dryRun} only counts what would change.
+     */
+    public static Result apply(Context context, ICirclePrivacyManager manager, Profile profile,
+            boolean dryRun, Progress progress, AutoRevoker.StopSignal stop)
+            throws RemoteException, InterruptedException {
+        CircleTrace.begin("PolicyProfiles#apply");
+        long start = System.currentTimeMillis();
+        Result result = new Result();
+        try {
+            PackageManager pm = context.getPackageManager();
+            List<String> batchPkgs = new ArrayList<>(BATCH);
+            List<AppPrivacyPolicy> batchPolicies = new ArrayList<>(BATCH);
+            for (ApplicationInfo app : pm.getInstalledApplications(0)) {
+                if (!DefaultPolicies.isUserApp(app)) continue;
+                stop.check();
+                result.scanned++;
+                if (!profile.rule.matchesApp(app, pm)) continue;
+
+                AppPrivacyPolicy current = manager.getPolicy(app.packageName);
+                long before = PolicyBits.encode(current);
+                if (!profile.rule.matchesPolicy(before)) continue;
+                result.matched++;
+
+                long after = profile.applyTo(before & ~PolicyBits.NO_POLICY);
+                if (after == before) continue;          // already matches the profile
+                result.changed++;
+                result.changedPackages.add(app.packageName);
+                if (dryRun) continue;
+
+                AppPrivacyPolicy target = current != null ? current : new AppPrivacyPolicy();
+                PolicyBits.apply(after, target);
+                batchPkgs.add(app.packageName);
+                batchPolicies.add(target);
+                if (batchPkgs.size() == BATCH) {
+                    result.failed += flush(manager, batchPkgs, batchPolicies);
+                    if (progress != null) progress.onProgress(result.scanned, result.changed);
+                }
+            }
+            result.failed += flush(manager, batchPkgs, batchPolicies);
+            if (progress != null) progress.onProgress(result.scanned, result.changed);
+        } finally {
+            CircleTrace.end();
+        }
+        result.elapsedMs = System.currentTimeMillis() - start;
+        Slog.i(TAG, (dryRun ? "Preview " : "Applied ") + profile.id + ": " + result.matched
+                + " matched, " + result.changed + " changed, " + result.failed + " failed in "
+                + result.elapsedMs + "ms");
+        return result;
+    }
+
+    /** Sends one batch; returns how many writes failed. */
+    private static int flush(ICirclePrivacyManager manager, List<String> pkgs,
+            List<AppPrivacyPolicy> policies) throws RemoteException {
+        int failed = 0;
+        PrivacyDashboardData cache = PrivacyDashboardData.get();
+        for (int i = 0; i < pkgs.size(); i++) {
+            try {
+                manager.setPolicy(pkgs.get(i), policies.get(i));
+                cache.markStale(pkgs.get(i));
+            } catch (IllegalArgumentException | IllegalStateException e) {
+                // Rejected by the service (e.g. uninstalled meanwhile); the rest still go
+                Slog.w(TAG, "Failed to set policy for " + pkgs.get(i), e);
+                failed++;
+            }
+        }
+        pkgs.clear();
+        policies.clear();
+        return failed;
+    }
+
+    private static String installerOf(PackageManager pm, String pkg) {
+        try {
+            return pm.getInstallSourceInfo(pkg).getInstallingPackageName();
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.os.Build;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.Printer;
+import android.util.Slog;
+
+import com.circleos.settings.fake.FakeServices;
+
+/**
+ * Per-screen load timing, for benchmarking screens against
+ * {@link FakeServices} with a known latency and data size.
+ *
+ * An activity calls {@link #begin()} at the top of onCreate and
+ * {@link #contentShown()} when its first real content is bound. One line
+ * is logged per screen load:
+ *
+ *   CircleScreenTiming: PrivacyDashboard ttfc=412ms blocked=38ms
+ *
+ * where ttfc is time to first content and blocked is how long the main
+ * thread spent dispatching messages in that interval. Only active on
+ * debuggable builds with persist.circle.settings.screen_timing set, or
+ * whenever fake services are on; otherwise every call is a no-op.
+ *
+ * Main-thread time comes from the main looper's message logging, installed
+ * with {@link Looper#setMessageLogging} once per process and shared by all
+ * timers. Looper has no getter for its Printer, and this app installs no
+ * other, so any Printer set from outside (e.g. by a debugger) is replaced
+ * while timing is on; {@link #reset()} removes ours again.
+ *
+ * The robolectric suite (tests/robotests) registers a {@link Listener} and
+ * fails when a screen goes over its budget.
+ */
+public final class ScreenTimer {
+
+    private static final String TAG = "CircleScreenTiming";
+
+    static final String PROP_ENABLED = "persist.circle.settings.screen_timing";
+
+    private static final boolean sPropEnabled =
+            Build.IS_DEBUGGABLE && SystemProperties.getBoolean(PROP_ENABLED, false);
+
+    /** Receives each screen load as it is logged. */
+    public interface Listener {
+        void onContentShown(String screen, long ttfcMs, long blockedMs);
+    }
+
+    private static Listener sListener;      // main thread only
+
+    private final String mScreen;
+    private long mStartUptime;      // 0 = not running
+    private long mStartBlocked;
+
+    public ScreenTimer(String screen) {
+        mScreen = screen;
+    }
+
+    public static boolean isEnabled() {
+        return sPropEnabled || FakeServices.isEnabled();
+    }
+
+    /** Main thread. Also gets every load from now on; null to stop. */
+    static void setListener(Listener listener) {
+        sListener = listener;
+    }
+
+    /** Main thread. Drops the listener and removes the main looper's Printer. */
+    static void reset() {
+        sListener = null;
+        MainThreadMonitor.uninstall();
+    }
+
+    /** Main thread. Starts (or restarts) timing a load of this screen. */
+    public void begin() {
+        if (!isEnabled()) return;
+        MainThreadMonitor.install();
+        mStartUptime  = SystemClock.uptimeMillis();
+        mStartBlocked = MainThreadMonitor.blockedMs();
+    }
+
+    /** Main thread. Logs the load; later calls until the next begin() are ignored. */
+    public void contentShown() {
+        if (mStartUptime == 0) return;
+        long ttfc    = SystemClock.uptimeMillis() - mStartUptime;
+        long blocked = MainThreadMonitor.blockedMs() - mStartBlocked;
+        mStartUptime = 0;
+        Slog.i(TAG, mScreen + " ttfc=" + ttfc + "ms blocked=" + blocked + "ms");
+        if (sListener != null) sListener.onContentShown(mScreen, ttfc, blocked);
+    }
+
+    /**
+     * Sums main-looper dispatch time from the looper's ">>>>> Dispatching"
+     * and "<<<<< Finished" log lines. Only touched on the main thread.
+     */
+    private static final class MainThreadMonitor implements Printer {
+        private static MainThreadMonitor sInstance;
+
+        private long mTotalMs;
+        private long mDispatchStart;    // 0 = idle
+
+        static void install() {
+            if (sInstance != null) return;
+            sInstance = new MainThreadMonitor();
+            // Installed from onCreate, i.e. part-way through a dispatch
+            sInstance.mDispatchStart = SystemClock.uptimeMillis();
+            Looper.getMainLooper().setMessageLogging(sInstance);
+        }
+
+        static void uninstall() {
+            if (sInstance == null) return;
+            Looper.getMainLooper().setMessageLogging(null);
+            sInstance = null;
+        }
+
+        /** Total so far, including the message currently being dispatched. */
+        static long blockedMs() {
+            MainThreadMonitor m = sInstance;
+            if (m == null) return 0;
+            long running = m.mDispatchStart != 0
+                    ? SystemClock.uptimeMillis() - m.mDispatchStart : 0;
+            return m.mTotalMs + running;
+        }
+
+        @Override
+        public void println(String line) {
+            if (line.startsWith(">")) {
+                mDispatchStart = SystemClock.uptimeMillis();
+            } else if (line.startsWith("<") && mDispatchStart != 0) {
+                mTotalMs += SystemClock.uptimeMillis() - mDispatchStart;
+                mDispatchStart = 0;
+            }
+        }
+    }
+}
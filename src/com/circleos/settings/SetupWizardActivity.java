@@ -6,22 +6,23 @@
 package com.circleos.settings;
 
 import android.app.Activity;
-import android.circleos.AppPrivacyPolicy;
 import android.circleos.ICirclePrivacyManager;
 import android.content.Intent;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.IBinder;
 import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.util.Slog;
 import android.view.View;
 import android.widget.Button;
 import android.widget.TextView;
 import android.widget.ViewFlipper;
 
+import com.circleos.settings.privacy.PrivacyDashboardActivity;
+
+import java.io.IOException;
 import java.util.List;
+import java.util.Set;
 
 /**
  * First-boot privacy setup wizard.
@@ -37,20 +38,28 @@ import java.util.List;
  * On completion, writes a default-deny AppPrivacyPolicy for all
  * installed non-system apps and sets a shared preference flag so
  * the wizard never shows again.
+ *
+ * Each package is recorded in a {@link PolicyJournal} as its policy is
+ * written. If the process dies part-way, the next run skips journaled
+ * packages; the journal is only discarded after KEY_DONE is committed.
  */
 public class SetupWizardActivity extends Activity {
 
     private static final String TAG   = "CircleSetupWizard";
     private static final String PREF  = "circle_setup";
     private static final String KEY_DONE = "wizard_done";
+    private static final String JOURNAL  = "default_policies";
 
     private ViewFlipper mFlipper;
     private int         mCurrentScreen = 0;
     private static final int TOTAL_SCREENS = 5;
 
+    private final ScreenTimer mTimer = new ScreenTimer("SetupWizard");
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
 
         // Skip if already completed
         if (getSharedPreferences(PREF, MODE_PRIVATE).getBoolean(KEY_DONE, false)) {
@@ -71,6 +80,7 @@ public class SetupWizardActivity extends Activity {
                 btnBack.setVisibility(mCurrentScreen > 0 ? View.VISIBLE : View.GONE);
                 btnNext.setText(mCurrentScreen == TOTAL_SCREENS - 1 ? "Finish" : "Next");
             } else {
+                btnNext.setEnabled(false);
                 onWizardComplete();
             }
         });
@@ -83,43 +93,58 @@ public class SetupWizardActivity extends Activity {
                 btnNext.setText("Next");
             }
         });
+        mTimer.contentShown();
     }
 
+    /** Applies defaults on a worker thread (one IPC per user app), then moves on. */
     private void onWizardComplete() {
-        applyDefaultPolicies();
-        getSharedPreferences(PREF, MODE_PRIVATE)
-                .edit().putBoolean(KEY_DONE, true).apply();
-        Slog.i(TAG, "Setup wizard completed — default policies applied");
-        startMainSettings();
+        CircleExecutors.background().execute(() -> {
+            PolicyJournal journal = PolicyJournal.open(this, JOURNAL);
+            if (applyDefaultPolicies(journal)) {
+                // commit(), not apply(): the journal must not go away before the flag is on disk
+                getSharedPreferences(PREF, MODE_PRIVATE)
+                        .edit().putBoolean(KEY_DONE, true).commit();
+                journal.delete();
+                Slog.i(TAG, "Setup wizard completed — default policies applied");
+            } else {
+                journal.close();
+                Slog.w(TAG, "Default policies incomplete — wizard will resume on next boot");
+            }
+            runOnUiThread(this::startMainSettings);
+        });
     }
 
     /**
-     * Applies a default-deny policy to all user-installed apps.
+     * Applies a default-deny policy to all user-installed apps, skipping
+     * packages already recorded in {@code journal} by an interrupted run.
      * System apps retain their existing permissions.
+     *
+     * @return true if every user app now has the default policy
      */
-    private void applyDefaultPolicies() {
+    private boolean applyDefaultPolicies(PolicyJournal journal) {
         try {
-            IBinder b = ServiceManager.getService("circle.privacy");
-            if (b == null) { Slog.w(TAG, "circle.privacy not available"); return; }
-            ICirclePrivacyManager manager = ICirclePrivacyManager.Stub.asInterface(b);
+            ICirclePrivacyManager manager = CircleServices.privacy();
+            if (manager == null) { Slog.w(TAG, "circle.privacy not available"); return false; }
 
+            Set<String> done = journal.load();
             List<PackageInfo> packages = getPackageManager()
                     .getInstalledPackages(PackageManager.GET_PERMISSIONS);
 
+            int applied = 0;
             for (PackageInfo pkg : packages) {
-                if ((pkg.applicationInfo.flags & android.content.pm.ApplicationInfo.FLAG_SYSTEM) != 0) {
-                    continue; // skip system apps
-                }
-                // Default policy: deny-all (all fields false = deny)
-                AppPrivacyPolicy policy = new AppPrivacyPolicy();
-                policy.networkAllowed  = false;
-                policy.contactsAllowed = false;
-                policy.storageAllowed  = false;
-                manager.setPolicy(pkg.packageName, policy);
+                if (!DefaultPolicies.isUserApp(pkg.applicationInfo)) continue; // skip system apps
+                if (done.contains(pkg.packageName)) continue; // finished by an earlier run
+                manager.setPolicy(pkg.packageName, DefaultPolicies.newDefaultDeny());
+                journal.append(pkg.packageName);
+                applied++;
             }
-            Slog.i(TAG, "Default-deny policies applied to user apps");
-        } catch (RemoteException e) {
+            journal.sync();
+            Slog.i(TAG, "Default-deny policies applied to " + applied + " user apps ("
+                    + done.size() + " already done)");
+            return true;
+        } catch (RemoteException | IOException e) {
             Slog.e(TAG, "Failed to apply default policies", e);
+            return false;
         }
     }
 
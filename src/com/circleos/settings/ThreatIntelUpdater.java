@@ -5,24 +5,23 @@
  */
 package com.circleos.settings;
 
-import android.app.job.JobInfo;
 import android.app.job.JobParameters;
-import android.app.job.JobScheduler;
-import android.app.job.JobService;
-import android.content.ComponentName;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.util.Slog;
 
+import com.circleos.settings.threat.Allowlist;
+import com.circleos.settings.threat.ThreatAggregates;
+import com.circleos.settings.threat.ThreatDb;
+
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 /**
  * JobService that fetches updated threat intelligence and merges it into
@@ -33,57 +32,43 @@ import java.util.concurrent.Executors;
  *   - abuse.ch URLhaus (malware URLs)
  *
  * Merges new entries without disrupting the running CircleDomainFilterService;
- * the filter service reloads the DB on its next scan cycle.
+ * the filter service reloads the DB on its next scan cycle. Per-source
+ * counts are maintained by {@link ThreatAggregates} in the same transaction,
+ * and each merge is logged there for the blocklist overview. Domains on the
+ * user {@link Allowlist} are parked in threat_suppressed instead, so the
+ * filter never sees them and no second lookup is needed at query time.
+ *
+ * A stop from JobScheduler aborts the download or rolls back the merge
+ * transaction; the job is then retried with the backoff from {@link CircleJobs}.
  */
-public class ThreatIntelUpdater extends JobService {
+public class ThreatIntelUpdater extends CircleJobService {
 
-    private static final String TAG    = "CircleThreatIntel";
-    private static final int    JOB_ID = 0xC1C1E002;
-    private static final String DB_PATH = "/data/circle/threat_intel.db";
+    private static final String TAG = "CircleThreatIntel";
+    private static final String SOURCE = "StevenBlack/hosts";
 
     // Public block list URLs (hosts format: "0.0.0.0 domain.com")
     private static final String[] BLOCK_LIST_URLS = {
         "https://raw.githubusercontent.com/StevenBlack/hosts/master/hosts",
     };
 
-    private final ExecutorService mExecutor = Executors.newSingleThreadExecutor();
-
-    /** Call this from CirclePermissionService.onBootPhase to register the job. */
+    /**
+     * Registers the job if it is not already pending with its current spec.
+     * Does not reset the periodic timer of an existing job.
+     */
     public static void schedule(Context context) {
-        JobScheduler js = context.getSystemService(JobScheduler.class);
-        if (js == null) return;
-        ComponentName component = new ComponentName(
-                "com.circleos.settings",
-                "com.circleos.settings.ThreatIntelUpdater");
-        JobInfo job = new JobInfo.Builder(JOB_ID, component)
-                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED) // Wi-Fi only
-                .setRequiresCharging(false)
-                .setPeriodic(24 * 60 * 60 * 1000L) // 24 hours
-                .setPersisted(true)
-                .build();
-        js.schedule(job);
-        Slog.i(TAG, "Threat intel update job scheduled");
+        CircleJobs.ensureScheduled(context, CircleJobs.THREAT_INTEL);
     }
 
     @Override
-    public boolean onStartJob(JobParameters params) {
-        mExecutor.execute(() -> {
-            try {
-                int added = fetchAndMerge();
-                Slog.i(TAG, "Threat intel update complete: " + added + " new entries");
-            } catch (Exception e) {
-                Slog.e(TAG, "Threat intel update failed", e);
-            } finally {
-                jobFinished(params, false);
-            }
-        });
-        return true;
+    protected String tag() {
+        return TAG;
     }
 
     @Override
-    public boolean onStopJob(JobParameters params) {
-        mExecutor.shutdownNow();
-        return true;
+    protected boolean doWork(JobParameters params) throws Exception {
+        int added = fetchAndMerge();
+        Slog.i(TAG, "Threat intel update complete: " + added + " new entries");
+        return false;
     }
 
     private int fetchAndMerge() throws Exception {
@@ -97,7 +82,9 @@ public class ThreatIntelUpdater extends JobService {
             try (BufferedReader reader = new BufferedReader(
                     new InputStreamReader(conn.getInputStream()))) {
                 String line;
+                int lines = 0;
                 while ((line = reader.readLine()) != null) {
+                    if ((lines++ & 0x3FF) == 0) checkStopped();
                     line = line.trim();
                     if (line.startsWith("#") || line.isEmpty()) continue;
                     // Hosts format: "0.0.0.0 tracker.com" or "127.0.0.1 tracker.com"
@@ -118,32 +105,53 @@ public class ThreatIntelUpdater extends JobService {
         return mergeIntoDB(domains);
     }
 
-    private int mergeIntoDB(List<String> domains) {
+    /** A failed merge is rolled back and thrown, so the job is retried with backoff. */
+    private int mergeIntoDB(List<String> domains) throws InterruptedException {
         int added = 0;
-        try {
-            SQLiteDatabase db = SQLiteDatabase.openDatabase(
-                    DB_PATH, null, SQLiteDatabase.OPEN_READWRITE);
+        CircleTrace.begin("db mergeThreatDomains");
+        try (SQLiteDatabase db = ThreatDb.openReadWrite()) {
+            ThreatAggregates.ensure(db);
+            Allowlist.ensureSuppressedTable(db);
             db.beginTransaction();
             try {
+                // Loaded under the write lock: an allowlist edit racing this merge
+                // either shows up here or suppresses our rows right after commit
+                Allowlist.Matcher allow = Allowlist.loadMatcher();
                 long now = System.currentTimeMillis() / 1000;
+                int n = 0;
                 for (String domain : domains) {
+                    if ((n++ & 0x3FF) == 0) checkStopped(); // rolls back below
                     ContentValues cv = new ContentValues(4);
                     cv.put("domain",   domain);
                     cv.put("category", "TRACKER");
                     cv.put("severity", 1);
                     cv.put("added_at", now);
-                    cv.put("source",   "StevenBlack/hosts");
+                    cv.put("source",   SOURCE);
+                    if (allow.matches(domain)) {
+                        db.insertWithOnConflict(Allowlist.TABLE_SUPPRESSED, null, cv,
+                                SQLiteDatabase.CONFLICT_IGNORE);
+                        continue;
+                    }
                     long result = db.insertWithOnConflict(
                             "threat_domains", null, cv, SQLiteDatabase.CONFLICT_IGNORE);
                     if (result != -1) added++;
                 }
+                // Counts were kept current by the triggers; log the run alongside them
+                ThreatAggregates.recordRun(db, SOURCE, added, now);
                 db.setTransactionSuccessful();
             } finally {
                 db.endTransaction();
             }
-            db.close();
-        } catch (Exception e) {
-            Slog.e(TAG, "DB merge failed", e);
+        } finally {
+            CircleTrace.end();
+        }
+        // An allowlist edit that lost a race with this merge left rows
+        // blocked; the merge only routes new inserts, so finish it here
+        try {
+            int n = Allowlist.reconcile();
+            if (n > 0) Slog.i(TAG, "Finished " + n + " pending allowlist edits");
+        } catch (SQLiteException e) {
+            Slog.w(TAG, "Pending allowlist edits still blocked", e);
         }
         return added;
     }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.circleos.PermissionUsageRecord;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.ApplicationInfo;
+import android.os.RemoteException;
+import android.util.Slog;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds bursts of permission use in the usage log, e.g. an app reading the
+ * accelerometer hundreds of times a minute.
+ *
+ * Each run reads only records newer than a persisted high-water mark and
+ * feeds them, in time order, into a sliding one-minute window per
+ * (app, permission), kept in {@link UsageWindows}. When a window's count
+ * reaches the permission's threshold, the app gets a {@link Flag}. Flags
+ * are kept in preferences for {@link #FLAG_TTL_MS} and shown on the
+ * dashboard rows.
+ *
+ * The service only serves the log per package. An app whose policy grants
+ * nothing the service logs by name (see {@link CirclePermissions}) cannot
+ * have new records, so its log is not fetched; under default-deny that is
+ * most apps. Uses logged before a grant was revoked are skipped with it.
+ *
+ * The high-water mark only moves to the run's start time once the whole
+ * pass has finished; records stamped later wait for the next run. A
+ * stopped run leaves the mark where it was and drops the window state,
+ * so nothing is counted twice. Window state lives for the process, so a
+ * burst that straddles two runs in the same process is still seen whole.
+ */
+public final class UsageAnomalyDetector {
+
+    private static final String TAG = "CircleUsageAnomaly";
+
+    private static final String PREF           = "circle_usage_anomaly";
+    private static final String KEY_HIGH_WATER = "high_water";
+    private static final String FLAG_PREFIX    = "flag/";
+
+    static final long FLAG_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+    private static final long FIRST_RUN_LOOKBACK_MS = 60 * 60 * 1000L;
+
+    private static final int MAX_SLOTS = 1024;
+
+    /** Uses per minute that count as a burst. */
+    private static final int SENSOR_THRESHOLD  = 300;
+    private static final int NETWORK_THRESHOLD = 600;
+    private static final int DEFAULT_THRESHOLD = 120;
+
+    /** A burst seen for one app: the worst permission and its rate. */
+    public static final class Flag {
+        public final String permission;
+        public final int    perMinute;
+        public final long   at;
+
+        Flag(String permission, int perMinute, long at) {
+            this.permission = permission;
+            this.perMinute  = perMinute;
+            this.at         = at;
+        }
+
+        String encode() {
+            return permission + "|" + perMinute + "|" + at;
+        }
+
+        static Flag decode(String s) {
+            if (s == null) return null;
+            String[] parts = s.split("\\|");
+            if (parts.length != 3) return null;
+            try {
+                return new Flag(parts[0], Integer.parseInt(parts[1]), Long.parseLong(parts[2]));
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+    }
+
+    // ── Window state ──────────────────────────────────────────────────────────
+
+    private static final Object sLock = new Object();
+    private static UsageWindows sWindows;           // guarded by sLock; null until used
+
+    private final Context               mContext;
+    private final ICirclePrivacyManager mManager;
+
+    public UsageAnomalyDetector(Context context, ICirclePrivacyManager manager) {
+        mContext = context;
+        mManager = manager;
+    }
+
+    /** Current flag for {@code packageName}, or null if none in the last week. */
+    public static Flag flagFor(Context context, String packageName) {
+        Flag f = Flag.decode(prefs(context).getString(FLAG_PREFIX + packageName, null));
+        return f != null && System.currentTimeMillis() - f.at < FLAG_TTL_MS ? f : null;
+    }
+
+    /** Processes the records logged since the last finished run. */
+    public void run(AutoRevoker.StopSignal stop) throws RemoteException, InterruptedException {
+        SharedPreferences prefs = prefs(mContext);
+        long until = System.currentTimeMillis();
+        long since = prefs.getLong(KEY_HIGH_WATER, until - FIRST_RUN_LOOKBACK_MS);
+        Map<String, Flag> found = new HashMap<>();
+        int processed = 0;
+
+        boolean finished = false;
+        CircleTrace.begin("UsageAnomalyDetector#run");
+        try {
+            for (ApplicationInfo app : mContext.getPackageManager().getInstalledApplications(0)) {
+                if (!DefaultPolicies.isUserApp(app)) continue;
+                stop.check();
+                AppPrivacyPolicy policy = mManager.getPolicy(app.packageName);
+                if (policy == null || CirclePermissions.namedGrants(policy).isEmpty()) continue;
+                List<PermissionUsageRecord> records = mManager.getUsageLog(app.packageName, since);
+                if (records == null || records.isEmpty()) continue;
+                records.sort((a, b) -> Long.compare(a.timestamp, b.timestamp));
+                processed += scan(app.packageName, records, since, until, found);
+            }
+            finished = true;
+        } finally {
+            // The retry re-reads these records; forget what this pass counted
+            if (!finished) synchronized (sLock) { sWindows = null; }
+            CircleTrace.end();
+        }
+
+        SharedPreferences.Editor edit = prefs.edit();
+        for (Map.Entry<String, ?> e : prefs.getAll().entrySet()) {
+            if (!e.getKey().startsWith(FLAG_PREFIX)) continue;
+            Flag old = Flag.decode((String) e.getValue());
+            if (old == null || until - old.at >= FLAG_TTL_MS) edit.remove(e.getKey());
+        }
+        for (Map.Entry<String, Flag> e : found.entrySet()) {
+            edit.putString(FLAG_PREFIX + e.getKey(), e.getValue().encode());
+        }
+        edit.putLong(KEY_HIGH_WATER, until).commit();
+        Slog.i(TAG, processed + " new records, " + found.size() + " apps flagged");
+    }
+
+    /** Feeds one app's time-ordered records in (since, until]; returns how many were used. */
+    private static int scan(String pkg, List<PermissionUsageRecord> records, long since,
+            long until, Map<String, Flag> found) {
+        int used = 0;
+        synchronized (sLock) {
+            if (sWindows == null) sWindows = new UsageWindows(MAX_SLOTS);
+            for (PermissionUsageRecord r : records) {
+                if (r.timestamp <= since || r.timestamp > until || r.permission == null) continue;
+                used++;
+                int rate = sWindows.offer(pkg + '\0' + r.permission, r.timestamp);
+                if (rate < threshold(r.permission)) continue;
+                Flag worst = found.get(pkg);
+                if (worst == null || rate > worst.perMinute) {
+                    found.put(pkg, new Flag(r.permission, rate, r.timestamp));
+                }
+            }
+        }
+        return used;
+    }
+
+    private static int threshold(String permission) {
+        if (CirclePermissions.NETWORK.equals(permission)) return NETWORK_THRESHOLD;
+        if (CirclePermissions.sensorOf(permission) != null) return SENSOR_THRESHOLD;
+        return DEFAULT_THRESHOLD;
+    }
+
+    /** "ACCELEROMETER" for "com.circleos.permission.ACCELEROMETER". */
+    public static String shortName(String permission) {
+        return CirclePermissions.shortName(permission);
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREF, Context.MODE_PRIVATE);
+    }
+}
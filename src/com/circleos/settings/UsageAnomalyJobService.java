@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import android.app.job.JobParameters;
+import android.circleos.ICirclePrivacyManager;
+import android.os.RemoteException;
+import android.util.Slog;
+
+/**
+ * JobService that runs {@link UsageAnomalyDetector} over the usage records
+ * logged since its last run. Scheduled hourly through {@link CircleJobs},
+ * while the battery is not low; each run costs one policy read per user
+ * app, plus a log read for those with a logged grant.
+ */
+public class UsageAnomalyJobService extends CircleJobService {
+
+    private static final String TAG = "CircleUsageAnomaly";
+
+    @Override
+    protected String tag() {
+        return TAG;
+    }
+
+    @Override
+    protected boolean doWork(JobParameters params) throws RemoteException, InterruptedException {
+        ICirclePrivacyManager manager = CircleServices.privacy();
+        if (manager == null) {
+            Slog.w(TAG, "circle.privacy service not found");
+            return true; // reschedule
+        }
+        new UsageAnomalyDetector(this, manager).run(this::checkStopped);
+        return false;
+    }
+}
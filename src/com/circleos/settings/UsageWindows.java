@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Sliding one-minute use counts for {@link UsageAnomalyDetector}, one per
+ * key. Each key owns a slot of {@link #BUCKETS} ten-second buckets in flat
+ * primitive arrays; slot s owns entries [s * BUCKETS, (s + 1) * BUCKETS).
+ * A bucket is tagged with the ten-second period it counts, so a stale one
+ * is recognised and restarted rather than cleared on a timer.
+ *
+ * Slots are fixed in number. Once all are taken, a new key reuses a slot
+ * idle for a whole window, and is not counted if there is none. Pure Java
+ * with no Android dependencies, so it runs in the host tests. Not
+ * thread-safe.
+ */
+final class UsageWindows {
+
+    static final long BUCKET_MS = 10_000L;
+    static final int  BUCKETS   = 6;          // 60 s window
+
+    private final int mCapacity;
+    private final HashMap<String, Integer> mSlots = new HashMap<>();
+    private final String[] mKeys;
+    private final long[]   mBucketIds;
+    private final int[]    mCounts;
+    private final long[]   mLastSeen;
+    private int mUsed;
+
+    UsageWindows(int capacity) {
+        mCapacity  = capacity;
+        mKeys      = new String[capacity];
+        mBucketIds = new long[capacity * BUCKETS];
+        mCounts    = new int[capacity * BUCKETS];
+        mLastSeen  = new long[capacity];
+    }
+
+    /**
+     * Counts one use of {@code key} at {@code time}, which must not go back
+     * for a key. Returns the uses in the minute up to and including
+     * {@code time}'s bucket, or 0 if no slot was free.
+     */
+    int offer(String key, long time) {
+        int slot = slotFor(key, time);
+        if (slot < 0) return 0;
+        long id = time / BUCKET_MS;
+        int base = slot * BUCKETS;
+        int i = base + (int) (id % BUCKETS);
+        if (mBucketIds[i] != id) {
+            mBucketIds[i] = id;
+            mCounts[i] = 0;
+        }
+        mCounts[i]++;
+        mLastSeen[slot] = time;
+
+        int sum = 0;
+        for (int j = base; j < base + BUCKETS; j++) {
+            if (mBucketIds[j] > id - BUCKETS && mBucketIds[j] <= id) sum += mCounts[j];
+        }
+        return sum;
+    }
+
+    /** Number of keys holding a slot. */
+    int size() {
+        return mSlots.size();
+    }
+
+    /** Existing slot, a new one, or an idle one reused; -1 if all are busy. */
+    private int slotFor(String key, long time) {
+        Integer existing = mSlots.get(key);
+        if (existing != null) return existing;
+
+        int slot = -1;
+        if (mUsed < mCapacity) {
+            slot = mUsed++;
+        } else {
+            long idleBefore = time - BUCKETS * BUCKET_MS;
+            for (int s = 0; s < mCapacity; s++) {
+                if (mLastSeen[s] < idleBefore) { slot = s; break; }
+            }
+            if (slot < 0) return -1;
+            mSlots.remove(mKeys[slot]);
+        }
+        mKeys[slot] = key;
+        mSlots.put(key, slot);
+        Arrays.fill(mBucketIds, slot * BUCKETS, (slot + 1) * BUCKETS, -1L);
+        return slot;
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.fake;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.mesh.MeshPeerFeed;
+import com.circleos.settings.mesh.MeshStatusMonitor;
+
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Fake per-peer deltas: {@link FakeServices#sPeerCount} peers, of which a
+ * few change signal every tick and one is replaced by a newcomer, so the
+ * peer count stays what {@link FakeMeshService} reports.
+ */
+final class FakeMeshPeerFeed implements MeshPeerFeed {
+
+    private static final long TICK_MS = 1_000;
+    private static final int  UPDATES_PER_TICK = 8;
+
+    private final Random mRandom = new Random(32);
+    private ScheduledFuture<?> mTask;                    // guarded by this
+    private MeshStatusMonitor.PeerListener mSink;        // guarded by this
+    private long[] mIds = new long[0];                   // guarded by this
+    private long   mNextId = 0x0fa4e00000000000L;        // guarded by this
+
+    @Override
+    public synchronized void start(MeshStatusMonitor.PeerListener sink) {
+        stop();
+        mSink = sink;
+        int n = FakeServices.sPeerCount;
+        if (mIds.length != n) {
+            mIds = new long[n];
+            for (int i = 0; i < n; i++) mIds[i] = mNextId++;
+        }
+        long now = System.currentTimeMillis();
+        sink.onPeersReset();
+        for (long id : mIds) sink.onPeerJoined(id, now, signal(), hops());
+        mTask = CircleExecutors.scheduler().scheduleWithFixedDelay(
+                this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (mTask != null) mTask.cancel(false);
+        mTask = null;
+        mSink = null;
+    }
+
+    private synchronized void tick() {
+        if (mSink == null || mIds.length == 0) return;
+        FakeServices.latency();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < UPDATES_PER_TICK; i++) {
+            mSink.onPeerUpdated(mIds[mRandom.nextInt(mIds.length)], now, signal(), hops());
+        }
+        int gone = mRandom.nextInt(mIds.length);
+        mSink.onPeerLeft(mIds[gone]);
+        mIds[gone] = mNextId++;
+        mSink.onPeerJoined(mIds[gone], now, signal(), hops());
+    }
+
+    private int signal() {
+        return -40 - mRandom.nextInt(50);
+    }
+
+    private int hops() {
+        return 1 + mRandom.nextInt(4);
+    }
+}
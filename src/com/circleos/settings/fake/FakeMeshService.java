@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.fake;
+
+import za.co.circleos.mesh.ICircleMeshService;
+
+/** Fake circle.mesh: always running, with a fixed peer count. */
+final class FakeMeshService extends ICircleMeshService.Stub {
+
+    @Override
+    public boolean isRunning() {
+        FakeServices.latency();
+        return true;
+    }
+
+    @Override
+    public int getPeerCount() {
+        FakeServices.latency();
+        return FakeServices.sPeerCount;
+    }
+
+    @Override
+    public String getDeviceId() {
+        FakeServices.latency();
+        return "fa4efa4efa4efa4e";
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.fake;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.circleos.PermissionUsageRecord;
+
+import com.circleos.settings.CirclePermissions;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fake circle.privacy. Policies start from a per-package pattern and keep
+ * edits in memory; scores and usage logs are derived from the package name
+ * so repeated runs see the same data.
+ */
+final class FakePrivacyManager extends ICirclePrivacyManager.Stub {
+
+    private static final String[] SENSORS = {
+        "ACCELEROMETER", "GYROSCOPE", "BAROMETER", "MAGNETOMETER"
+    };
+    private static final String[] ACTIONS = { "ALLOWED", "DENIED", "ASKED" };
+
+    private final Map<String, AppPrivacyPolicy> mPolicies = new HashMap<>();  // guarded by this
+
+    @Override
+    public AppPrivacyPolicy getPolicy(String packageName) {
+        FakeServices.latency();
+        synchronized (this) {
+            AppPrivacyPolicy p = mPolicies.get(packageName);
+            if (p == null) {
+                p = initialPolicy(packageName);
+                mPolicies.put(packageName, p);
+            }
+            return copyOf(p);
+        }
+    }
+
+    @Override
+    public void setPolicy(String packageName, AppPrivacyPolicy policy) {
+        FakeServices.latency();
+        synchronized (this) {
+            mPolicies.put(packageName, copyOf(policy));
+        }
+    }
+
+    @Override
+    public int getPrivacyScore(String packageName) {
+        FakeServices.latency();
+        return Math.floorMod(packageName.hashCode(), 101);
+    }
+
+    /** {@link FakeServices#sUsageCount} records, newest first, spread evenly since {@code since}. */
+    @Override
+    public List<PermissionUsageRecord> getUsageLog(String packageName, long since) {
+        FakeServices.latency();
+        int n = FakeServices.sUsageCount;
+        long now = System.currentTimeMillis();
+        long step = n > 0 ? Math.max(1, (now - since) / n) : 0;
+        List<PermissionUsageRecord> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            PermissionUsageRecord r = new PermissionUsageRecord();
+            r.packageName = packageName;
+            r.timestamp   = now - i * step;
+            r.action      = ACTIONS[i % ACTIONS.length];
+            r.permission  = CirclePermissions.forSensor(SENSORS[i % SENSORS.length]);
+            r.extra       = (i % 7 == 0) ? "fake-" + i : null;
+            out.add(r);
+        }
+        return out;
+    }
+
+    @Override
+    public void revokeUnusedPermissions() {
+        FakeServices.latency();
+    }
+
+    private static AppPrivacyPolicy initialPolicy(String packageName) {
+        int h = packageName.hashCode();
+        AppPrivacyPolicy p = new AppPrivacyPolicy();
+        p.networkAllowed  = (h & 1) != 0;
+        p.contactsAllowed = (h & 2) != 0;
+        p.storageAllowed  = (h & 4) != 0;
+        p.lobbyMode       = (h & 8) != 0;
+        for (int i = 0; i < SENSORS.length; i++) {
+            if ((h & (16 << i)) != 0) p.allowedSensors.add(SENSORS[i]);
+        }
+        return p;
+    }
+
+    private static AppPrivacyPolicy copyOf(AppPrivacyPolicy p) {
+        AppPrivacyPolicy c = new AppPrivacyPolicy();
+        c.networkAllowed  = p.networkAllowed;
+        c.contactsAllowed = p.contactsAllowed;
+        c.storageAllowed  = p.storageAllowed;
+        c.lobbyMode       = p.lobbyMode;
+        c.allowedSensors  = new ArrayList<>(p.allowedSensors);
+        return c;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.fake;
+
+import android.circleos.ICirclePrivacyManager;
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+import android.util.Slog;
+
+import com.circleos.settings.IpcStats;
+import com.circleos.settings.mesh.MeshPeerFeed;
+
+import za.co.circleos.mesh.ICircleMeshService;
+import za.co.circleos.update.ICircleUpdateService;
+
+/**
+ * In-process stand-ins for the circle.* services, for measuring the app's
+ * screens on a device without the real services behind them.
+ *
+ * Only honoured on debuggable builds, and read once per process:
+ *
+ *   adb shell setprop persist.circle.settings.fake_services 1
+ *   adb shell setprop persist.circle.settings.fake_latency_ms 40
+ *   adb shell setprop persist.circle.settings.fake_usage_records 50000
+ *   adb shell setprop persist.circle.settings.fake_peers 200
+ *
+ * JVM tests, which cannot set system properties, call {@link #enableForTest}.
+ *
+ * When enabled, {@link com.circleos.settings.CircleServices} hands these
+ * out instead of looking the real services up. Every call sleeps for the
+ * configured latency first, to stand in for the binder round trip, and
+ * calls are counted by {@link IpcStats} like real ones.
+ */
+public final class FakeServices {
+
+    private static final String TAG = "CircleFakeServices";
+
+    static final String PROP_ENABLED       = "persist.circle.settings.fake_services";
+    static final String PROP_LATENCY_MS    = "persist.circle.settings.fake_latency_ms";
+    static final String PROP_USAGE_RECORDS = "persist.circle.settings.fake_usage_records";
+    static final String PROP_PEERS         = "persist.circle.settings.fake_peers";
+
+    private static volatile boolean sEnabled =
+            Build.IS_DEBUGGABLE && SystemProperties.getBoolean(PROP_ENABLED, false);
+
+    static volatile long sLatencyMs   = SystemProperties.getLong(PROP_LATENCY_MS, 0);
+    static volatile int  sUsageCount  = SystemProperties.getInt(PROP_USAGE_RECORDS, 200);
+    static volatile int  sPeerCount   = SystemProperties.getInt(PROP_PEERS, 8);
+
+    private static ICirclePrivacyManager sPrivacy;   // guarded by FakeServices.class
+    private static ICircleMeshService    sMesh;      // guarded by FakeServices.class
+    private static ICircleUpdateService  sUpdate;    // guarded by FakeServices.class
+    private static MeshPeerFeed          sMeshPeers; // guarded by FakeServices.class
+
+    static {
+        if (sEnabled) {
+            Slog.w(TAG, "Using fake circle services: latency=" + sLatencyMs + "ms usage="
+                    + sUsageCount + " peers=" + sPeerCount);
+        }
+    }
+
+    private FakeServices() {}
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * Turns the fakes on with the given settings, in place of the system
+     * properties. For JVM tests; call before any service is looked up.
+     */
+    public static synchronized void enableForTest(long latencyMs, int usageRecords, int peers) {
+        sLatencyMs  = latencyMs;
+        sUsageCount = usageRecords;
+        sPeerCount  = peers;
+        sPrivacy    = null;
+        sMesh       = null;
+        sUpdate     = null;
+        sMeshPeers  = null;
+        sEnabled    = true;
+    }
+
+    public static synchronized ICirclePrivacyManager privacy() {
+        if (sPrivacy == null) {
+            sPrivacy = IpcStats.instrument(ICirclePrivacyManager.class, "fake.privacy",
+                    new FakePrivacyManager());
+        }
+        return sPrivacy;
+    }
+
+    public static synchronized ICircleMeshService mesh() {
+        if (sMesh == null) {
+            sMesh = IpcStats.instrument(ICircleMeshService.class, "fake.mesh",
+                    new FakeMeshService());
+        }
+        return sMesh;
+    }
+
+    /** Simulated peer churn over {@link #sPeerCount} peers. */
+    public static synchronized MeshPeerFeed meshPeers() {
+        if (sMeshPeers == null) sMeshPeers = new FakeMeshPeerFeed();
+        return sMeshPeers;
+    }
+
+    public static synchronized ICircleUpdateService update() {
+        if (sUpdate == null) {
+            sUpdate = IpcStats.instrument(ICircleUpdateService.class, "fake.update",
+                    new FakeUpdateService());
+        }
+        return sUpdate;
+    }
+
+    /** Simulated binder round trip. */
+    static void latency() {
+        if (sLatencyMs > 0) SystemClock.sleep(sLatencyMs);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.fake;
+
+import android.os.SystemClock;
+
+import com.circleos.settings.update.UpdateStatusMonitor;
+
+import za.co.circleos.update.ICircleUpdateService;
+
+/**
+ * Fake circle.update. checkNow() runs a scripted OTA on the clock:
+ * a short check, a download that advances 1% every 300 ms, then ready to
+ * install. applyUpdate() installs for a few seconds and returns to idle.
+ */
+final class FakeUpdateService extends ICircleUpdateService.Stub {
+
+    private static final long CHECK_MS    = 2_000;
+    private static final long DOWNLOAD_MS = 30_000;
+    private static final long INSTALL_MS  = 5_000;
+
+    private static final String VERSION = "0.2.0-fake";
+
+    private String mChannel = "stable";    // guarded by this
+    private long   mLastCheck;             // guarded by this; wall clock
+    private long   mCheckAt;               // guarded by this; elapsedRealtime, 0 = never
+    private long   mInstallAt;             // guarded by this; elapsedRealtime, 0 = not installing
+
+    @Override
+    public int getState() {
+        FakeServices.latency();
+        synchronized (this) {
+            return stateLocked(SystemClock.elapsedRealtime());
+        }
+    }
+
+    @Override
+    public synchronized String getAvailableVersion() {
+        FakeServices.latency();
+        return mCheckAt != 0 ? VERSION : null;
+    }
+
+    @Override
+    public int getDownloadProgress() {
+        FakeServices.latency();
+        synchronized (this) {
+            if (mCheckAt == 0) return 0;
+            long t = SystemClock.elapsedRealtime() - mCheckAt - CHECK_MS;
+            return (int) Math.max(0, Math.min(100, t * 100 / DOWNLOAD_MS));
+        }
+    }
+
+    @Override
+    public synchronized long getLastCheckTime() {
+        FakeServices.latency();
+        return mLastCheck;
+    }
+
+    @Override
+    public synchronized String getChannel() {
+        FakeServices.latency();
+        return mChannel;
+    }
+
+    @Override
+    public synchronized void setChannel(String channel) {
+        FakeServices.latency();
+        mChannel = channel;
+    }
+
+    @Override
+    public synchronized void checkNow() {
+        FakeServices.latency();
+        mLastCheck = System.currentTimeMillis();
+        mCheckAt   = SystemClock.elapsedRealtime();
+        mInstallAt = 0;
+    }
+
+    @Override
+    public synchronized void applyUpdate() {
+        FakeServices.latency();
+        if (stateLocked(SystemClock.elapsedRealtime()) == UpdateStatusMonitor.STATE_READY_TO_INSTALL) {
+            mInstallAt = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /** Holds this. */
+    private int stateLocked(long now) {
+        if (mInstallAt != 0) {
+            if (now - mInstallAt < INSTALL_MS) return UpdateStatusMonitor.STATE_INSTALLING;
+            mCheckAt = 0;
+            mInstallAt = 0;
+            return UpdateStatusMonitor.STATE_IDLE;
+        }
+        if (mCheckAt == 0) return UpdateStatusMonitor.STATE_IDLE;
+        long t = now - mCheckAt;
+        if (t < CHECK_MS) return UpdateStatusMonitor.STATE_CHECKING;
+        if (t < CHECK_MS + DOWNLOAD_MS) return UpdateStatusMonitor.STATE_DOWNLOADING;
+        return UpdateStatusMonitor.STATE_READY_TO_INSTALL;
+    }
+}
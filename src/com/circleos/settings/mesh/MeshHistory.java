@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.AtomicFile;
+import android.util.Slog;
+
+import com.circleos.settings.CircleTrace;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * History of mesh health over the last day: peer count and running state,
+ * sampled at most every {@link #MIN_INTERVAL_MS}.
+ *
+ * Samples live in a fixed-capacity ring of parallel primitive arrays. Each
+ * {@link Window} (last hour, last day) keeps a running sum and monotonic
+ * min/max deques over the same ring, so adding a sample and evicting the
+ * ones that fell out of the window is amortized O(1) and allocates nothing.
+ *
+ * Every observation {@link MeshStatusMonitor} makes is offered here, so
+ * the screen's own polls add samples while it is open. With the screen
+ * closed, {@link MeshHistoryJobService} takes one about every 15
+ * minutes, so the day window covers the whole day. The ring
+ * is saved to {@link #FILE} by the job and when the screen stops, with
+ * times stored as wall-clock time so they survive a reboot, and read back
+ * once per process by {@link #load}.
+ */
+public final class MeshHistory {
+
+    public static final int WINDOW_HOUR = 0;
+    public static final int WINDOW_DAY  = 1;
+
+    static final long MIN_INTERVAL_MS = 30_000;
+
+    private static final String TAG   = "CircleMeshHistory";
+    private static final String FILE  = "mesh_history.bin";
+    private static final int    MAGIC = 0x4D484931;       // "MHI1"
+
+    private static final long HOUR_MS = 60 * 60_000L;
+    private static final long DAY_MS  = 24 * HOUR_MS;
+
+    /** Power of two; one day at {@link #MIN_INTERVAL_MS} is 2880 samples. */
+    private static final int CAPACITY = 4096;
+    private static final int MASK     = CAPACITY - 1;
+
+    private static final MeshHistory sInstance = new MeshHistory();
+
+    // ── Ring (guarded by this) ───────────────────────────────────────────────
+    private final long[] mTime    = new long[CAPACITY];   // elapsedRealtime
+    private final int[]  mPeers   = new int[CAPACITY];
+    private final byte[] mRunning = new byte[CAPACITY];
+    private long mNextSeq;                                // samples ever written
+
+    private final Window[] mWindows = { new Window(HOUR_MS), new Window(DAY_MS) };
+    private boolean mLoaded;                              // guarded by this
+    private boolean mDirty;                               // guarded by this
+    private final Object mFileLock = new Object();
+
+    private final Handler mMain = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Runnable> mListeners = new CopyOnWriteArrayList<>();
+    private final Runnable mNotify = () -> {
+        for (Runnable r : mListeners) r.run();
+    };
+
+    MeshHistory() {}
+
+    public static MeshHistory get() {
+        return sInstance;
+    }
+
+    /**
+     * Reads the saved history, once per process, in front of any samples
+     * already taken. Worker thread.
+     */
+    public void load(Context context) {
+        synchronized (this) {
+            if (mLoaded) return;
+        }
+        byte[] data = null;
+        CircleTrace.begin("file loadMeshHistory");
+        try {
+            AtomicFile file = file(context);
+            if (file.exists()) data = file.readFully();
+        } catch (IOException e) {
+            Slog.w(TAG, "Unreadable mesh history", e);
+        } finally {
+            CircleTrace.end();
+        }
+        synchronized (this) {
+            if (mLoaded) return;
+            mLoaded = true;
+            if (data == null) return;
+            try {
+                readFrom(new DataInputStream(new ByteArrayInputStream(data)),
+                        System.currentTimeMillis(), SystemClock.elapsedRealtime());
+            } catch (IOException e) {
+                Slog.w(TAG, "Corrupt mesh history", e);
+            }
+        }
+        mMain.post(mNotify);
+    }
+
+    /** Writes the history if it has changed since it was last saved. Worker thread. */
+    public void save(Context context) {
+        synchronized (mFileLock) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            synchronized (this) {
+                if (!mDirty) return;
+                try {
+                    writeTo(new DataOutputStream(bytes),
+                            System.currentTimeMillis(), SystemClock.elapsedRealtime());
+                } catch (IOException e) {
+                    throw new AssertionError(e);    // in memory
+                }
+                mDirty = false;
+            }
+            AtomicFile file = file(context);
+            FileOutputStream out = null;
+            CircleTrace.begin("file saveMeshHistory");
+            try {
+                out = file.startWrite();
+                bytes.writeTo(out);
+                file.finishWrite(out);
+            } catch (IOException e) {
+                Slog.w(TAG, "Failed to save mesh history", e);
+                if (out != null) file.failWrite(out);
+                synchronized (this) {
+                    mDirty = true;
+                }
+            } finally {
+                CircleTrace.end();
+            }
+        }
+    }
+
+    private static AtomicFile file(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE));
+    }
+
+    /**
+     * The day window, oldest first: int MAGIC, int n, then n × (long wall
+     * time, int peers, byte running).
+     */
+    synchronized void writeTo(DataOutputStream out, long nowWall, long nowElapsed)
+            throws IOException {
+        Window day = mWindows[WINDOW_DAY];
+        day.evict(nowElapsed);
+        out.writeInt(MAGIC);
+        out.writeInt(day.count());
+        for (long seq = day.mStart; seq < mNextSeq; seq++) {
+            int i = (int) (seq & MASK);
+            out.writeLong(nowWall - (nowElapsed - mTime[i]));
+            out.writeInt(mPeers[i]);
+            out.writeByte(mRunning[i]);
+        }
+        out.flush();
+    }
+
+    /**
+     * Puts the samples in {@code in} that are within the last day, and
+     * older than anything already recorded, in front of the ring.
+     */
+    synchronized void readFrom(DataInputStream in, long nowWall, long nowElapsed)
+            throws IOException {
+        if (in.readInt() != MAGIC) throw new IOException("Not a mesh history file");
+        int n = in.readInt();
+        if (n < 0 || n > CAPACITY) throw new IOException("Bad sample count " + n);
+
+        Window day = mWindows[WINDOW_DAY];
+        day.evict(nowElapsed);
+        long keepBefore = day.count() > 0 ? mTime[(int) (day.mStart & MASK)] : nowElapsed + 1;
+        long[] time = new long[n + day.count()];
+        int[] peers = new int[time.length];
+        byte[] running = new byte[time.length];
+        int m = 0;
+        long last = Long.MIN_VALUE;
+        for (int k = 0; k < n; k++) {
+            long t = nowElapsed - (nowWall - in.readLong());
+            int p = in.readInt();
+            byte r = in.readByte();
+            // Drop expired samples, and any the wall clock moved out of order
+            if (nowElapsed - t > DAY_MS || t <= last || t >= keepBefore) continue;
+            time[m] = t;
+            peers[m] = Math.max(0, p);
+            running[m] = (byte) (r != 0 ? 1 : 0);
+            last = t;
+            m++;
+        }
+        if (m == 0) return;
+        for (long seq = day.mStart; seq < mNextSeq; seq++, m++) {
+            int i = (int) (seq & MASK);
+            time[m] = mTime[i];
+            peers[m] = mPeers[i];
+            running[m] = mRunning[i];
+        }
+
+        mNextSeq = 0;
+        mWindows[WINDOW_HOUR] = new Window(HOUR_MS);
+        mWindows[WINDOW_DAY]  = new Window(DAY_MS);
+        for (int k = Math.max(0, m - CAPACITY); k < m; k++) {
+            append(time[k], peers[k], running[k] != 0, nowElapsed);
+        }
+    }
+
+    /** Main thread. {@code r} runs on the main thread after each new sample. */
+    public void addListener(Runnable r) {
+        mListeners.addIfAbsent(r);
+    }
+
+    public void removeListener(Runnable r) {
+        mListeners.remove(r);
+    }
+
+    /**
+     * Offers one observation. Dropped if the state is still unknown or a
+     * sample was taken less than {@link #MIN_INTERVAL_MS} ago. An
+     * unavailable service counts as stopped with no peers.
+     */
+    void record(MeshStatusMonitor.Status s) {
+        boolean running;
+        int peers;
+        if (s.error != null) {
+            running = false;
+            peers = 0;
+        } else if (s.running == null) {
+            return;
+        } else {
+            running = s.running;
+            peers = Math.max(0, s.peers);
+        }
+        long now = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            if (mNextSeq > 0 && now - mTime[(int) ((mNextSeq - 1) & MASK)] < MIN_INTERVAL_MS) {
+                return;
+            }
+            append(now, peers, running, now);
+            mDirty = true;
+        }
+        mMain.removeCallbacks(mNotify);
+        mMain.post(mNotify);
+    }
+
+    /** Writes one sample taken at {@code time}; caller holds this. */
+    private void append(long time, int peers, boolean running, long now) {
+        long seq = mNextSeq;
+        for (Window w : mWindows) w.makeRoom(seq, now);
+        int i = (int) (seq & MASK);
+        mTime[i]    = time;
+        mPeers[i]   = peers;
+        mRunning[i] = (byte) (running ? 1 : 0);
+        mNextSeq++;
+        for (Window w : mWindows) w.add(seq);
+    }
+
+    /** Copies the aggregates of {@code window} into {@code out}. */
+    public synchronized void readStats(int window, Stats out) {
+        Window w = mWindows[window];
+        w.evict(SystemClock.elapsedRealtime());
+        int n = w.count();
+        out.samples = n;
+        if (n == 0) {
+            out.min = out.max = 0;
+            out.avg = 0f;
+            out.uptime = 0f;
+            return;
+        }
+        out.min    = mPeers[(int) (w.mMinQ[w.mMinHead & MASK] & MASK)];
+        out.max    = mPeers[(int) (w.mMaxQ[w.mMaxHead & MASK] & MASK)];
+        out.avg    = (float) w.mSumPeers / n;
+        out.uptime = (float) w.mRunningCount / n;
+    }
+
+    /**
+     * Copies the samples of {@code window}, oldest first, into the caller's
+     * arrays (each at least {@link #capacity()} long). Times are returned as
+     * milliseconds before now. Returns the sample count.
+     */
+    public synchronized int readSamples(int window, long[] agoMs, int[] peers, boolean[] running) {
+        Window w = mWindows[window];
+        long now = SystemClock.elapsedRealtime();
+        w.evict(now);
+        int n = 0;
+        for (long seq = w.mStart; seq < mNextSeq; seq++, n++) {
+            int i = (int) (seq & MASK);
+            agoMs[n]   = now - mTime[i];
+            peers[n]   = mPeers[i];
+            running[n] = mRunning[i] != 0;
+        }
+        return n;
+    }
+
+    public static int capacity() {
+        return CAPACITY;
+    }
+
+    public static long spanMs(int window) {
+        return window == WINDOW_HOUR ? HOUR_MS : DAY_MS;
+    }
+
+    /** Caller-owned, reusable aggregate holder. */
+    public static final class Stats {
+        public int   samples;
+        public int   min;
+        public int   max;
+        public float avg;
+        /** Fraction of samples with the mesh running, 0..1. */
+        public float uptime;
+    }
+
+    /**
+     * Sliding time window over the ring, [mStart, mNextSeq). Min/max deques
+     * hold sequence numbers whose peer counts are monotonic, so the front
+     * is always the current extreme.
+     */
+    private final class Window {
+        final long mSpanMs;
+        long mStart;
+        long mSumPeers;
+        int  mRunningCount;
+
+        final long[] mMinQ = new long[CAPACITY];
+        final long[] mMaxQ = new long[CAPACITY];
+        int mMinHead, mMinTail;   // tail exclusive; indices wrap through MASK
+        int mMaxHead, mMaxTail;
+
+        Window(long spanMs) {
+            mSpanMs = spanMs;
+        }
+
+        int count() {
+            return (int) (mNextSeq - mStart);
+        }
+
+        /** Before {@code seq} is written: drop expired samples and the slot it reuses. */
+        void makeRoom(long seq, long now) {
+            evict(now);
+            while (seq - mStart >= CAPACITY) evictOne();
+        }
+
+        /** {@code seq} has just been written to the ring. */
+        void add(long seq) {
+            int i = (int) (seq & MASK);
+            int p = mPeers[i];
+            mSumPeers += p;
+            mRunningCount += mRunning[i];
+
+            while (mMinTail != mMinHead
+                    && mPeers[(int) (mMinQ[(mMinTail - 1) & MASK] & MASK)] >= p) mMinTail--;
+            mMinQ[mMinTail++ & MASK] = seq;
+            while (mMaxTail != mMaxHead
+                    && mPeers[(int) (mMaxQ[(mMaxTail - 1) & MASK] & MASK)] <= p) mMaxTail--;
+            mMaxQ[mMaxTail++ & MASK] = seq;
+        }
+
+        void evict(long now) {
+            while (mStart < mNextSeq && now - mTime[(int) (mStart & MASK)] > mSpanMs) evictOne();
+        }
+
+        private void evictOne() {
+            int i = (int) (mStart & MASK);
+            mSumPeers -= mPeers[i];
+            mRunningCount -= mRunning[i];
+            if (mMinHead != mMinTail && mMinQ[mMinHead & MASK] == mStart) mMinHead++;
+            if (mMaxHead != mMaxTail && mMaxQ[mMaxHead & MASK] == mStart) mMaxHead++;
+            mStart++;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import android.app.job.JobParameters;
+
+import com.circleos.settings.CircleJobService;
+import com.circleos.settings.CircleJobs;
+
+/**
+ * JobService that adds one mesh health sample to {@link MeshHistory} and
+ * saves it, so the history covers the time the mesh screen is closed.
+ * Scheduled every 15 minutes through {@link CircleJobs}.
+ */
+public class MeshHistoryJobService extends CircleJobService {
+
+    private static final String TAG = "CircleMeshHistory";
+
+    @Override
+    protected String tag() {
+        return TAG;
+    }
+
+    @Override
+    protected boolean doWork(JobParameters params) throws InterruptedException {
+        MeshHistory history = MeshHistory.get();
+        history.load(this);
+        checkStopped();
+        MeshStatusMonitor.get().observeNow();
+        history.save(this);
+        return false;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * ListView adapter over a {@link MeshPeerTable}.
+ *
+ * The ListView only binds visible rows, so cost per redraw is independent
+ * of peer count. Redraws are rate-limited: queued deltas are drained and
+ * the list notified at most once per {@link #MIN_REDRAW_MS}, however fast
+ * the mesh churns.
+ */
+final class MeshPeerAdapter extends BaseAdapter {
+
+    private static final long MIN_REDRAW_MS = 500;
+
+    private final Context mContext;
+    private final MeshPeerTable mTable;
+    private final Handler mMain = new Handler(Looper.getMainLooper());
+    private final Runnable mRedraw = this::redraw;
+    private final Object mLock = new Object();
+    private boolean mRedrawPosted;   // guarded by mLock
+    private volatile long mLastRedraw; // written on the main thread, read on the feed's
+
+    MeshPeerAdapter(Context context) {
+        mContext = context;
+        mTable = new MeshPeerTable(this::onDeltasQueued);
+    }
+
+    MeshStatusMonitor.PeerListener peerListener() {
+        return mTable;
+    }
+
+    /** Stops pending redraws; call when the screen goes away. */
+    void cancel() {
+        mMain.removeCallbacks(mRedraw);
+        synchronized (mLock) {
+            mRedrawPosted = false;
+        }
+    }
+
+    /** Any thread. */
+    private void onDeltasQueued() {
+        synchronized (mLock) {
+            if (mRedrawPosted) return;
+            mRedrawPosted = true;
+        }
+        long now = SystemClock.uptimeMillis();
+        mMain.postAtTime(mRedraw, Math.max(now, mLastRedraw + MIN_REDRAW_MS));
+    }
+
+    private void redraw() {
+        synchronized (mLock) {
+            mRedrawPosted = false;
+        }
+        mLastRedraw = SystemClock.uptimeMillis();
+        if (mTable.drain()) notifyDataSetChanged();
+    }
+
+    @Override
+    public int getCount() {
+        return mTable.size();
+    }
+
+    @Override
+    public Object getItem(int position) {
+        return null; // rows are read straight from the table
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return mTable.idAt(position);
+    }
+
+    @Override
+    public boolean hasStableIds() {
+        return true;
+    }
+
+    @Override
+    public View getView(int position, View convertView, ViewGroup parent) {
+        RowViews row;
+        if (convertView == null) {
+            row = new RowViews(mContext);
+            convertView = row.root;
+            convertView.setTag(row);
+        } else {
+            row = (RowViews) convertView.getTag();
+        }
+
+        row.id.setText(formatId(mTable.idAt(position)));
+        long agoSec = Math.max(0, (System.currentTimeMillis() - mTable.lastSeenAt(position)) / 1000);
+        row.detail.setText(mTable.signalAt(position) + " dBm · "
+                + mTable.hopsAt(position) + (mTable.hopsAt(position) == 1 ? " hop · " : " hops · ")
+                + agoSec + "s ago");
+        return convertView;
+    }
+
+    static String formatId(long id) {
+        String hex = Long.toHexString(id);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+
+    private static final class RowViews {
+        final LinearLayout root;
+        final TextView id;
+        final TextView detail;
+
+        RowViews(Context context) {
+            float density = context.getResources().getDisplayMetrics().density;
+            int pad = Math.round(10 * density);
+            root = new LinearLayout(context);
+            root.setOrientation(LinearLayout.VERTICAL);
+            root.setPadding(pad, pad, pad, pad);
+
+            id = new TextView(context);
+            id.setTextSize(14);
+            id.setTextColor(0xFF1A1A2E);
+            id.setTypeface(android.graphics.Typeface.MONOSPACE);
+            root.addView(id);
+
+            detail = new TextView(context);
+            detail.setTextSize(12);
+            detail.setTextColor(0xFF888888);
+            root.addView(detail);
+        }
+    }
+}
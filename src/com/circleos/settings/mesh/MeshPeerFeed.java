@@ -0,0 +1,27 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+/**
+ * Per-peer join/leave/update deltas for the mesh screen's peer list.
+ *
+ * The v1 ICircleMeshService reports only a peer count, so
+ * {@link com.circleos.settings.CircleServices#meshPeers()} has no feed for
+ * the real service yet; a binder-callback implementation goes here once
+ * the service can push peer events. {@link com.circleos.settings.fake.FakeServices}
+ * supplies a simulated one.
+ */
+public interface MeshPeerFeed {
+
+    /**
+     * Starts sending deltas to {@code sink}, on any thread: first
+     * {@link MeshStatusMonitor.PeerListener#onPeersReset()}, then a join for
+     * every current peer, then changes as they happen.
+     */
+    void start(MeshStatusMonitor.PeerListener sink);
+
+    /** Stops sending deltas. Idempotent. */
+    void stop();
+}
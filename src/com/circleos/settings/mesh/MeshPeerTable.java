@@ -0,0 +1,233 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import java.util.Arrays;
+
+/**
+ * Live mesh peer set stored as parallel primitive arrays.
+ *
+ * Each peer is a fixed-size record: 64-bit device ID, last-seen time,
+ * signal (dBm) and hop count. Records are kept dense (removal swaps the
+ * last record into the hole) and found through an open-addressed
+ * id → index table, so join/leave/update are O(1) with no per-peer objects.
+ *
+ * Deltas may arrive on any thread. They are queued into a pair of
+ * preallocated buffers and only applied to the table by {@link #drain()}
+ * on the main thread, so an adapter reading the table never sees it
+ * change between notifications.
+ */
+final class MeshPeerTable implements MeshStatusMonitor.PeerListener {
+
+    private static final byte OP_UPSERT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    // ── Dense records (main thread) ─────────────────────────────────────────
+    private long[] mIds      = new long[64];
+    private long[] mLastSeen = new long[64];
+    private int[]  mSignal   = new int[64];
+    private int[]  mHops     = new int[64];
+    private int    mSize;
+
+    // ── id → index+1 (0 = empty slot), linear probing (main thread) ─────────
+    private long[] mKeys  = new long[128];
+    private int[]  mSlots = new int[128];
+
+    // ── Pending deltas, double-buffered (guarded by mQueueLock) ─────────────
+    private final Object mQueueLock = new Object();
+    private DeltaQueue mPending = new DeltaQueue();
+    private DeltaQueue mDraining = new DeltaQueue();
+
+    private final Runnable mOnQueued;
+
+    /** @param onQueued called (on the delta thread) whenever deltas are queued */
+    MeshPeerTable(Runnable onQueued) {
+        mOnQueued = onQueued;
+    }
+
+    // ── MeshStatusMonitor.PeerListener (any thread) ──────────────────────────
+
+    @Override
+    public void onPeerJoined(long id, long lastSeen, int signalDbm, int hops) {
+        enqueue(OP_UPSERT, id, lastSeen, signalDbm, hops);
+    }
+
+    @Override
+    public void onPeerUpdated(long id, long lastSeen, int signalDbm, int hops) {
+        enqueue(OP_UPSERT, id, lastSeen, signalDbm, hops);
+    }
+
+    @Override
+    public void onPeerLeft(long id) {
+        enqueue(OP_REMOVE, id, 0, 0, 0);
+    }
+
+    @Override
+    public void onPeersReset() {
+        synchronized (mQueueLock) {
+            mPending.clear();
+            mPending.reset = true;
+        }
+        mOnQueued.run();
+    }
+
+    private void enqueue(byte op, long id, long lastSeen, int signal, int hops) {
+        synchronized (mQueueLock) {
+            mPending.add(op, id, lastSeen, signal, hops);
+        }
+        mOnQueued.run();
+    }
+
+    // ── Main thread ──────────────────────────────────────────────────────────
+
+    /** Applies all queued deltas. Returns true if anything was applied. */
+    boolean drain() {
+        DeltaQueue q;
+        synchronized (mQueueLock) {
+            if (mPending.count == 0 && !mPending.reset) return false;
+            q = mPending;
+            mPending = mDraining;
+            mDraining = q;
+        }
+        if (q.reset) clear();
+        for (int i = 0; i < q.count; i++) {
+            if (q.ops[i] == OP_REMOVE) remove(q.ids[i]);
+            else upsert(q.ids[i], q.lastSeen[i], q.signal[i], q.hops[i]);
+        }
+        q.clear();
+        return true;
+    }
+
+    int size()               { return mSize; }
+    long idAt(int i)         { return mIds[i]; }
+    long lastSeenAt(int i)   { return mLastSeen[i]; }
+    int signalAt(int i)      { return mSignal[i]; }
+    int hopsAt(int i)        { return mHops[i]; }
+
+    private void upsert(long id, long lastSeen, int signal, int hops) {
+        int slot = findSlot(id);
+        int idx;
+        if (mSlots[slot] != 0) {
+            idx = mSlots[slot] - 1;
+        } else {
+            if (mSize == mIds.length) growRecords();
+            idx = mSize++;
+            mIds[idx] = id;
+            if (mSize * 2 > mKeys.length) {
+                rehash(mKeys.length * 2);
+                slot = findSlot(id);
+            }
+            mKeys[slot]  = id;
+            mSlots[slot] = idx + 1;
+        }
+        mLastSeen[idx] = lastSeen;
+        mSignal[idx]   = signal;
+        mHops[idx]     = hops;
+    }
+
+    private void remove(long id) {
+        int slot = findSlot(id);
+        if (mSlots[slot] == 0) return;
+        int idx  = mSlots[slot] - 1;
+        deleteSlot(slot);
+
+        int last = --mSize;
+        if (idx != last) {
+            // Move the last record into the hole and repoint its slot
+            mIds[idx]      = mIds[last];
+            mLastSeen[idx] = mLastSeen[last];
+            mSignal[idx]   = mSignal[last];
+            mHops[idx]     = mHops[last];
+            mSlots[findSlot(mIds[idx])] = idx + 1;
+        }
+    }
+
+    private void clear() {
+        mSize = 0;
+        Arrays.fill(mSlots, 0);
+    }
+
+    private int findSlot(long id) {
+        int mask = mKeys.length - 1;
+        int i = mix(id) & mask;
+        while (mSlots[i] != 0 && mKeys[i] != id) i = (i + 1) & mask;
+        return i;
+    }
+
+    /** Backward-shift deletion keeps linear-probe chains intact without tombstones. */
+    private void deleteSlot(int hole) {
+        int mask = mKeys.length - 1;
+        int i = hole;
+        while (true) {
+            i = (i + 1) & mask;
+            if (mSlots[i] == 0) break;
+            int home = mix(mKeys[i]) & mask;
+            // Shift back if the entry's home is not in (hole, i]
+            boolean between = hole <= i ? (home > hole && home <= i) : (home > hole || home <= i);
+            if (!between) {
+                mKeys[hole]  = mKeys[i];
+                mSlots[hole] = mSlots[i];
+                hole = i;
+            }
+        }
+        mSlots[hole] = 0;
+    }
+
+    private void rehash(int capacity) {
+        mKeys  = new long[capacity];
+        mSlots = new int[capacity];
+        for (int idx = 0; idx < mSize; idx++) {
+            int slot = findSlot(mIds[idx]);
+            mKeys[slot]  = mIds[idx];
+            mSlots[slot] = idx + 1;
+        }
+    }
+
+    private void growRecords() {
+        int n = mIds.length * 2;
+        mIds      = Arrays.copyOf(mIds, n);
+        mLastSeen = Arrays.copyOf(mLastSeen, n);
+        mSignal   = Arrays.copyOf(mSignal, n);
+        mHops     = Arrays.copyOf(mHops, n);
+    }
+
+    private static int mix(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /** Growable primitive delta buffer; reused across drains. */
+    private static final class DeltaQueue {
+        byte[] ops      = new byte[64];
+        long[] ids      = new long[64];
+        long[] lastSeen = new long[64];
+        int[]  signal   = new int[64];
+        int[]  hops     = new int[64];
+        int     count;
+        boolean reset;
+
+        void add(byte op, long id, long seen, int sig, int hop) {
+            if (count == ops.length) {
+                int n = count * 2;
+                ops      = Arrays.copyOf(ops, n);
+                ids      = Arrays.copyOf(ids, n);
+                lastSeen = Arrays.copyOf(lastSeen, n);
+                signal   = Arrays.copyOf(signal, n);
+                hops     = Arrays.copyOf(hops, n);
+            }
+            ops[count]      = op;
+            ids[count]      = id;
+            lastSeen[count] = seen;
+            signal[count]   = sig;
+            hops[count]     = hop;
+            count++;
+        }
+
+        void clear() {
+            count = 0;
+            reset = false;
+        }
+    }
+}
@@ -5,19 +5,19 @@
 package com.circleos.settings.mesh;
 
 import android.app.Activity;
+import android.content.Context;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.IBinder;
-import android.os.Looper;
-import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.LinearLayout;
+import android.widget.ListView;
 import android.widget.Switch;
 import android.widget.TextView;
 
-import za.co.circleos.mesh.ICircleMeshService;
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
+import java.util.Locale;
 
 /**
  * Mesh Network settings screen.
@@ -25,78 +25,113 @@ import za.co.circleos.mesh.ICircleMeshService;
  * Shows:
  *  - Mesh running status + toggle (start/stop)
  *  - Local rotating device ID (16-char hex)
- *  - Live peer count (refreshes every 5 s)
- *  - Peer list placeholder (future: per-peer detail)
+ *  - Live peer count
+ *  - Peer-count sparkline and min/avg/max/uptime over the last 1h or 24h
+ *  - Live peer list, when the service supplies per-peer deltas
+ *
+ * Subscribes to {@link MeshStatusMonitor} while visible; each field is
+ * updated only when the monitor reports that it changed. The peer list is
+ * a virtualized ListView over a {@link MeshPeerTable}, fed by deltas from
+ * a {@link MeshPeerFeed} and redrawn at a bounded rate.
  */
-public class MeshSettingsActivity extends Activity {
-
-    private ICircleMeshService mMesh;
-    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+public class MeshSettingsActivity extends Activity implements MeshStatusMonitor.Listener {
 
     private TextView mTvDeviceId;
     private TextView mTvPeerCount;
     private TextView mTvStatus;
     private Switch   mSwMesh;
-
-    private final Runnable mRefreshRunnable = new Runnable() {
-        @Override public void run() {
-            if (!isFinishing()) {
-                refreshStatus();
-                mUiHandler.postDelayed(this, 5_000);
-            }
-        }
-    };
+    private MeshPeerAdapter mPeerAdapter;   // null when the service has no peer list
+    private MeshSparklineView mSparkline;
+    private TextView mTvHistoryStats;
+    private TextView mTvWindowHour;
+    private TextView mTvWindowDay;
+    private int mWindow = MeshHistory.WINDOW_HOUR;
+    private final MeshHistory.Stats mStats = new MeshHistory.Stats();
+    private final Runnable mOnHistory = this::refreshHistory;
+    private final ScreenTimer mTimer = new ScreenTimer("MeshSettings");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(buildLayout());
-        connectService();
+        Context app = getApplicationContext();
+        CircleExecutors.background().execute(() -> MeshHistory.get().load(app));
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Keep what this screen's polls added, in case the process goes next
+        Context app = getApplicationContext();
+        CircleExecutors.background().execute(() -> MeshHistory.get().save(app));
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        mUiHandler.post(mRefreshRunnable);
+        MeshStatusMonitor.get().addListener(this);
+        MeshHistory.get().addListener(mOnHistory);
+        refreshHistory();
+        if (mPeerAdapter != null) {
+            MeshStatusMonitor.get().addPeerListener(mPeerAdapter.peerListener());
+        }
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        mUiHandler.removeCallbacks(mRefreshRunnable);
+        if (mPeerAdapter != null) {
+            MeshStatusMonitor.get().removePeerListener(mPeerAdapter.peerListener());
+            mPeerAdapter.cancel();
+        }
+        MeshHistory.get().removeListener(mOnHistory);
+        MeshStatusMonitor.get().removeListener(this);
     }
 
-    private void connectService() {
-        new Thread(() -> {
-            IBinder binder = ServiceManager.getService("circle.mesh");
-            if (binder != null) {
-                mMesh = ICircleMeshService.Stub.asInterface(binder);
-            }
-            mUiHandler.post(this::refreshStatus);
-        }).start();
+    private void selectWindow(int window) {
+        mWindow = window;
+        refreshHistory();
     }
 
-    private void refreshStatus() {
-        if (mMesh == null) {
-            mTvStatus.setText("Service unavailable");
+    private void refreshHistory() {
+        mTvWindowHour.setTextColor(mWindow == MeshHistory.WINDOW_HOUR ? 0xFF1A1A2E : 0xFF888888);
+        mTvWindowDay.setTextColor(mWindow == MeshHistory.WINDOW_DAY ? 0xFF1A1A2E : 0xFF888888);
+        mSparkline.load(mWindow);
+        MeshHistory.get().readStats(mWindow, mStats);
+        if (mStats.samples == 0) {
+            mTvHistoryStats.setText("No samples yet");
             return;
         }
-        new Thread(() -> {
-            try {
-                boolean running  = mMesh.isRunning();
-                int     peers    = mMesh.getPeerCount();
-                String  deviceId = mMesh.getDeviceId();
-                mUiHandler.post(() -> {
-                    mTvStatus.setText(running ? "● Running" : "● Stopped");
-                    mTvStatus.setTextColor(running ? 0xFF006600 : 0xFFCC0000);
-                    mSwMesh.setChecked(running);
-                    mTvPeerCount.setText(String.valueOf(peers));
-                    if (deviceId != null) mTvDeviceId.setText(deviceId);
-                });
-            } catch (RemoteException e) {
-                mUiHandler.post(() -> mTvStatus.setText("Error: " + e.getMessage()));
-            }
-        }).start();
+        mTvHistoryStats.setText(String.format(Locale.US,
+                "Peers min %d · avg %.1f · max %d   Up %d%%",
+                mStats.min, mStats.avg, mStats.max, Math.round(mStats.uptime * 100)));
+    }
+
+    // ── MeshStatusMonitor.Listener ────────────────────────────────────────────
+
+    @Override
+    public void onRunningChanged(boolean running) {
+        mTimer.contentShown();
+        mTvStatus.setText(running ? "● Running" : "● Stopped");
+        mTvStatus.setTextColor(running ? 0xFF006600 : 0xFFCC0000);
+        mSwMesh.setChecked(running);
+    }
+
+    @Override
+    public void onPeerCountChanged(int peers) {
+        mTvPeerCount.setText(String.valueOf(peers));
+    }
+
+    @Override
+    public void onDeviceIdChanged(String deviceId) {
+        mTvDeviceId.setText(deviceId);
+    }
+
+    @Override
+    public void onUnavailable(String reason) {
+        mTvStatus.setText(reason);
+        mTvStatus.setTextColor(0xFF888888);
     }
 
     private View buildLayout() {
@@ -139,10 +174,48 @@ public class MeshSettingsActivity extends Activity {
         peerRow.addView(mTvPeerCount);
         root.addView(wrapCard(peerRow));
 
+        // History
+        LinearLayout history = new LinearLayout(this);
+        history.setOrientation(LinearLayout.VERTICAL);
+        history.setPadding(dp(16), dp(14), dp(16), dp(14));
+        LinearLayout historyHeader = new LinearLayout(this);
+        historyHeader.setOrientation(LinearLayout.HORIZONTAL);
+        mTvWindowHour = makeLabel("1h", 14, 0xFF1A1A2E);
+        mTvWindowHour.setPadding(dp(8), 0, dp(8), 0);
+        mTvWindowHour.setOnClickListener(v -> selectWindow(MeshHistory.WINDOW_HOUR));
+        mTvWindowDay = makeLabel("24h", 14, 0xFF888888);
+        mTvWindowDay.setPadding(dp(8), 0, 0, 0);
+        mTvWindowDay.setOnClickListener(v -> selectWindow(MeshHistory.WINDOW_DAY));
+        historyHeader.addView(makeLabel("History", 15, 0xFF1A1A2E));
+        historyHeader.addView(spacer());
+        historyHeader.addView(mTvWindowHour);
+        historyHeader.addView(mTvWindowDay);
+        history.addView(historyHeader);
+        mSparkline = new MeshSparklineView(this);
+        mSparkline.setPadding(0, dp(8), 0, dp(8));
+        mSparkline.setLayoutParams(new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, dp(64)));
+        history.addView(mSparkline);
+        mTvHistoryStats = makeLabel("No samples yet", 13, 0xFF444444);
+        history.addView(mTvHistoryStats);
+        root.addView(wrapCard(history));
+
+        // Peer list
+        if (MeshStatusMonitor.get().supportsPeerList()) {
+            mPeerAdapter = new MeshPeerAdapter(this);
+            ListView list = new ListView(this);
+            list.setAdapter(mPeerAdapter);
+            View card = wrapCard(list);
+            LinearLayout.LayoutParams lp = (LinearLayout.LayoutParams) card.getLayoutParams();
+            lp.height = 0;
+            lp.weight = 1f;
+            root.addView(card);
+        }
+
         // Info note
         TextView note = makeLabel(
                 "Device ID rotates every 24 hours for privacy.\n"
-              + "Peer count updates every 5 seconds.", 13, 0xFF888888);
+              + "Status updates live while this screen is open.", 13, 0xFF888888);
         note.setPadding(dp(4), dp(12), dp(4), 0);
         root.addView(note);
 
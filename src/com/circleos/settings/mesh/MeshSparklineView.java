@@ -0,0 +1,72 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.view.View;
+
+/**
+ * Peer-count sparkline for one {@link MeshHistory} window. Spans where the
+ * mesh was stopped are shaded. Sample buffers are allocated once and reused
+ * on every redraw.
+ */
+final class MeshSparklineView extends View {
+
+    private final long[]    mAgo     = new long[MeshHistory.capacity()];
+    private final int[]     mPeers   = new int[MeshHistory.capacity()];
+    private final boolean[] mRunning = new boolean[MeshHistory.capacity()];
+    private int mCount;
+    private int mMax;
+    private long mSpanMs = MeshHistory.spanMs(MeshHistory.WINDOW_HOUR);
+
+    private final Path  mPath      = new Path();
+    private final Paint mLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mDownPaint = new Paint();
+
+    MeshSparklineView(Context context) {
+        super(context);
+        mLinePaint.setColor(0xFF3A5BA0);
+        mLinePaint.setStyle(Paint.Style.STROKE);
+        mLinePaint.setStrokeWidth(2 * context.getResources().getDisplayMetrics().density);
+        mDownPaint.setColor(0x22CC0000);
+        mDownPaint.setStyle(Paint.Style.FILL);
+    }
+
+    /** Main thread. Re-reads {@code window} from the history and redraws. */
+    void load(int window) {
+        mSpanMs = MeshHistory.spanMs(window);
+        mCount = MeshHistory.get().readSamples(window, mAgo, mPeers, mRunning);
+        mMax = 1;
+        for (int i = 0; i < mCount; i++) mMax = Math.max(mMax, mPeers[i]);
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int w = getWidth() - getPaddingLeft() - getPaddingRight();
+        int h = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (mCount == 0 || w <= 0 || h <= 0) return;
+        float left = getPaddingLeft();
+        float top  = getPaddingTop();
+
+        mPath.reset();
+        for (int i = 0; i < mCount; i++) {
+            float x = left + w * (1f - (float) mAgo[i] / mSpanMs);
+            float y = top + h * (1f - (float) mPeers[i] / mMax);
+            if (i == 0) mPath.moveTo(x, y);
+            else mPath.lineTo(x, y);
+
+            if (!mRunning[i]) {
+                float next = i + 1 < mCount
+                        ? left + w * (1f - (float) mAgo[i + 1] / mSpanMs) : left + w;
+                canvas.drawRect(x, top, next, top + h, mDownPaint);
+            }
+        }
+        canvas.drawPath(mPath, mLinePaint);
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Slog;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import za.co.circleos.mesh.ICircleMeshService;
+
+/**
+ * Process-wide source of circle.mesh status for any number of screens.
+ *
+ * Listeners are called on the main thread, and only for fields that
+ * actually changed; a new listener is first replayed the current state.
+ *
+ * Status comes from a {@link Source}. The v1 ICircleMeshService has no
+ * listener registration, so the only source is {@link PollingSource}: one
+ * periodic task on the shared {@link CircleExecutors#scheduler()}, running
+ * only while someone is listening, no matter how many screens subscribe.
+ * The binder calls themselves go through {@link CircleIpc}, so a refresh
+ * that lands while a poll is in flight joins it instead of polling again.
+ * A binder-callback source slots in behind the same interface once the
+ * service can push events.
+ *
+ * Per-peer join/leave/update deltas go to {@link PeerListener}s, from the
+ * {@link MeshPeerFeed} that {@link CircleServices#meshPeers()} supplies.
+ * The v1 service only reports a count and has no feed, so
+ * {@link #supportsPeerList()} is false against it.
+ */
+public final class MeshStatusMonitor {
+
+    private static final String TAG = "CircleMeshMonitor";
+
+    /** Receives mesh status changes on the main thread. */
+    public interface Listener {
+        default void onRunningChanged(boolean running) {}
+        default void onPeerCountChanged(int peers) {}
+        /** Device ID changed — normally its 24-hour privacy rotation. */
+        default void onDeviceIdChanged(String deviceId) {}
+        /** Service missing or failing; {@code reason} is user-facing. */
+        default void onUnavailable(String reason) {}
+    }
+
+    /**
+     * Receives incremental peer-set deltas on the feed's thread. Peer IDs
+     * are the 64-bit value of the peer's 16-hex-digit device ID.
+     */
+    public interface PeerListener {
+        void onPeerJoined(long id, long lastSeen, int signalDbm, int hops);
+        void onPeerUpdated(long id, long lastSeen, int signalDbm, int hops);
+        void onPeerLeft(long id);
+        /** Forget all peers; the feed will re-announce the current set. */
+        void onPeersReset();
+    }
+
+    /** Where status comes from; pushes every observation into {@link #publish}. */
+    interface Source {
+        /** Called once, before any other method. */
+        void attach(MeshStatusMonitor sink);
+        void start();
+        void stop();
+        /** Asks for a fresh observation as soon as possible. */
+        void refresh();
+        /** Takes one observation on the calling thread, which may block on binder. */
+        void observeNow();
+    }
+
+    /** Immutable observed state. */
+    static final class Status {
+        final Boolean running;     // null until known
+        final int     peers;       // -1 until known
+        final String  deviceId;
+        final String  error;       // non-null while unavailable
+
+        Status(Boolean running, int peers, String deviceId, String error) {
+            this.running  = running;
+            this.peers    = peers;
+            this.deviceId = deviceId;
+            this.error    = error;
+        }
+
+        static final Status UNKNOWN = new Status(null, -1, null, null);
+    }
+
+    private static final MeshStatusMonitor sInstance = new MeshStatusMonitor(new PollingSource());
+
+    private final Handler mMain = new Handler(Looper.getMainLooper());
+    private final List<Listener> mListeners = new ArrayList<>();  // main thread only
+    private final Source mSource;
+    private volatile Status mStatus = Status.UNKNOWN;
+
+    private final CopyOnWriteArrayList<PeerListener> mPeerListeners =
+            new CopyOnWriteArrayList<>();
+    private MeshPeerFeed mPeerFeed;                               // main thread only
+
+    private final PeerListener mPeerFanOut = new PeerListener() {
+        @Override public void onPeerJoined(long id, long seen, int sig, int hops) {
+            for (PeerListener l : mPeerListeners) l.onPeerJoined(id, seen, sig, hops);
+        }
+        @Override public void onPeerUpdated(long id, long seen, int sig, int hops) {
+            for (PeerListener l : mPeerListeners) l.onPeerUpdated(id, seen, sig, hops);
+        }
+        @Override public void onPeerLeft(long id) {
+            for (PeerListener l : mPeerListeners) l.onPeerLeft(id);
+        }
+        @Override public void onPeersReset() {
+            for (PeerListener l : mPeerListeners) l.onPeersReset();
+        }
+    };
+
+    MeshStatusMonitor(Source source) {
+        mSource = source;
+        mSource.attach(this);
+    }
+
+    public static MeshStatusMonitor get() {
+        return sInstance;
+    }
+
+    /** Main thread. Replays current state, then delivers changes. */
+    public void addListener(Listener l) {
+        if (mListeners.contains(l)) return;
+        mListeners.add(l);
+        deliver(l, Status.UNKNOWN, mStatus);
+        if (mListeners.size() == 1) mSource.start();
+    }
+
+    /** Main thread. The source stops when the last listener goes. */
+    public void removeListener(Listener l) {
+        if (mListeners.remove(l) && mListeners.isEmpty()) mSource.stop();
+    }
+
+    /** Takes one observation now, even with no listeners registered. */
+    public void refresh() {
+        mSource.refresh();
+    }
+
+    /**
+     * Takes one observation on the calling worker thread and publishes it,
+     * for {@link MeshHistoryJobService}, which has no screen polling for it.
+     */
+    public void observeNow() {
+        mSource.observeNow();
+    }
+
+    /** True if the connected service can supply a per-peer list. */
+    public boolean supportsPeerList() {
+        return CircleServices.meshPeers() != null;
+    }
+
+    /**
+     * Main thread. The feed runs while at least one peer listener is
+     * registered. A new listener restarts it, so every listener gets a
+     * reset and then the current set.
+     */
+    public void addPeerListener(PeerListener l) {
+        if (!mPeerListeners.addIfAbsent(l)) return;
+        if (mPeerFeed != null) mPeerFeed.stop();
+        mPeerFeed = CircleServices.meshPeers();
+        if (mPeerFeed != null) mPeerFeed.start(mPeerFanOut);
+    }
+
+    /** Main thread. */
+    public void removePeerListener(PeerListener l) {
+        if (mPeerListeners.remove(l) && mPeerListeners.isEmpty() && mPeerFeed != null) {
+            mPeerFeed.stop();
+            mPeerFeed = null;
+        }
+    }
+
+    /** Latest state, from any thread. */
+    Status current() {
+        return mStatus;
+    }
+
+    /**
+     * Called by the source from any thread. Every observation is offered to
+     * {@link MeshHistory}; listeners are dispatched only on change.
+     */
+    void publish(Status next) {
+        MeshHistory.get().record(next);
+        Status prev = mStatus;
+        if (sameStatus(prev, next)) return;
+        mStatus = next;
+        mMain.post(() -> {
+            for (Listener l : new ArrayList<>(mListeners)) deliver(l, prev, next);
+        });
+    }
+
+    private static boolean sameStatus(Status a, Status b) {
+        return Objects.equals(a.running, b.running) && a.peers == b.peers
+                && Objects.equals(a.deviceId, b.deviceId) && Objects.equals(a.error, b.error);
+    }
+
+    private static void deliver(Listener l, Status prev, Status next) {
+        if (next.error != null) {
+            if (!next.error.equals(prev.error)) l.onUnavailable(next.error);
+            return;
+        }
+        if (next.running != null && !next.running.equals(prev.running)) {
+            l.onRunningChanged(next.running);
+        }
+        if (next.peers >= 0 && next.peers != prev.peers) l.onPeerCountChanged(next.peers);
+        if (next.deviceId != null && !next.deviceId.equals(prev.deviceId)) {
+            l.onDeviceIdChanged(next.deviceId);
+        }
+    }
+
+    /**
+     * Fallback source for services without callbacks: polls isRunning and
+     * getPeerCount every {@link #POLL_MS}, and the slowly-rotating device ID
+     * only every {@link #DEVICE_ID_EVERY} polls.
+     */
+    static final class PollingSource implements Source, CircleServices.Listener {
+        static final long POLL_MS = 5_000;
+        static final long POLL_TIMEOUT_MS = 4_000;
+        static final int  DEVICE_ID_EVERY = 12;
+        private static final String POLL_KEY = "mesh.poll";
+
+        private ScheduledFuture<?> mTask;
+        private volatile MeshStatusMonitor mSink;
+        private volatile int               mPollCount;
+
+        @Override
+        public void attach(MeshStatusMonitor sink) {
+            mSink = sink;
+        }
+
+        @Override
+        public synchronized void start() {
+            if (mTask == null) {
+                mTask = CircleExecutors.scheduler().scheduleWithFixedDelay(
+                        this::refresh, 0, POLL_MS, TimeUnit.MILLISECONDS);
+                CircleServices.addListener(this);
+            }
+        }
+
+        @Override
+        public synchronized void stop() {
+            if (mTask != null) mTask.cancel(false);
+            mTask = null;
+            CircleServices.removeListener(this);
+        }
+
+        // Reflect a service death or return now rather than at the next tick
+        @Override
+        public void onServiceDied(String name) {
+            if (CircleServices.MESH.equals(name)) refresh();
+        }
+
+        @Override
+        public void onServiceAvailable(String name) {
+            if (CircleServices.MESH.equals(name)) refresh();
+        }
+
+        @Override
+        public void refresh() {
+            CircleIpc.enqueue(null, CircleServices.MESH, POLL_KEY, POLL_TIMEOUT_MS, () -> {
+                poll();
+                return null;
+            }, null);
+        }
+
+        @Override
+        public void observeNow() {
+            poll();
+        }
+
+        private void poll() {
+            MeshStatusMonitor sink = mSink;
+            Status prev = sink.current();
+            ICircleMeshService mesh = CircleServices.mesh();
+            if (mesh == null) {
+                sink.publish(new Status(null, -1, null, "Service unavailable"));
+                return;
+            }
+            try {
+                boolean running = mesh.isRunning();
+                int     peers   = mesh.getPeerCount();
+                String  id      = prev.deviceId;
+                if (id == null || mPollCount % DEVICE_ID_EVERY == 0
+                        || !Objects.equals(prev.running, running)) {
+                    id = mesh.getDeviceId();
+                }
+                mPollCount++;
+                sink.publish(new Status(running, peers, id, null));
+            } catch (RemoteException e) {
+                Slog.w(TAG, "Mesh status poll failed", e);
+                CircleServices.invalidate(CircleServices.MESH);
+                sink.publish(new Status(null, -1, null, "Error: " + e.getMessage()));
+            }
+        }
+    }
+}
@@ -9,85 +9,224 @@ import android.circleos.AppPrivacyPolicy;
 import android.circleos.ICirclePrivacyManager;
 import android.content.Context;
 import android.content.Intent;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.os.RemoteException;
+import android.util.LruCache;
 import android.util.Slog;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
-import android.widget.ArrayAdapter;
+import android.widget.BaseAdapter;
 import android.widget.ImageView;
 import android.widget.Switch;
 import android.widget.TextView;
 
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+import com.circleos.settings.CircleTrace;
+import com.circleos.settings.PolicyBits;
 import com.circleos.settings.R;
+import com.circleos.settings.UsageAnomalyDetector;
 
-import java.util.List;
+import java.util.HashMap;
 
 /**
  * ListView adapter for the Privacy Dashboard app list.
  * Each row shows: app icon, name, privacy score, and a network toggle.
+ *
+ * Rows come from a {@link DashboardSnapshot}, which holds only package
+ * names, scores and flags. Labels and icons are looked up from the
+ * package manager when a row is bound, so only rows that reach the
+ * screen pay for them; labels are kept in a small LRU for scrolling back.
+ * Rows flagged by {@link UsageAnomalyDetector} carry a burst note.
+ *
+ * The snapshot is immutable, so network toggles made here are kept in
+ * the adapter by package and override it when a row is bound. A failed
+ * write puts the old value back there and rebinds, rather than touching
+ * a Switch that may since have been recycled for another package.
+ *
+ * With more than one user or profile the list is either grouped, with a
+ * header per user giving its app count and average score, or one list
+ * ordered by score across users, with each row naming its user.
  */
-public class AppPrivacyAdapter extends ArrayAdapter<PrivacyDashboardActivity.AppPrivacySummary> {
+public class AppPrivacyAdapter extends BaseAdapter {
 
     private static final String TAG = "CirclePrivacyAdapter";
 
-    private final ICirclePrivacyManager mManager;
+    private static final int LABEL_CACHE_SIZE = 64;
+
+    private static final int TYPE_APP    = 0;
+    private static final int TYPE_HEADER = 1;
+
+    private final Context                        mContext;
+    private final PackageManager                 mPm;
+    private final DashboardSnapshot              mSnapshot;
+    private final CircleIpc.Scope                mScope;
+    private final LruCache<String, CharSequence> mLabels = new LruCache<>(LABEL_CACHE_SIZE);
+    private final boolean                        mShowUser;   // name the user on each row
+    private final int[]                          mPositions;  // row index, or ~group for a header
+    private final HashMap<String, Boolean>       mNetwork = new HashMap<>();  // toggled here
+
+    public AppPrivacyAdapter(Context context, DashboardSnapshot snapshot, boolean byScore,
+                             CircleIpc.Scope scope) {
+        mContext  = context;
+        mPm       = context.getPackageManager();
+        mSnapshot = snapshot;
+        mScope    = scope;
+
+        boolean multiUser = snapshot.groupCount() > 1;
+        mShowUser = multiUser && byScore;
+        if (!multiUser || byScore) {
+            mPositions = snapshot.byScore();
+        } else {
+            int headers = 0;
+            for (int g = 0; g < snapshot.groupCount(); g++) {
+                if (snapshot.group(g).size > 0) headers++;
+            }
+            mPositions = new int[snapshot.size() + headers];
+            int p = 0;
+            for (int g = 0; g < snapshot.groupCount(); g++) {
+                DashboardSnapshot.Group group = snapshot.group(g);
+                if (group.size == 0) continue;
+                mPositions[p++] = ~g;
+                for (int r = group.start; r < group.start + group.size; r++) mPositions[p++] = r;
+            }
+        }
+    }
 
-    public AppPrivacyAdapter(Context context,
-                             List<PrivacyDashboardActivity.AppPrivacySummary> items,
-                             ICirclePrivacyManager manager) {
-        super(context, 0, items);
-        mManager = manager;
+    @Override
+    public int getCount() {
+        return mPositions.length;
+    }
+
+    @Override
+    public String getItem(int position) {
+        int row = mPositions[position];
+        return row >= 0 ? mSnapshot.packageAt(row) : null;
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return position;
+    }
+
+    @Override
+    public int getViewTypeCount() {
+        return 2;
+    }
+
+    @Override
+    public int getItemViewType(int position) {
+        return mPositions[position] >= 0 ? TYPE_APP : TYPE_HEADER;
+    }
+
+    @Override
+    public boolean isEnabled(int position) {
+        return mPositions[position] >= 0;
     }
 
     @Override
     public View getView(int position, View convertView, ViewGroup parent) {
+        CircleTrace.begin("AppPrivacyAdapter#getView");
+        try {
+            int row = mPositions[position];
+            return row >= 0 ? bindView(row, convertView, parent)
+                    : bindHeader(mSnapshot.group(~row), convertView);
+        } finally {
+            CircleTrace.end();
+        }
+    }
+
+    private View bindHeader(DashboardSnapshot.Group group, View convertView) {
+        TextView header = (TextView) convertView;
+        if (header == null) {
+            header = new TextView(mContext);
+            float density = mContext.getResources().getDisplayMetrics().density;
+            int pad = Math.round(12 * density);
+            header.setPadding(pad, Math.round(16 * density), pad, Math.round(6 * density));
+            header.setTextSize(13);
+            header.setTextColor(0xFF9E9E9E);
+            header.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        }
+        header.setText(group.label + " · " + group.size + (group.size == 1 ? " app" : " apps")
+                + " · average " + group.averageScore + "/100");
+        return header;
+    }
+
+    private View bindView(int position, View convertView, ViewGroup parent) {
         if (convertView == null) {
-            convertView = LayoutInflater.from(getContext())
+            convertView = LayoutInflater.from(mContext)
                     .inflate(R.layout.item_app_privacy, parent, false);
         }
 
-        PrivacyDashboardActivity.AppPrivacySummary item = getItem(position);
-        if (item == null) return convertView;
+        String pkg = mSnapshot.packageAt(position);
+        int appScore = mSnapshot.scoreAt(position);
 
         ImageView icon    = convertView.findViewById(R.id.app_icon);
         TextView  name    = convertView.findViewById(R.id.app_name);
         TextView  score   = convertView.findViewById(R.id.privacy_score);
+        TextView  anomaly = convertView.findViewById(R.id.usage_anomaly);
         Switch    network = convertView.findViewById(R.id.network_toggle);
 
-        // App icon
+        // App icon and label, resolved only for rows being shown, in the row's user
         try {
-            PackageManager pm = getContext().getPackageManager();
-            icon.setImageDrawable(pm.getApplicationIcon(item.app));
-            name.setText(pm.getApplicationLabel(item.app));
+            ApplicationInfo app = mPm.getApplicationInfoAsUser(pkg, 0, mSnapshot.userAt(position));
+            icon.setImageDrawable(mPm.getApplicationIcon(app));
+            CharSequence label = mLabels.get(pkg);
+            if (label == null) {
+                label = mPm.getApplicationLabel(app);
+                mLabels.put(pkg, label);
+            }
+            name.setText(label);
         } catch (Exception ignored) {
-            name.setText(item.app.packageName);
+            icon.setImageDrawable(null);
+            name.setText(pkg);
         }
 
         // Privacy score badge
-        score.setText(item.score + "/100");
-        score.setTextColor(scoreColor(item.score));
+        score.setText(mShowUser ? appScore + "/100 · " + mSnapshot.userLabelAt(position)
+                : appScore + "/100");
+        score.setTextColor(scoreColor(appScore));
+
+        // Burst flagged by the usage anomaly job in the last week
+        UsageAnomalyDetector.Flag flag = UsageAnomalyDetector.flagFor(mContext, pkg);
+        if (flag != null) {
+            anomaly.setText("Burst: " + UsageAnomalyDetector.shortName(flag.permission)
+                    + " " + flag.perMinute + "/min");
+            anomaly.setVisibility(View.VISIBLE);
+        } else {
+            anomaly.setVisibility(View.GONE);
+        }
 
         // Network toggle — no listener during bind to avoid spurious callbacks
         network.setOnCheckedChangeListener(null);
-        network.setChecked(item.policy != null && item.policy.networkAllowed);
+        Boolean toggled = mNetwork.get(pkg);
+        network.setChecked(toggled != null ? toggled : mSnapshot.has(position, PolicyBits.NETWORK));
         network.setOnCheckedChangeListener((btn, checked) -> {
-            try {
-                AppPrivacyPolicy policy = mManager.getPolicy(item.app.packageName);
+            mNetwork.put(pkg, checked);
+            CircleIpc.enqueue(mScope, CircleServices.PRIVACY, null, () -> {
+                ICirclePrivacyManager manager = CircleServices.requirePrivacy();
+                AppPrivacyPolicy policy = manager.getPolicy(pkg);
                 policy.networkAllowed = checked;
-                mManager.setPolicy(item.app.packageName, policy);
-            } catch (RemoteException e) {
-                Slog.e(TAG, "Failed to update network policy", e);
-                btn.setChecked(!checked); // revert
-            }
+                manager.setPolicy(pkg, policy);
+                PrivacyDashboardData.get().markStale(pkg);
+                return null;
+            }, new CircleIpc.Callback<Void>() {
+                @Override public void onResult(Void ignored) {}
+                @Override public void onError(Exception e) {
+                    Slog.e(TAG, "Failed to update network policy", e);
+                    if (mNetwork.get(pkg) != checked) return;  // toggled again since
+                    mNetwork.put(pkg, !checked);
+                    notifyDataSetChanged();
+                }
+            });
         });
 
         // Tap row → full per-app settings
         convertView.setOnClickListener(v -> {
-            Intent intent = new Intent(getContext(), AppPrivacyDetailActivity.class);
-            intent.putExtra(AppPrivacyDetailActivity.EXTRA_PACKAGE, item.app.packageName);
-            getContext().startActivity(intent);
+            Intent intent = new Intent(mContext, AppPrivacyDetailActivity.class);
+            intent.putExtra(AppPrivacyDetailActivity.EXTRA_PACKAGE, pkg);
+            mContext.startActivity(intent);
         });
 
         return convertView;
@@ -9,21 +9,25 @@ import android.app.Activity;
 import android.circleos.AppPrivacyPolicy;
 import android.circleos.ICirclePrivacyManager;
 import android.circleos.PermissionUsageRecord;
+import android.content.pm.PackageManager;
 import android.os.Bundle;
-import android.os.IBinder;
-import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.util.Slog;
 import android.widget.Switch;
 import android.widget.TextView;
 
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+import com.circleos.settings.PolicyBits;
 import com.circleos.settings.R;
+import com.circleos.settings.ScreenTimer;
+import com.circleos.settings.threat.BlockAnalytics;
 
 import java.text.SimpleDateFormat;
-import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Future;
 
 /**
  * Per-app privacy settings screen.
@@ -35,8 +39,17 @@ import java.util.Locale;
  *  - Storage access toggle
  *  - Lobby mode toggle
  *  - Last 20 audit log entries for this app
+ *  - Domains the filter blocked most for this app over the last day
+ *
+ * All binder calls go through {@link CircleIpc}. Edits are kept as
+ * {@link PolicyBits} and saved one at a time; toggles flipped while a save
+ * is in flight go out in the next one, and a save that would not change
+ * what the service last accepted is skipped.
+ * Toggles stay unbound until the real policy has loaded, so a failed load
+ * can never be saved over it; loading is retried when circle.privacy
+ * comes back.
  */
-public class AppPrivacyDetailActivity extends Activity {
+public class AppPrivacyDetailActivity extends Activity implements CircleServices.Listener {
 
     private static final String TAG = "CircleAppPrivacyDetail";
     public  static final String EXTRA_PACKAGE = "circle.extra.PACKAGE";
@@ -45,45 +58,71 @@ public class AppPrivacyDetailActivity extends Activity {
         "ACCELEROMETER", "GYROSCOPE", "BAROMETER", "MAGNETOMETER"
     };
 
-    private ICirclePrivacyManager mManager;
     private String                mPackageName;
-    private AppPrivacyPolicy      mPolicy;
+    private boolean               mLoaded;
+    private long                  mBits;           // PolicyBits being edited
+    private long                  mSavedBits;      // last accepted by the service
+    private final CircleIpc.Scope mScope = new CircleIpc.Scope();
+    private final ScreenTimer     mTimer = new ScreenTimer("AppPrivacyDetail");
+    private boolean               mSaving;
+    private Future<?>             mBlockedLoad;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(R.layout.activity_app_privacy_detail);
 
         mPackageName = getIntent().getStringExtra(EXTRA_PACKAGE);
         if (mPackageName == null) { finish(); return; }
 
-        IBinder b = ServiceManager.getService("circle.privacy");
-        if (b == null) { finish(); return; }
-        mManager = ICirclePrivacyManager.Stub.asInterface(b);
+        CircleServices.addListener(this);
+        load();
+        loadBlockedDomains();
+    }
 
-        loadAndBindPolicy();
-        loadAuditLog();
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        CircleServices.removeListener(this);
+        mScope.cancel();
+        if (mBlockedLoad != null) mBlockedLoad.cancel(true);
     }
 
-    private void loadAndBindPolicy() {
-        try {
-            mPolicy = mManager.getPolicy(mPackageName);
-        } catch (RemoteException e) {
-            mPolicy = new AppPrivacyPolicy();
+    @Override
+    public void onServiceAvailable(String name) {
+        if (CircleServices.PRIVACY.equals(name)) load();
+    }
+
+    private void load() {
+        String pkg = mPackageName;
+        if (!mLoaded) {
+            CircleIpc.enqueue(mScope, CircleServices.PRIVACY, "privacy.policy/" + pkg,
+                    () -> CircleServices.requirePrivacy().getPolicy(pkg),
+                    new CircleIpc.Callback<AppPrivacyPolicy>() {
+                        @Override public void onResult(AppPrivacyPolicy policy) {
+                            if (!mLoaded) bindPolicy(policy);
+                        }
+                        @Override public void onError(Exception e) {
+                            Slog.e(TAG, "Failed to load policy", e);
+                        }
+                    });
         }
+        long since = System.currentTimeMillis() - (7L * 24 * 60 * 60 * 1000); // 7 days
+        CircleIpc.enqueue(mScope, CircleServices.PRIVACY, "privacy.usage/" + pkg,
+                () -> CircleServices.requirePrivacy().getUsageLog(pkg, since),
+                this::bindAuditLog);
+    }
 
-        bindSwitch(R.id.switch_network,  mPolicy.networkAllowed,  v -> {
-            mPolicy.networkAllowed = v; savePolicy();
-        });
-        bindSwitch(R.id.switch_contacts, mPolicy.contactsAllowed, v -> {
-            mPolicy.contactsAllowed = v; savePolicy();
-        });
-        bindSwitch(R.id.switch_storage,  mPolicy.storageAllowed,  v -> {
-            mPolicy.storageAllowed = v; savePolicy();
-        });
-        bindSwitch(R.id.switch_lobby,    mPolicy.lobbyMode,       v -> {
-            mPolicy.lobbyMode = v; savePolicy();
-        });
+    private void bindPolicy(AppPrivacyPolicy policy) {
+        mLoaded    = true;
+        mBits      = PolicyBits.encode(policy);
+        mSavedBits = mBits;
+
+        bindFlag(R.id.switch_network,  PolicyBits.NETWORK);
+        bindFlag(R.id.switch_contacts, PolicyBits.CONTACTS);
+        bindFlag(R.id.switch_storage,  PolicyBits.STORAGE);
+        bindFlag(R.id.switch_lobby,    PolicyBits.LOBBY);
 
         // Sensor toggles
         int[] sensorIds = {
@@ -91,43 +130,93 @@ public class AppPrivacyDetailActivity extends Activity {
             R.id.switch_barometer, R.id.switch_magnetometer
         };
         for (int i = 0; i < SENSORS.length; i++) {
-            final String sensor = SENSORS[i];
-            bindSwitch(sensorIds[i], mPolicy.allowedSensors.contains(sensor), v -> {
-                if (v) { if (!mPolicy.allowedSensors.contains(sensor)) mPolicy.allowedSensors.add(sensor); }
-                else   { mPolicy.allowedSensors.remove(sensor); }
-                savePolicy();
-            });
+            bindFlag(sensorIds[i], PolicyBits.sensorBit(SENSORS[i]));
         }
+        mTimer.contentShown();
     }
 
-    private void loadAuditLog() {
-        try {
-            long since = System.currentTimeMillis() - (7L * 24 * 60 * 60 * 1000); // 7 days
-            List<PermissionUsageRecord> records = mManager.getUsageLog(mPackageName, since);
-            StringBuilder sb = new StringBuilder();
-            SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm", Locale.US);
-            int count = Math.min(records.size(), 20);
-            for (int i = 0; i < count; i++) {
-                PermissionUsageRecord r = records.get(i);
-                sb.append(sdf.format(new Date(r.timestamp)))
-                  .append("  ").append(r.action)
-                  .append("  ").append(shortPermission(r.permission));
-                if (r.extra != null) sb.append(" (").append(r.extra).append(")");
-                sb.append("\n");
-            }
-            TextView log = findViewById(R.id.audit_log);
-            log.setText(sb.length() > 0 ? sb.toString() : "No recent activity");
-        } catch (RemoteException e) {
-            Slog.e(TAG, "Failed to load audit log", e);
+    private void bindFlag(int viewId, long flag) {
+        bindSwitch(viewId, PolicyBits.has(mBits, flag), v -> {
+            mBits = PolicyBits.with(mBits, flag, v);
+            savePolicy();
+        });
+    }
+
+    private void bindAuditLog(List<PermissionUsageRecord> records) {
+        StringBuilder sb = new StringBuilder();
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm", Locale.US);
+        int count = Math.min(records.size(), 20);
+        for (int i = 0; i < count; i++) {
+            PermissionUsageRecord r = records.get(i);
+            sb.append(sdf.format(new Date(r.timestamp)))
+              .append("  ").append(r.action)
+              .append("  ").append(shortPermission(r.permission));
+            if (r.extra != null) sb.append(" (").append(r.extra).append(")");
+            sb.append("\n");
         }
+        TextView log = findViewById(R.id.audit_log);
+        log.setText(sb.length() > 0 ? sb.toString() : "No recent activity");
     }
 
-    private void savePolicy() {
+    private void loadBlockedDomains() {
+        int uid;
         try {
-            mManager.setPolicy(mPackageName, mPolicy);
-        } catch (RemoteException e) {
-            Slog.e(TAG, "Failed to save policy", e);
+            uid = getPackageManager().getApplicationInfo(mPackageName, 0).uid;
+        } catch (PackageManager.NameNotFoundException e) {
+            return;
+        }
+        mBlockedLoad = CircleExecutors.background().submit(() -> {
+            List<BlockAnalytics.DomainCount> top = BlockAnalytics.get()
+                    .topForApp(uid, BlockAnalytics.WINDOW_DAY, 5);
+            runOnUiThread(() -> bindBlockedDomains(top));
+        });
+    }
+
+    private void bindBlockedDomains(List<BlockAnalytics.DomainCount> top) {
+        TextView view = findViewById(R.id.blocked_domains);
+        if (top.isEmpty()) {
+            view.setText(R.string.detail_no_blocked_domains);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        for (BlockAnalytics.DomainCount d : top) {
+            sb.append(String.format(Locale.US, "%6d  ", d.count)).append(d.domain).append('\n');
         }
+        view.setText(sb.toString());
+    }
+
+    private void savePolicy() {
+        if (!mSaving) flushPolicy();
+    }
+
+    /** Sends the current bits if they differ from the last save; repeats until caught up. */
+    private void flushPolicy() {
+        long bits = mBits;
+        if (bits == mSavedBits) return;
+        mSaving = true;
+        String pkg = mPackageName;
+        // Process scope: an edit made just before leaving the screen still lands
+        CircleIpc.enqueue(null, CircleServices.PRIVACY, null, () -> {
+            // Onto the service's own policy, so fields we don't code are kept;
+            // a package without one gets a new policy, never null
+            ICirclePrivacyManager manager = CircleServices.requirePrivacy();
+            AppPrivacyPolicy target = manager.getPolicy(pkg);
+            if (target == null) target = new AppPrivacyPolicy();
+            PolicyBits.apply(bits & ~PolicyBits.NO_POLICY, target);
+            manager.setPolicy(pkg, target);
+            PrivacyDashboardData.get().markStale(pkg);
+            return null;
+        }, new CircleIpc.Callback<Void>() {
+            @Override public void onResult(Void ignored) {
+                mSaving = false;
+                mSavedBits = bits;
+                flushPolicy();
+            }
+            @Override public void onError(Exception e) {
+                Slog.e(TAG, "Failed to save policy", e);
+                mSaving = false;
+            }
+        });
     }
 
     private void bindSwitch(int viewId, boolean initial,
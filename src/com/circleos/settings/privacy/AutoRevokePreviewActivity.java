@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.privacy;
+
+import android.app.Activity;
+import android.circleos.ICirclePrivacyManager;
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Slog;
+import android.widget.TextView;
+
+import com.circleos.settings.AutoRevoker;
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.CircleServices;
+import com.circleos.settings.R;
+import com.circleos.settings.ScreenTimer;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * Auto-revoke preview screen.
+ *
+ * Shows:
+ *  - The last auto-revoke report (apps, grants revoked, time taken)
+ *  - A dry run of what the next pass would revoke right now. Only network
+ *    and sensor grants are listed; the privacy service decides contacts,
+ *    storage and lobby-mode apps itself at the end of each pass.
+ */
+public class AutoRevokePreviewActivity extends Activity {
+
+    private static final String TAG = "CircleAutoRevokePreview";
+
+    private TextView  mLastRun;
+    private TextView  mCandidates;
+    private Future<?> mScan;
+    private final ScreenTimer mTimer = new ScreenTimer("AutoRevokePreview");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(R.layout.activity_auto_revoke_preview);
+
+        mLastRun    = findViewById(R.id.last_run);
+        mCandidates = findViewById(R.id.candidates);
+
+        ICirclePrivacyManager manager = CircleServices.privacy();
+        if (manager == null) { finish(); return; }
+
+        AutoRevoker revoker = new AutoRevoker(this, manager);
+        mScan = CircleExecutors.background().submit(() -> {
+            AutoRevoker.Report report = AutoRevoker.loadReport(this);
+            runOnUiThread(() -> bindReport(report));
+            try {
+                List<AutoRevoker.Candidate> candidates = revoker.preview(() -> {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedException();
+                    }
+                });
+                runOnUiThread(() -> bindCandidates(candidates));
+            } catch (RemoteException e) {
+                Slog.e(TAG, "Dry run failed", e);
+                runOnUiThread(() -> mCandidates.setText("Error: " + e.getMessage()));
+            } catch (InterruptedException e) {
+                // screen closed
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mScan != null) mScan.cancel(true);
+    }
+
+    private void bindReport(AutoRevoker.Report report) {
+        if (report == null) {
+            mLastRun.setText(R.string.revoke_never_run);
+            return;
+        }
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm", Locale.US);
+        StringBuilder sb = new StringBuilder();
+        sb.append(sdf.format(new Date(report.startedAt)))
+          .append(report.isComplete() ? "  complete" : "  in progress")
+          .append("  ").append(report.activeMs).append(" ms\n")
+          .append(report.packagesScanned).append(" apps scanned, ")
+          .append(report.permissionCount()).append(" grants revoked\n");
+        appendCandidates(sb, report.revoked);
+        mLastRun.setText(sb.toString());
+    }
+
+    private void bindCandidates(List<AutoRevoker.Candidate> candidates) {
+        mTimer.contentShown();
+        if (candidates.isEmpty()) {
+            mCandidates.setText(R.string.revoke_none);
+            return;
+        }
+        StringBuilder sb = new StringBuilder();
+        appendCandidates(sb, candidates);
+        mCandidates.setText(sb.toString());
+    }
+
+    private static void appendCandidates(StringBuilder sb, List<AutoRevoker.Candidate> list) {
+        for (AutoRevoker.Candidate c : list) {
+            sb.append(c.packageName).append("\n");
+            for (String perm : c.permissions) {
+                sb.append("    ").append(shortPermission(perm)).append("\n");
+            }
+        }
+    }
+
+    private static String shortPermission(String perm) {
+        int dot = perm.lastIndexOf('.');
+        return dot >= 0 ? perm.substring(dot + 1) : perm;
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.privacy;
+
+import com.circleos.settings.PolicyBits;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, column-oriented view of the Privacy Dashboard list.
+ *
+ * Row i is {@code userAt(i)}, {@code packageAt(i)}, {@code scoreAt(i)},
+ * {@code policyAt(i)}. Rows are grouped by user (the calling user first)
+ * and sorted by score ascending (most risky first) within each group;
+ * {@link #byScore()} gives the order across all users. Nothing else is
+ * kept: the policy is reduced to its {@link PolicyBits}, and labels and
+ * icons are resolved by the adapter for the rows actually on screen.
+ *
+ * Per row that is one interned package name, two ints and a long, against
+ * the ApplicationInfo, AppPrivacyPolicy, sensor ArrayList and holder
+ * object each row used to pin. Per-user and device-wide average scores
+ * are worked out while the rows are laid down.
+ */
+public final class DashboardSnapshot {
+
+    private static final int SCORE_SHIFT = PolicyBits.SPARE_SHIFT;
+    private static final long BITS_MASK  = (1L << SCORE_SHIFT) - 1;
+
+    /** One user's or profile's apps. */
+    public static final class Group {
+        public final int    userId;
+        public final String label;
+        public final int    start;       // first row
+        public final int    size;
+        public final int    averageScore;
+
+        Group(int userId, String label, int start, int size, int averageScore) {
+            this.userId       = userId;
+            this.label        = label;
+            this.start        = start;
+            this.size         = size;
+            this.averageScore = averageScore;
+        }
+    }
+
+    private final int[]    mUsers;
+    private final String[] mPackages;
+    private final int[]    mScores;
+    private final long[]   mPolicies;      // PolicyBits
+    private final Group[]  mGroups;
+    private final int      mAverageScore;
+    private int[]          mByScore;       // built on first use
+
+    private DashboardSnapshot(int[] users, String[] packages, int[] scores, long[] policies,
+            Group[] groups, int averageScore) {
+        mUsers        = users;
+        mPackages     = packages;
+        mScores       = scores;
+        mPolicies     = policies;
+        mGroups       = groups;
+        mAverageScore = averageScore;
+    }
+
+    public int size() {
+        return mPackages.length;
+    }
+
+    public int userAt(int i) {
+        return mUsers[i];
+    }
+
+    public String packageAt(int i) {
+        return mPackages[i];
+    }
+
+    public int scoreAt(int i) {
+        return mScores[i];
+    }
+
+    /** The row's policy as {@link PolicyBits}. */
+    public long policyAt(int i) {
+        return mPolicies[i];
+    }
+
+    public boolean has(int i, long flag) {
+        return (mPolicies[i] & flag) != 0;
+    }
+
+    public int groupCount() {
+        return mGroups.length;
+    }
+
+    public Group group(int g) {
+        return mGroups[g];
+    }
+
+    /** Label of the group row {@code i} belongs to. */
+    public String userLabelAt(int i) {
+        for (Group g : mGroups) {
+            if (i < g.start + g.size) return g.label;
+        }
+        return null;
+    }
+
+    /** Mean score over every row, 100 if there are none. */
+    public int averageScore() {
+        return mAverageScore;
+    }
+
+    /** Row indices ordered by score across all users. */
+    public synchronized int[] byScore() {
+        if (mByScore == null) {
+            int n = size();
+            long[] order = new long[n];
+            for (int i = 0; i < n; i++) order[i] = ((long) mScores[i] << 32) | i;
+            Arrays.sort(order);
+            mByScore = new int[n];
+            for (int i = 0; i < n; i++) mByScore[i] = (int) order[i];
+        }
+        return mByScore;
+    }
+
+    // ── Packing ───────────────────────────────────────────────────────────────
+
+    /** Score and policy bits in one long, as kept by {@link PrivacyDashboardData}. */
+    static long pack(int score, long policy) {
+        score = Math.max(0, Math.min(100, score));
+        return ((long) score << SCORE_SHIFT) | (policy & BITS_MASK);
+    }
+
+    static int scoreOf(long packed) {
+        return (int) (packed >>> SCORE_SHIFT);
+    }
+
+    static long policyOf(long packed) {
+        return packed & BITS_MASK;
+    }
+
+    /**
+     * Builds a snapshot with one group per entry of {@code userIds}, in
+     * that order. {@code members} maps each user to its packages and
+     * {@code entries} each package to its {@link #pack packed} summary;
+     * packages without an entry are left out. Package names are interned
+     * so every snapshot and user shares one copy of each.
+     */
+    static DashboardSnapshot of(List<Integer> userIds, Map<Integer, String> labels,
+            Map<Integer, Set<String>> members, Map<String, Long> entries) {
+        int total = 0;
+        for (int user : userIds) {
+            Set<String> pkgs = members.get(user);
+            if (pkgs != null) total += pkgs.size();
+        }
+        int[] users = new int[total];
+        String[] packages = new String[total];
+        int[] scores = new int[total];
+        long[] policies = new long[total];
+        Group[] groups = new Group[userIds.size()];
+
+        int row = 0;
+        long deviceSum = 0;
+        for (int g = 0; g < groups.length; g++) {
+            int user = userIds.get(g);
+            Set<String> pkgs = members.get(user);
+            int start = row;
+            long groupSum = 0;
+            if (pkgs != null) {
+                // Score in the high word, package index in the low, then sort the group
+                String[] keys = new String[pkgs.size()];
+                long[] order = new long[keys.length];
+                int n = 0;
+                for (String pkg : pkgs) {
+                    Long packed = entries.get(pkg);
+                    if (packed == null) continue;
+                    keys[n] = pkg;
+                    order[n] = ((long) scoreOf(packed) << 32) | n;
+                    n++;
+                }
+                Arrays.sort(order, 0, n);
+                for (int k = 0; k < n; k++) {
+                    String pkg = keys[(int) order[k]];
+                    long packed = entries.get(pkg);
+                    users[row]    = user;
+                    packages[row] = pkg.intern();
+                    scores[row]   = scoreOf(packed);
+                    policies[row] = policyOf(packed);
+                    groupSum += scores[row];
+                    row++;
+                }
+            }
+            int size = row - start;
+            deviceSum += groupSum;
+            groups[g] = new Group(user, labels.get(user), start, size,
+                    size == 0 ? 100 : (int) (groupSum / size));
+        }
+        if (row < total) {
+            users    = Arrays.copyOf(users, row);
+            packages = Arrays.copyOf(packages, row);
+            scores   = Arrays.copyOf(scores, row);
+            policies = Arrays.copyOf(policies, row);
+        }
+        return new DashboardSnapshot(users, packages, scores, policies, groups,
+                row == 0 ? 100 : (int) (deviceSum / row));
+    }
+}
@@ -6,21 +6,22 @@
 package com.circleos.settings.privacy;
 
 import android.app.Activity;
-import android.circleos.AppPrivacyPolicy;
-import android.circleos.ICirclePrivacyManager;
-import android.circleos.PermissionUsageRecord;
-import android.content.pm.ApplicationInfo;
-import android.content.pm.PackageManager;
+import android.content.Intent;
 import android.os.Bundle;
-import android.os.IBinder;
-import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.util.Slog;
+import android.view.View;
 import android.widget.ListView;
 import android.widget.TextView;
 
-import java.util.ArrayList;
-import java.util.List;
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+import com.circleos.settings.HubSummaryCache;
+import com.circleos.settings.PolicyBackupActivity;
+import com.circleos.settings.PolicyProfileActivity;
+import com.circleos.settings.R;
+import com.circleos.settings.ScreenTimer;
+
+import java.util.concurrent.TimeoutException;
 
 /**
  * Main Privacy Dashboard — entry point for CircleSettings.
@@ -30,85 +31,138 @@ import java.util.List;
  *  - Quick network toggle per app
  *  - Link to full per-app settings
  *  - Recent audit log entries
+ *  - Link to the auto-revoke preview
+ *  - Link to policy backup and restore
+ *  - Link to bulk privacy profiles
  *
- * Each list item is an AppPrivacySummaryItem showing:
+ * Each list item is one row of a {@link DashboardSnapshot} showing:
  *   [App icon] [App name] [Score badge] [Network toggle]
+ *
+ * Summaries come from the process-wide {@link PrivacyDashboardData} cache,
+ * so returning to this screen only re-queries packages that changed.
+ * Every user and profile on the device is included; with more than one,
+ * the list is grouped by user with per-user averages, or can be switched
+ * to a single list ordered by score. The
+ * load runs on {@link CircleIpc}; a resume while one is in flight joins it.
+ * A first load on a device with many apps makes two binder calls per app,
+ * so it gets {@link PrivacyDashboardData#LOAD_TIMEOUT_MS} rather than the per-call default. If
+ * that passes, the apps loaded so far are shown and the load carries on
+ * in the background for the next resume to join.
+ * If circle.privacy dies the header says so, and the list reloads when
+ * {@link CircleServices} reports the service back.
  */
-public class PrivacyDashboardActivity extends Activity {
+public class PrivacyDashboardActivity extends Activity implements CircleServices.Listener {
 
     private static final String TAG = "CirclePrivacyDashboard";
 
-    private ICirclePrivacyManager mPrivacyManager;
     private ListView              mAppList;
     private TextView              mHeaderScore;
+    private TextView              mSortToggle;
+    private DashboardSnapshot     mSnapshot;
+    private boolean               mByScore;      // one list across users instead of groups
+    private final CircleIpc.Scope mScope = new CircleIpc.Scope();
+    private final ScreenTimer     mTimer = new ScreenTimer("PrivacyDashboard");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(R.layout.activity_privacy_dashboard);
 
         mAppList     = findViewById(R.id.app_list);
         mHeaderScore = findViewById(R.id.header_score);
-
-        connectToPrivacyManager();
-        if (mPrivacyManager != null) {
-            loadApps();
-        }
+        mSortToggle  = findViewById(R.id.sort_toggle);
+        mSortToggle.setOnClickListener(v -> {
+            mByScore = !mByScore;
+            if (mSnapshot != null) bindList();
+        });
+        findViewById(R.id.auto_revoke_link).setOnClickListener(v ->
+                startActivity(new Intent(this, AutoRevokePreviewActivity.class)));
+        findViewById(R.id.backup_link).setOnClickListener(v ->
+                startActivity(new Intent(this, PolicyBackupActivity.class)));
+        findViewById(R.id.profiles_link).setOnClickListener(v ->
+                startActivity(new Intent(this, PolicyProfileActivity.class)));
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        if (mPrivacyManager != null) loadApps();
+        CircleServices.addListener(this);
+        loadApps();
     }
 
-    private void connectToPrivacyManager() {
-        IBinder b = ServiceManager.getService("circle.privacy");
-        if (b == null) {
-            Slog.e(TAG, "circle.privacy service not found");
-            return;
-        }
-        mPrivacyManager = ICirclePrivacyManager.Stub.asInterface(b);
+    @Override
+    protected void onPause() {
+        super.onPause();
+        CircleServices.removeListener(this);
     }
 
-    private void loadApps() {
-        List<ApplicationInfo> apps = getPackageManager()
-                .getInstalledApplications(PackageManager.GET_META_DATA);
-
-        List<AppPrivacySummary> summaries = new ArrayList<>();
-        int totalScore = 0;
-
-        for (ApplicationInfo app : apps) {
-            if ((app.flags & ApplicationInfo.FLAG_SYSTEM) != 0) continue;
-            try {
-                int score = mPrivacyManager.getPrivacyScore(app.packageName);
-                AppPrivacyPolicy policy = mPrivacyManager.getPolicy(app.packageName);
-                summaries.add(new AppPrivacySummary(app, score, policy));
-                totalScore += score;
-            } catch (RemoteException e) {
-                Slog.w(TAG, "Failed to get score for " + app.packageName);
-            }
-        }
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mScope.cancel();
+    }
 
-        // Sort by score ascending (most risky first)
-        summaries.sort((a, b) -> Integer.compare(a.score, b.score));
+    @Override
+    public void onServiceDied(String name) {
+        if (CircleServices.PRIVACY.equals(name)) showUnavailable();
+    }
 
-        int avg = summaries.isEmpty() ? 100 : totalScore / summaries.size();
-        mHeaderScore.setText("Device Privacy Score: " + avg + "/100");
+    @Override
+    public void onServiceAvailable(String name) {
+        if (CircleServices.PRIVACY.equals(name)) loadApps();
+    }
 
-        mAppList.setAdapter(new AppPrivacyAdapter(this, summaries, mPrivacyManager));
+    private void loadApps() {
+        PrivacyDashboardData.enqueueLoad(mScope, this,
+                new CircleIpc.Callback<DashboardSnapshot>() {
+                    @Override public void onResult(DashboardSnapshot snapshot) {
+                        bindApps(snapshot);
+                    }
+                    @Override public void onError(Exception e) {
+                        if (e instanceof TimeoutException) {
+                            Slog.w(TAG, "Dashboard load timed out: " + e.getMessage());
+                            showPartial();
+                            return;
+                        }
+                        Slog.e(TAG, "Failed to load dashboard", e);
+                        showUnavailable();
+                    }
+                });
     }
 
-    /** Simple data holder for dashboard list items. */
-    static class AppPrivacySummary {
-        final ApplicationInfo app;
-        final int             score;
-        final AppPrivacyPolicy policy;
+    private void showUnavailable() {
+        mHeaderScore.setText("Privacy service unavailable");
+    }
 
-        AppPrivacySummary(ApplicationInfo app, int score, AppPrivacyPolicy policy) {
-            this.app    = app;
-            this.score  = score;
-            this.policy = policy;
+    /** Shows the apps loaded so far by a load that is still running. */
+    private void showPartial() {
+        DashboardSnapshot partial = PrivacyDashboardData.get().cached();
+        if (partial != null) {
+            mSnapshot = partial;
+            bindList();
+            mTimer.contentShown();
         }
+        mHeaderScore.setText(partial != null
+                ? "Still loading apps · " + partial.size() + " so far — reopen to continue"
+                : "Still loading apps — reopen to continue");
+    }
+
+    private void bindApps(DashboardSnapshot snapshot) {
+        mSnapshot = snapshot;
+        int avg = snapshot.averageScore();
+        mHeaderScore.setText("Device Privacy Score: " + avg + "/100");
+        HubSummaryCache.putPrivacyScore(this, avg);
+
+        bindList();
+        mTimer.contentShown();
+    }
+
+    private void bindList() {
+        boolean multiUser = mSnapshot.groupCount() > 1;
+        mSortToggle.setVisibility(multiUser ? View.VISIBLE : View.GONE);
+        mSortToggle.setText(mByScore ? R.string.dashboard_group_by_user
+                : R.string.dashboard_sort_by_score);
+        mAppList.setAdapter(new AppPrivacyAdapter(this, mSnapshot, mByScore, mScope));
     }
 }
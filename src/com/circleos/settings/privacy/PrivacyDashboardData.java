@@ -0,0 +1,321 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.privacy;
+
+import android.circleos.AppPrivacyPolicy;
+import android.circleos.ICirclePrivacyManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.content.pm.UserInfo;
+import android.os.RemoteException;
+import android.os.SystemClock;
+import android.os.UserHandle;
+import android.os.UserManager;
+import android.util.Slog;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+import com.circleos.settings.DefaultPolicies;
+import com.circleos.settings.PolicyBits;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+/**
+ * Process-wide cache of the Privacy Dashboard's per-app summaries, across
+ * every user and profile on the device.
+ *
+ * Each package maps to one long holding its score and policy bits (see
+ * {@link DashboardSnapshot#pack}); no ApplicationInfo or policy object is
+ * retained between loads. The privacy service keys policies by package
+ * alone, so a package installed for several users has one summary, and
+ * each user keeps only the set of package names it has.
+ *
+ * Every load lists each user's apps, one task per user on the bounded
+ * {@link CircleExecutors#perUser()} pool. The privacy service is only asked
+ * about packages not yet cached or marked stale. The package-change
+ * receiver marks installs and updates, and policy edits made in this app
+ * mark the edited package. A package shared by several users is queried
+ * once. Packages no user has any more are dropped.
+ *
+ * Results are merged into the cache as they arrive, every
+ * {@link #MERGE_BATCH} queries and when a user's listing ends, so a load
+ * that is cancelled or outlives its caller keeps what it got, and the
+ * next load only queries the rest; {@link #cached()} shows it meanwhile.
+ * Packages no user has any more are only dropped once every user has
+ * been listed.
+ *
+ * Scores move with usage, which sends no broadcast, so a summary older
+ * than {@link #SCORE_TTL_MS} is queried again on the next load. Stale
+ * marks that arrive before or during the first load are kept for the
+ * load after it.
+ */
+public final class PrivacyDashboardData {
+
+    private static final String TAG = "CirclePrivacyData";
+
+    /** How long a cached score is shown before it is queried again. */
+    static final long SCORE_TTL_MS = 2 * 60 * 1000L;
+
+    /** How long to wait for a whole load before showing what it has. */
+    public static final long LOAD_TIMEOUT_MS = 2 * 60 * 1000L;
+
+    /** Queries made by one user's task between merges into the cache. */
+    private static final int MERGE_BATCH = 32;
+
+    private static final PrivacyDashboardData sInstance = new PrivacyDashboardData();
+
+    private final Map<String, Long> mSummaries = new HashMap<>();
+    private final Map<String, Long> mQueriedAt = new HashMap<>();     // elapsedRealtime
+    private final Map<Integer, Set<String>> mMembers = new HashMap<>();
+    private final Map<Integer, String> mLabels = new HashMap<>();
+    private final List<Integer> mUserOrder = new ArrayList<>();
+    private final Set<String> mStale = new HashSet<>();
+    private boolean mLoaded;
+    private long mLoadedAt;                                          // elapsedRealtime
+
+    private PrivacyDashboardData() {}
+
+    public static PrivacyDashboardData get() {
+        return sInstance;
+    }
+
+    /**
+     * Runs a {@link #load} on {@link CircleIpc}, or joins the one in flight,
+     * so the dashboard and the hub never load side by side.
+     */
+    public static void enqueueLoad(CircleIpc.Scope scope, Context context,
+            CircleIpc.Callback<DashboardSnapshot> callback) {
+        Context app = context.getApplicationContext();
+        CircleIpc.enqueue(scope, CircleServices.PRIVACY, "privacy.dashboard", LOAD_TIMEOUT_MS,
+                () -> sInstance.load(app, CircleServices.requirePrivacy()), callback);
+    }
+
+    /** True if nothing has been loaded yet, or the last load's scores have expired. */
+    public synchronized boolean needsLoad() {
+        return !mLoaded || SystemClock.elapsedRealtime() - mLoadedAt > SCORE_TTL_MS;
+    }
+
+    /** Package was installed, updated, or had its policy changed. */
+    public synchronized void markStale(String packageName) {
+        mStale.add(packageName);
+    }
+
+    /** Package was uninstalled for the calling user. */
+    public synchronized void remove(String packageName) {
+        Set<String> mine = mMembers.get(UserHandle.myUserId());
+        if (mine != null) mine.remove(packageName);
+        for (Set<String> pkgs : mMembers.values()) {
+            if (pkgs.contains(packageName)) return;     // another user still has it
+        }
+        mSummaries.remove(packageName);
+        mQueriedAt.remove(packageName);
+        mStale.remove(packageName);
+    }
+
+    /**
+     * Mean score over every user's apps without any IPC, or -1 if nothing
+     * has been loaded in this process yet.
+     */
+    public synchronized int averageScore() {
+        if (!mLoaded) return -1;
+        long total = 0;
+        int n = 0;
+        for (Set<String> pkgs : mMembers.values()) {
+            for (String pkg : pkgs) {
+                Long packed = mSummaries.get(pkg);
+                if (packed == null) continue;
+                total += DashboardSnapshot.scoreOf(packed);
+                n++;
+            }
+        }
+        return n == 0 ? 100 : (int) (total / n);
+    }
+
+    /**
+     * Snapshot of whatever the cache holds, without any IPC, or null if it
+     * holds nothing. May be partial while a load is in progress.
+     */
+    synchronized DashboardSnapshot cached() {
+        if (mSummaries.isEmpty()) return null;
+        return DashboardSnapshot.of(mUserOrder, mLabels, mMembers, mSummaries);
+    }
+
+    /** Drops everything; the next load is a full rescan. */
+    public synchronized void invalidateAll() {
+        mSummaries.clear();
+        mQueriedAt.clear();
+        mMembers.clear();
+        mStale.clear();
+        mLoaded = false;
+    }
+
+    /**
+     * Returns a snapshot of every user's apps, grouped by user and sorted
+     * by score within each group. Users are listed in parallel, and binder
+     * calls are made without holding the cache lock.
+     */
+    DashboardSnapshot load(Context context, ICirclePrivacyManager manager)
+            throws InterruptedException {
+        List<Integer> order = new ArrayList<>();
+        Map<Integer, String> labels = new HashMap<>();
+        listUsers(context, order, labels);
+
+        Set<String> known;
+        Set<String> stale;
+        long started = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            // Includes anything an earlier, unfinished load merged
+            known = new HashSet<>(mSummaries.keySet());
+            stale = new HashSet<>(mStale);
+            mStale.clear();
+            long expired = started - SCORE_TTL_MS;
+            for (Map.Entry<String, Long> e : mQueriedAt.entrySet()) {
+                if (e.getValue() < expired) stale.add(e.getKey());
+            }
+            mUserOrder.clear();
+            mUserOrder.addAll(order);
+            mLabels.clear();
+            mLabels.putAll(labels);
+        }
+
+        PackageManager pm = context.getPackageManager();
+        Set<String> claimed = ConcurrentHashMap.newKeySet();
+        List<Future<?>> tasks = new ArrayList<>(order.size());
+        for (int user : order) {
+            tasks.add(CircleExecutors.perUser().submit(() -> {
+                loadUser(pm, manager, user, known, stale, claimed);
+                return null;
+            }));
+        }
+
+        boolean finished = false;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                try {
+                    tasks.get(i).get();
+                } catch (ExecutionException e) {
+                    Slog.w(TAG, "Failed to list apps for user " + order.get(i), e.getCause());
+                }
+            }
+            finished = true;
+        } finally {
+            for (Future<?> f : tasks) f.cancel(true);   // no-op unless we were interrupted
+            if (!finished) keepStale(stale, started);
+        }
+
+        synchronized (this) {
+            mLoaded = true;
+            mLoadedAt = SystemClock.elapsedRealtime();
+            // A user whose listing failed keeps its last known apps
+            mMembers.keySet().retainAll(order);
+            Set<String> live = new HashSet<>();
+            for (Set<String> pkgs : mMembers.values()) live.addAll(pkgs);
+            mSummaries.keySet().retainAll(live);
+            mQueriedAt.keySet().retainAll(live);
+            return DashboardSnapshot.of(mUserOrder, mLabels, mMembers, mSummaries);
+        }
+    }
+
+    /**
+     * Lists one user's apps and queries those that need it, merging what it
+     * gets every {@link #MERGE_BATCH} queries and the user's apps at the
+     * end. {@code claimed} makes sure a package shared with another user's
+     * task is queried once.
+     */
+    private void loadUser(PackageManager pm, ICirclePrivacyManager manager, int userId,
+            Set<String> known, Set<String> stale, Set<String> claimed)
+            throws InterruptedException {
+        Set<String> pkgs = new HashSet<>();
+        Map<String, Long> fresh = new HashMap<>();
+        Set<String> failed = new HashSet<>();
+        for (ApplicationInfo app : pm.getInstalledApplicationsAsUser(0, userId)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            if (!DefaultPolicies.isUserApp(app)) continue;
+            String pkg = app.packageName.intern();
+            pkgs.add(pkg);
+            if (known.contains(pkg) && !stale.contains(pkg)) continue;
+            if (!claimed.add(pkg)) continue;
+            Long s = query(manager, pkg);
+            if (s != null) fresh.put(pkg, s); else failed.add(pkg);
+            if (fresh.size() + failed.size() >= MERGE_BATCH) merge(fresh, failed);
+        }
+        synchronized (this) {
+            merge(fresh, failed);
+            mMembers.put(userId, pkgs);
+        }
+    }
+
+    /** Marks again the packages in {@code stale} that were not queried after {@code since}. */
+    private synchronized void keepStale(Set<String> stale, long since) {
+        for (String pkg : stale) {
+            Long at = mQueriedAt.get(pkg);
+            if (at == null || at < since) mStale.add(pkg);
+        }
+    }
+
+    /** Moves one batch of query results into the cache. */
+    private synchronized void merge(Map<String, Long> fresh, Set<String> failed) {
+        long now = SystemClock.elapsedRealtime();
+        mSummaries.putAll(fresh);
+        for (String pkg : fresh.keySet()) mQueriedAt.put(pkg, now);
+        mStale.addAll(failed);
+        fresh.clear();
+        failed.clear();
+    }
+
+    /**
+     * Fills {@code order} with the users and profiles to show, the calling
+     * user first, and {@code labels} with their names. Falls back to the
+     * calling user alone if other users cannot be listed.
+     */
+    private static void listUsers(Context context, List<Integer> order,
+            Map<Integer, String> labels) {
+        int me = UserHandle.myUserId();
+        order.add(me);
+        labels.put(me, "This user");
+        List<UserInfo> users = null;
+        try {
+            UserManager um = context.getSystemService(UserManager.class);
+            if (um != null) users = um.getAliveUsers();
+        } catch (SecurityException e) {
+            Slog.w(TAG, "Cannot list users; showing the calling user only", e);
+        }
+        if (users == null) return;
+
+        List<Integer> others = new ArrayList<>();
+        for (UserInfo u : users) {
+            String label = u.isManagedProfile() ? "Work profile"
+                    : u.name != null ? u.name : "User " + u.id;
+            labels.put(u.id, label);
+            if (u.id != me) others.add(u.id);
+        }
+        Collections.sort(others);
+        order.addAll(others);
+    }
+
+    /** Packed score and policy bits for {@code pkg}, or null if the service call failed. */
+    private static Long query(ICirclePrivacyManager manager, String pkg) {
+        try {
+            int score = manager.getPrivacyScore(pkg);
+            AppPrivacyPolicy policy = manager.getPolicy(pkg);
+            return DashboardSnapshot.pack(score, PolicyBits.encode(policy));
+        } catch (RemoteException e) {
+            Slog.w(TAG, "Failed to get score for " + pkg);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,296 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * User/admin overrides for false positives in the threat blocklist.
+ *
+ * Entries live in their own database next to threat_intel.db, so a
+ * blocklist update never touches them. An entry is either an exact domain
+ * ("cdn.example.com") or a wildcard suffix ("*.example.com", which covers
+ * example.com and everything under it).
+ *
+ * Overrides are compiled into the effective blocklist rather than checked
+ * at filter time: allowlisted rows are moved from threat_domains into
+ * threat_suppressed, so the filter service's single lookup already sees
+ * the result. Adding or removing an entry moves only the rows it covers;
+ * ThreatIntelUpdater routes allowlisted domains straight to
+ * threat_suppressed while merging.
+ *
+ * An edit commits in this database first and moves rows in
+ * threat_intel.db second, and the move can fail (SQLITE_BUSY behind a long
+ * merge) or be lost to a crash. So the edit marks its pattern pending in
+ * the same transaction as the entry, and clears the mark once the move has
+ * committed. {@link #reconcile()} replays whatever is still pending; it
+ * runs after every merge and whenever the allowlist screen loads. Replay
+ * is driven by the entries as they are now, so running it twice is harmless.
+ */
+public final class Allowlist {
+
+    private static final String TABLE = "allowlist";
+    private static final String TABLE_PENDING = "allowlist_pending";
+    public static final String TABLE_SUPPRESSED = "threat_suppressed";
+
+    private static final String WILDCARD = "*.";
+
+    private static final String COLUMNS = ThreatDb.COL_DOMAIN + ", " + ThreatDb.COL_CATEGORY
+            + ", " + ThreatDb.COL_SEVERITY + ", " + ThreatDb.COL_ADDED_AT + ", " + ThreatDb.COL_SOURCE;
+
+    /** One allowlist entry. */
+    public static final class Entry {
+        public final String pattern;
+        public final long   addedAt;    // epoch millis
+
+        Entry(String pattern, long addedAt) {
+            this.pattern = pattern;
+            this.addedAt = addedAt;
+        }
+    }
+
+    /** In-memory form for per-domain checks during a merge. */
+    public static final class Matcher {
+        private final Set<String> mExact  = new HashSet<>();
+        private final Set<String> mSuffix = new HashSet<>();
+
+        void add(String pattern) {
+            if (pattern.startsWith(WILDCARD)) mSuffix.add(pattern.substring(WILDCARD.length()));
+            else mExact.add(pattern);
+        }
+
+        public boolean isEmpty() {
+            return mExact.isEmpty() && mSuffix.isEmpty();
+        }
+
+        /** True if {@code pattern} is one of the entries. */
+        boolean covers(String pattern) {
+            return pattern.startsWith(WILDCARD)
+                    ? mSuffix.contains(pattern.substring(WILDCARD.length()))
+                    : mExact.contains(pattern);
+        }
+
+        public boolean matches(String domain) {
+            if (mExact.contains(domain)) return true;
+            if (mSuffix.isEmpty()) return false;
+            for (int i = 0; i < domain.length(); i++) {
+                if ((i == 0 || domain.charAt(i - 1) == '.')
+                        && mSuffix.contains(i == 0 ? domain : domain.substring(i))) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private Allowlist() {}
+
+    /**
+     * Returns {@code input} as a canonical pattern ("example.com" or
+     * "*.example.com"), or null if it isn't a valid domain.
+     */
+    public static String normalize(String input) {
+        String s = input.trim();
+        boolean wildcard = s.startsWith(WILDCARD);
+        if (wildcard) s = s.substring(WILDCARD.length());
+        String domain = DomainChecker.normalize(s);
+        if (domain == null) return null;
+        return wildcard ? WILDCARD + domain : domain;
+    }
+
+    public static List<Entry> list() {
+        List<Entry> out = new ArrayList<>();
+        try (SQLiteDatabase db = open();
+             Cursor c = db.rawQuery("SELECT pattern, added_at FROM " + TABLE
+                     + " ORDER BY pattern", null)) {
+            while (c.moveToNext()) out.add(new Entry(c.getString(0), c.getLong(1)));
+        }
+        return out;
+    }
+
+    public static Matcher loadMatcher() {
+        Matcher m = new Matcher();
+        for (Entry e : list()) m.add(e.pattern);
+        return m;
+    }
+
+    /**
+     * Adds {@code pattern} (already normalized) and suppresses the
+     * blocklist rows it covers. Returns the number of rows suppressed.
+     * If the move fails, the entry stays and {@link #reconcile()} finishes
+     * it. Worker thread.
+     */
+    public static synchronized int add(String pattern) {
+        try (SQLiteDatabase db = open()) {
+            db.beginTransaction();
+            try {
+                ContentValues cv = new ContentValues(2);
+                cv.put("pattern", pattern);
+                cv.put("added_at", System.currentTimeMillis());
+                db.insertWithOnConflict(TABLE, null, cv, SQLiteDatabase.CONFLICT_IGNORE);
+                markPending(db, pattern);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        return sync(pattern);
+    }
+
+    /**
+     * Removes {@code pattern} and restores the rows it suppressed, except
+     * those another entry still covers. Returns the number restored. If
+     * the move fails, the entry stays removed and {@link #reconcile()}
+     * finishes it. Worker thread.
+     */
+    public static synchronized int remove(String pattern) {
+        try (SQLiteDatabase db = open()) {
+            db.beginTransaction();
+            try {
+                db.delete(TABLE, "pattern = ?", new String[] { pattern });
+                markPending(db, pattern);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        return sync(pattern);
+    }
+
+    /**
+     * Finishes edits whose rows were never moved. Costs one small query
+     * when nothing is pending. Worker thread.
+     *
+     * @return the number of patterns replayed
+     */
+    public static synchronized int reconcile() {
+        List<String> pending = new ArrayList<>();
+        try (SQLiteDatabase db = open();
+             Cursor c = db.rawQuery("SELECT pattern FROM " + TABLE_PENDING, null)) {
+            while (c.moveToNext()) pending.add(c.getString(0));
+        }
+        for (String pattern : pending) sync(pattern);
+        return pending.size();
+    }
+
+    /**
+     * Brings the rows {@code pattern} covers in line with the allowlist as
+     * it is now, then clears its pending mark. Returns the rows moved.
+     */
+    private static int sync(String pattern) {
+        Matcher current = loadMatcher();
+        int moved;
+        try (SQLiteDatabase db = openThreatDb()) {
+            db.beginTransaction();
+            try {
+                moved = current.covers(pattern)
+                        ? move(db, ThreatDb.TABLE_DOMAINS, TABLE_SUPPRESSED, pattern)
+                        : restore(db, pattern, current);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+        try (SQLiteDatabase db = open()) {
+            db.delete(TABLE_PENDING, "pattern = ?", new String[] { pattern });
+        }
+        return moved;
+    }
+
+    /** Moves back the suppressed rows {@code pattern} covers that {@code remaining} doesn't. */
+    private static int restore(SQLiteDatabase db, String pattern, Matcher remaining) {
+        List<String> restore = new ArrayList<>();
+        String[] args = matchArgs(pattern);
+        try (Cursor c = db.rawQuery("SELECT " + ThreatDb.COL_DOMAIN + " FROM "
+                + TABLE_SUPPRESSED + " WHERE " + matchClause(pattern), args)) {
+            while (c.moveToNext()) {
+                String domain = c.getString(0);
+                if (!remaining.matches(domain)) restore.add(domain);
+            }
+        }
+        for (String domain : restore) {
+            moveExact(db, TABLE_SUPPRESSED, ThreatDb.TABLE_DOMAINS, domain);
+        }
+        return restore.size();
+    }
+
+    private static void markPending(SQLiteDatabase db, String pattern) {
+        ContentValues cv = new ContentValues(1);
+        cv.put("pattern", pattern);
+        db.insertWithOnConflict(TABLE_PENDING, null, cv, SQLiteDatabase.CONFLICT_IGNORE);
+    }
+
+    /** Rows currently held back by the allowlist. */
+    public static long suppressedCount() {
+        try (SQLiteDatabase db = openThreatDb()) {
+            try (Cursor c = db.rawQuery("SELECT COUNT(*) FROM " + TABLE_SUPPRESSED, null)) {
+                return c.moveToFirst() ? c.getLong(0) : 0;
+            }
+        }
+    }
+
+    /** Creates threat_suppressed if missing. Needs a writable handle. */
+    public static void ensureSuppressedTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_SUPPRESSED + " ("
+                + ThreatDb.COL_DOMAIN + " TEXT PRIMARY KEY, "
+                + ThreatDb.COL_CATEGORY + " TEXT, "
+                + ThreatDb.COL_SEVERITY + " INTEGER, "
+                + ThreatDb.COL_ADDED_AT + " INTEGER, "
+                + ThreatDb.COL_SOURCE + " TEXT)");
+    }
+
+    /**
+     * Moves rows covered by {@code pattern}. An exact entry is one indexed
+     * lookup; a wildcard also scans for subdomains, once per edit.
+     */
+    private static int move(SQLiteDatabase db, String from, String to, String pattern) {
+        String where = matchClause(pattern);
+        String[] args = matchArgs(pattern);
+        db.execSQL("INSERT OR REPLACE INTO " + to + " (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM " + from + " WHERE " + where, args);
+        return db.delete(from, where, args);
+    }
+
+    private static void moveExact(SQLiteDatabase db, String from, String to, String domain) {
+        String[] args = { domain };
+        db.execSQL("INSERT OR REPLACE INTO " + to + " (" + COLUMNS + ") SELECT " + COLUMNS
+                + " FROM " + from + " WHERE " + ThreatDb.COL_DOMAIN + " = ?", args);
+        db.delete(from, ThreatDb.COL_DOMAIN + " = ?", args);
+    }
+
+    private static String matchClause(String pattern) {
+        return pattern.startsWith(WILDCARD)
+                ? "(" + ThreatDb.COL_DOMAIN + " = ? OR " + ThreatDb.COL_DOMAIN + " LIKE ? ESCAPE '\\')"
+                : ThreatDb.COL_DOMAIN + " = ?";
+    }
+
+    private static String[] matchArgs(String pattern) {
+        if (!pattern.startsWith(WILDCARD)) return new String[] { pattern };
+        String base = pattern.substring(WILDCARD.length());
+        // '_' is a LIKE wildcard and legal in hostnames
+        return new String[] { base, "%." + base.replace("_", "\\_") };
+    }
+
+    private static SQLiteDatabase open() {
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(ThreatDb.allowlistPath(), null);
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE
+                + " (pattern TEXT PRIMARY KEY, added_at INTEGER NOT NULL)");
+        db.execSQL("CREATE TABLE IF NOT EXISTS " + TABLE_PENDING + " (pattern TEXT PRIMARY KEY)");
+        return db;
+    }
+
+    private static SQLiteDatabase openThreatDb() {
+        SQLiteDatabase db = ThreatDb.openReadWrite();
+        ensureSuppressedTable(db);
+        return db;
+    }
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.app.Activity;
+import android.database.sqlite.SQLiteException;
+import android.os.Bundle;
+import android.text.InputType;
+import android.util.Slog;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+
+/**
+ * Manages the {@link Allowlist}: domains the user has un-blocked despite
+ * the threat intelligence lists. Each edit recompiles only the blocklist
+ * rows the entry covers.
+ */
+public class AllowlistActivity extends Activity {
+
+    private static final String TAG = "CircleAllowlist";
+
+    private EditText     mInput;
+    private Button       mBtnAdd;
+    private TextView     mTvStatus;
+    private LinearLayout mEntries;
+    private Future<?>    mTask;
+
+    private final ScreenTimer mTimer = new ScreenTimer("Allowlist");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+        refresh(null);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mTask != null) mTask.cancel(true);
+    }
+
+    private void onAdd() {
+        String pattern = Allowlist.normalize(mInput.getText().toString());
+        if (pattern == null) {
+            Toast.makeText(this, "Enter a domain, or *.domain for all subdomains",
+                    Toast.LENGTH_SHORT).show();
+            return;
+        }
+        mInput.setText("");
+        refresh(() -> {
+            int n = Allowlist.add(pattern);
+            return "Allowed " + pattern + " · " + n + (n == 1 ? " entry" : " entries") + " unblocked";
+        });
+    }
+
+    private void onRemove(String pattern) {
+        refresh(() -> {
+            int n = Allowlist.remove(pattern);
+            return "Removed " + pattern + " · " + n + (n == 1 ? " entry" : " entries") + " blocked again";
+        });
+    }
+
+    /** Runs {@code edit} (if any), then reloads the list; all off the main thread. */
+    private void refresh(Callable<String> edit) {
+        mBtnAdd.setEnabled(false);
+        mTask = CircleExecutors.background().submit(() -> {
+            String message = null;
+            List<Allowlist.Entry> entries;
+            long suppressed;
+            try {
+                ThreatAggregates.ensureOnce();
+                reconcile();
+                if (edit != null) message = edit.call();
+                entries = Allowlist.list();
+                suppressed = Allowlist.suppressedCount();
+            } catch (Exception e) {
+                Slog.e(TAG, "Allowlist update failed", e);
+                runOnUiThread(() -> {
+                    mTvStatus.setText("Error: " + e.getMessage());
+                    mBtnAdd.setEnabled(true);
+                    mTimer.contentShown();
+                });
+                return;
+            }
+            String done = message;
+            runOnUiThread(() -> bind(entries, suppressed, done));
+        });
+    }
+
+    /** Finishes edits a failed or interrupted move left half done. */
+    private static void reconcile() {
+        try {
+            int n = Allowlist.reconcile();
+            if (n > 0) Slog.i(TAG, "Finished " + n + " pending allowlist edits");
+        } catch (SQLiteException e) {
+            Slog.w(TAG, "Pending allowlist edits still blocked", e);
+        }
+    }
+
+    private void bind(List<Allowlist.Entry> entries, long suppressed, String message) {
+        mTimer.contentShown();
+        mBtnAdd.setEnabled(true);
+        String status = String.format(Locale.US, "%,d blocklist %s currently unblocked",
+                suppressed, suppressed == 1 ? "entry" : "entries");
+        mTvStatus.setText(message != null ? message + "\n" + status : status);
+
+        mEntries.removeAllViews();
+        if (entries.isEmpty()) {
+            mEntries.addView(makeLabel("No allowed domains", 13, 0xFF888888));
+            return;
+        }
+        for (Allowlist.Entry e : entries) {
+            LinearLayout row = makeRow();
+            row.addView(makeLabel(e.pattern, 14, 0xFF1A1A2E));
+            row.addView(spacer());
+            TextView remove = makeLabel("Remove", 14, 0xFFCC0000);
+            remove.setOnClickListener(v -> onRemove(e.pattern));
+            row.addView(remove);
+            mEntries.addView(row);
+        }
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        ScrollView scroll = new ScrollView(this);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+        scroll.addView(root);
+
+        root.addView(makeTitle("Allowed Domains"));
+
+        LinearLayout addCard = makeCard();
+        addCard.addView(makeLabel("Domains here are never blocked, even if a "
+                + "blocklist update lists them. Use *.example.com to include subdomains.",
+                13, 0xFF666666));
+        LinearLayout addRow = makeRow();
+        mInput = new EditText(this);
+        mInput.setHint("example.com");
+        mInput.setSingleLine(true);
+        mInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_VARIATION_URI);
+        mInput.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        addRow.addView(mInput);
+        mBtnAdd = new Button(this);
+        mBtnAdd.setText("Allow");
+        mBtnAdd.setTextColor(0xFFFFFFFF);
+        mBtnAdd.setBackgroundColor(0xFF1A1A2E);
+        mBtnAdd.setOnClickListener(v -> onAdd());
+        addRow.addView(mBtnAdd);
+        addCard.addView(addRow);
+        mTvStatus = makeLabel("", 13, 0xFF048A81);
+        mTvStatus.setPadding(0, dp(6), 0, 0);
+        addCard.addView(mTvStatus);
+        root.addView(addCard);
+
+        LinearLayout listCard = makeCard();
+        listCard.addView(makeLabel("Allowlist", 15, 0xFF1A1A2E));
+        mEntries = new LinearLayout(this);
+        mEntries.setOrientation(LinearLayout.VERTICAL);
+        listCard.addView(mEntries);
+        root.addView(listCard);
+
+        return scroll;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private LinearLayout makeCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xFFFFFFFF);
+        card.setPadding(dp(16), dp(12), dp(16), dp(12));
+        card.setLayoutParams(cardParams());
+        return card;
+    }
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private LinearLayout makeRow() {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setPadding(0, dp(6), 0, dp(2));
+        return row;
+    }
+
+    private View spacer() {
+        View v = new View(this);
+        v.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        return v;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Which apps hit which blocked domains most, in fixed memory.
+ *
+ * CircleDomainFilterService reports every query it blocks to
+ * {@link BlockEventProvider}, which calls {@link #record(int, String)};
+ * the filter's library cannot call this class directly. Events land in
+ * one of a few stripes, chosen by thread, each holding {@link SpaceSaving}
+ * summaries for the current hour: one over all domains and one per app
+ * (up to a cap). A writer never waits for a lock: it moves on to another
+ * stripe if its own is busy, and if every stripe is busy it drops the
+ * event and counts it in {@link Report#dropped}.
+ *
+ * When the hour turns, each stripe is folded into that hour's window; the
+ * last 24 windows are kept. A window is never changed once published: a
+ * fold builds a new one and swaps it in, so readers merge windows without
+ * holding anything a writer needs. Windows cover clock hours, so the
+ * one-hour view is the current hour so far. Counts are Space-Saving
+ * estimates: upper bounds, exact for domains that stayed tracked.
+ *
+ * In-memory only; history starts when the process does.
+ */
+public final class BlockAnalytics {
+
+    public static final int WINDOW_HOUR = 1;
+    public static final int WINDOW_DAY  = 24;
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
+    private static final int STRIPES = 8;              // power of two
+    private static final int GLOBAL_K = 64;
+    private static final int APP_K = 16;
+    private static final int MAX_APPS_PER_STRIPE = 128;
+    private static final int WINDOW_APP_K = 8;
+    private static final int MAX_APPS_PER_WINDOW = 256;
+
+    private static final BlockAnalytics sInstance = new BlockAnalytics();
+
+    /** Top domain estimate. */
+    public static final class DomainCount {
+        public final String domain;
+        public final long   count;
+        public final long   error;     // count may be over by up to this much
+
+        DomainCount(SpaceSaving.Item item) {
+            this.domain = item.key;
+            this.count  = item.count;
+            this.error  = item.error;
+        }
+    }
+
+    /** Blocked queries attributed to one app. */
+    public static final class AppCount {
+        public final int  uid;
+        public final long count;
+
+        AppCount(int uid, long count) {
+            this.uid   = uid;
+            this.count = count;
+        }
+    }
+
+    /** Global picture for a window. */
+    public static final class Report {
+        public final List<DomainCount> topDomains = new ArrayList<>();
+        public final List<AppCount>    topApps    = new ArrayList<>();
+        public long total;
+        public long dropped;   // events not counted since start, all stripes busy
+    }
+
+    /** Sketches for one hour, either live in a stripe or rolled up. */
+    private static final class Hour {
+        final int appK;
+        final int maxApps;
+        final SpaceSaving global = new SpaceSaving(GLOBAL_K);
+        final HashMap<Integer, SpaceSaving> apps = new HashMap<>();
+        long hour = -1;        // hours since epoch this data belongs to
+        long untracked;        // events from apps beyond maxApps
+
+        Hour(int appK, int maxApps) {
+            this.appK    = appK;
+            this.maxApps = maxApps;
+        }
+
+        void record(int uid, String domain) {
+            global.offer(domain);
+            SpaceSaving app = apps.get(uid);
+            if (app == null) {
+                if (apps.size() >= maxApps) { untracked++; return; }
+                app = new SpaceSaving(appK);
+                apps.put(uid, app);
+            }
+            app.offer(domain);
+        }
+
+        void addAll(Hour other) {
+            global.addAll(other.global);
+            untracked += other.untracked;
+            for (Map.Entry<Integer, SpaceSaving> e : other.apps.entrySet()) {
+                SpaceSaving app = apps.get(e.getKey());
+                if (app == null) {
+                    if (apps.size() >= maxApps) { untracked += e.getValue().total(); continue; }
+                    app = new SpaceSaving(appK);
+                    apps.put(e.getKey(), app);
+                }
+                app.addAll(e.getValue());
+            }
+        }
+
+        void reset(long newHour) {
+            global.clear();
+            apps.clear();
+            untracked = 0;
+            hour = newHour;
+        }
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final Hour live = new Hour(APP_K, MAX_APPS_PER_STRIPE);    // guarded by lock
+    }
+
+    private final Stripe[] mStripes = new Stripe[STRIPES];
+    // Ring by hour; a published Hour is never modified
+    private final AtomicReferenceArray<Hour> mWindows = new AtomicReferenceArray<>(WINDOW_DAY);
+    private final AtomicLong mDropped = new AtomicLong();
+
+    private BlockAnalytics() {
+        for (int i = 0; i < STRIPES; i++) mStripes[i] = new Stripe();
+    }
+
+    public static BlockAnalytics get() {
+        return sInstance;
+    }
+
+    /**
+     * Intake thread. Counts one blocked query by {@code uid} for
+     * {@code domain}, or drops it if every stripe is busy.
+     */
+    public void record(int uid, String domain) {
+        long hour = System.currentTimeMillis() / HOUR_MS;
+        int home = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        Stripe s = null;
+        for (int i = 0; i < STRIPES; i++) {
+            Stripe candidate = mStripes[(home + i) & (STRIPES - 1)];
+            if (candidate.lock.tryLock()) { s = candidate; break; }
+        }
+        if (s == null) {
+            mDropped.incrementAndGet();
+            return;
+        }
+        try {
+            if (s.live.hour != hour) rollOver(s.live, hour);
+            s.live.record(uid, domain);
+        } finally {
+            s.lock.unlock();
+        }
+    }
+
+    /**
+     * Global top domains and apps over the current clock hour and the
+     * {@code hours - 1} before it (1..24).
+     */
+    public Report report(int hours, int limit) {
+        Hour merged = collect(hours);
+        Report r = new Report();
+        r.total = merged.global.total();
+        r.dropped = mDropped.get();
+        for (SpaceSaving.Item item : merged.global.top(limit)) r.topDomains.add(new DomainCount(item));
+        for (Map.Entry<Integer, SpaceSaving> e : merged.apps.entrySet()) {
+            r.topApps.add(new AppCount(e.getKey(), e.getValue().total()));
+        }
+        r.topApps.sort((a, b) -> Long.compare(b.count, a.count));
+        if (r.topApps.size() > limit) r.topApps.subList(limit, r.topApps.size()).clear();
+        return r;
+    }
+
+    /** Top blocked domains for one app, over the same hours as {@link #report}. */
+    public List<DomainCount> topForApp(int uid, int hours, int limit) {
+        Hour merged = collect(hours);
+        List<DomainCount> out = new ArrayList<>();
+        SpaceSaving app = merged.apps.get(uid);
+        if (app == null) return out;
+        for (SpaceSaving.Item item : app.top(limit)) out.add(new DomainCount(item));
+        return out;
+    }
+
+    /** Merges the requested windows and the live stripes into a scratch Hour. */
+    private Hour collect(int hours) {
+        long now = System.currentTimeMillis() / HOUR_MS;
+        hours = Math.max(1, Math.min(WINDOW_DAY, hours));
+        Hour merged = new Hour(APP_K, MAX_APPS_PER_WINDOW);
+        for (Stripe s : mStripes) {
+            s.lock.lock();
+            try {
+                if (s.live.hour != now) rollOver(s.live, now);
+                else merged.addAll(s.live);
+            } finally {
+                s.lock.unlock();
+            }
+        }
+        for (int i = 0; i < WINDOW_DAY; i++) {
+            Hour w = mWindows.get(i);
+            if (w != null && w.hour > now - hours && w.hour <= now) merged.addAll(w);
+        }
+        return merged;
+    }
+
+    /** Holds the stripe lock. Folds a stale live hour into its window and restarts it. */
+    private void rollOver(Hour live, long hour) {
+        if (live.hour >= 0 && !live.global.isEmpty()) fold(live);
+        live.reset(hour);
+    }
+
+    /**
+     * Publishes a copy of {@code live}'s window with {@code live} added.
+     * Stripes rolling over together retry rather than wait on each other.
+     */
+    private void fold(Hour live) {
+        int slot = (int) (live.hour % WINDOW_DAY);
+        while (true) {
+            Hour w = mWindows.get(slot);
+            // A stripe idle for a day can hold an hour whose slot has moved on
+            if (w != null && w.hour > live.hour) return;
+            Hour next = new Hour(WINDOW_APP_K, MAX_APPS_PER_WINDOW);
+            next.hour = live.hour;
+            if (w != null && w.hour == live.hour) next.addAll(w);
+            next.addAll(live);
+            if (mWindows.compareAndSet(slot, w, next)) return;
+        }
+    }
+}
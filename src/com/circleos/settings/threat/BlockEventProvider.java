@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.net.Uri;
+
+/**
+ * Write-only intake for {@link BlockAnalytics}. The domain filter lives in
+ * the android.circleos-java library and cannot link against this app, so
+ * it reports blocked queries here through the content resolver, needing
+ * only the names below. Requires com.circleos.permission.REPORT_BLOCKED_QUERIES.
+ *
+ *   content://com.circleos.settings.blocked/queries
+ *
+ * Each row is one blocked query: {@code uid} (int, the app that asked)
+ * and {@code domain}. The filter should batch rows with bulkInsert()
+ * rather than call once per query. Nothing is stored; rows only feed the
+ * in-memory counts, and insert() returns no row URI.
+ */
+public class BlockEventProvider extends ContentProvider {
+
+    public static final String AUTHORITY = "com.circleos.settings.blocked";
+
+    public static final String COL_UID    = "uid";
+    public static final String COL_DOMAIN = "domain";
+
+    private static final int MATCH_QUERIES = 1;
+
+    private static final UriMatcher sMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    static {
+        sMatcher.addURI(AUTHORITY, "queries", MATCH_QUERIES);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        check(uri);
+        record(values);
+        return null;
+    }
+
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        check(uri);
+        int n = 0;
+        for (ContentValues v : values) {
+            if (record(v)) n++;
+        }
+        return n;
+    }
+
+    private static void check(Uri uri) {
+        if (sMatcher.match(uri) != MATCH_QUERIES) {
+            throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+    }
+
+    /** Returns false for a row without a uid or domain. */
+    private static boolean record(ContentValues v) {
+        Integer uid = v != null ? v.getAsInteger(COL_UID) : null;
+        String domain = v != null ? v.getAsString(COL_DOMAIN) : null;
+        if (uid == null || domain == null || domain.isEmpty()) return false;
+        BlockAnalytics.get().record(uid, domain);
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        throw new UnsupportedOperationException("Write-only");
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Write-only");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Write-only");
+    }
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.app.Activity;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * Device-wide view of {@link BlockAnalytics}: the most-blocked domains and
+ * the apps making the most blocked queries, over the current clock hour or
+ * the last day.
+ */
+public class BlockedDomainsActivity extends Activity {
+
+    private static final int SHOWN = 20;
+
+    private TextView     mTvWindowHour;
+    private TextView     mTvWindowDay;
+    private TextView     mTvTotal;
+    private LinearLayout mDomains;
+    private LinearLayout mApps;
+    private int          mWindow = BlockAnalytics.WINDOW_HOUR;
+    private Future<?>    mLoad;
+
+    private final ScreenTimer mTimer = new ScreenTimer("BlockedDomains");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mLoad != null) mLoad.cancel(true);
+    }
+
+    private void setWindow(int window) {
+        mWindow = window;
+        load();
+    }
+
+    private void load() {
+        boolean hour = mWindow == BlockAnalytics.WINDOW_HOUR;
+        mTvWindowHour.setTextColor(hour ? 0xFF1A1A2E : 0xFF888888);
+        mTvWindowDay.setTextColor(hour ? 0xFF888888 : 0xFF1A1A2E);
+
+        if (mLoad != null) mLoad.cancel(true);
+        int window = mWindow;
+        PackageManager pm = getPackageManager();
+        mLoad = CircleExecutors.background().submit(() -> {
+            BlockAnalytics.Report report = BlockAnalytics.get().report(window, SHOWN);
+            String[] names = new String[report.topApps.size()];
+            for (int i = 0; i < names.length; i++) {
+                String name = pm.getNameForUid(report.topApps.get(i).uid);
+                names[i] = name != null ? name : "uid " + report.topApps.get(i).uid;
+            }
+            runOnUiThread(() -> bind(report, names));
+        });
+    }
+
+    private void bind(BlockAnalytics.Report report, String[] appNames) {
+        mTimer.contentShown();
+        String total = String.format(Locale.US, "%,d blocked queries", report.total);
+        if (report.dropped > 0) {
+            total += String.format(Locale.US, " (%,d not counted)", report.dropped);
+        }
+        mTvTotal.setText(total);
+
+        mDomains.removeAllViews();
+        for (BlockAnalytics.DomainCount d : report.topDomains) {
+            mDomains.addView(makeStatRow(d.domain, String.format(Locale.US, "%,d", d.count)));
+        }
+        if (report.topDomains.isEmpty()) mDomains.addView(makeLabel("Nothing blocked", 13, 0xFF888888));
+
+        mApps.removeAllViews();
+        for (int i = 0; i < report.topApps.size(); i++) {
+            mApps.addView(makeStatRow(appNames[i],
+                    String.format(Locale.US, "%,d", report.topApps.get(i).count)));
+        }
+        if (report.topApps.isEmpty()) mApps.addView(makeLabel("Nothing blocked", 13, 0xFF888888));
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        ScrollView scroll = new ScrollView(this);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+        scroll.addView(root);
+
+        root.addView(makeTitle("Blocked Activity"));
+
+        LinearLayout summary = makeCard();
+        LinearLayout windows = makeRow();
+        mTvTotal = makeLabel("Loading…", 16, 0xFF1A1A2E);
+        mTvTotal.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        windows.addView(mTvTotal);
+        windows.addView(spacer());
+        mTvWindowHour = makeLabel("This hour", 14, 0xFF1A1A2E);
+        mTvWindowHour.setPadding(dp(8), 0, dp(8), 0);
+        mTvWindowHour.setOnClickListener(v -> setWindow(BlockAnalytics.WINDOW_HOUR));
+        windows.addView(mTvWindowHour);
+        mTvWindowDay = makeLabel("24h", 14, 0xFF888888);
+        mTvWindowDay.setPadding(dp(8), 0, 0, 0);
+        mTvWindowDay.setOnClickListener(v -> setWindow(BlockAnalytics.WINDOW_DAY));
+        windows.addView(mTvWindowDay);
+        summary.addView(windows);
+        summary.addView(makeLabel("Counts are estimates once more domains are seen "
+                + "than can be tracked.", 12, 0xFF888888));
+        root.addView(summary);
+
+        mDomains = addSection(root, "Top Blocked Domains");
+        mApps    = addSection(root, "Top Apps");
+
+        return scroll;
+    }
+
+    /** Adds a titled card and returns the container for its rows. */
+    private LinearLayout addSection(LinearLayout root, String title) {
+        LinearLayout card = makeCard();
+        card.addView(makeLabel(title, 15, 0xFF1A1A2E));
+        LinearLayout rows = new LinearLayout(this);
+        rows.setOrientation(LinearLayout.VERTICAL);
+        card.addView(rows);
+        root.addView(card);
+        return rows;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private LinearLayout makeCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xFFFFFFFF);
+        card.setPadding(dp(16), dp(12), dp(16), dp(12));
+        card.setLayoutParams(cardParams());
+        return card;
+    }
+
+    private View makeStatRow(String name, String value) {
+        LinearLayout row = makeRow();
+        row.addView(makeLabel(name, 14, 0xFF666666));
+        row.addView(spacer());
+        row.addView(makeLabel(value, 14, 0xFF1A1A2E));
+        return row;
+    }
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private LinearLayout makeRow() {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setPadding(0, dp(6), 0, dp(2));
+        return row;
+    }
+
+    private View spacer() {
+        View v = new View(this);
+        v.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        return v;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
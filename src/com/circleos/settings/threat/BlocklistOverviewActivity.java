@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.app.Activity;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import android.util.Slog;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.Button;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+/**
+ * Blocklist overview: domain counts by source, category and severity, and
+ * the growth of the list over recent merges.
+ *
+ * Everything comes from {@link ThreatAggregates}, so loading costs the
+ * same whether the list holds a thousand domains or a million. The first
+ * load in a process creates and backfills the aggregates if no merge has
+ * yet, which scans the list once.
+ */
+public class BlocklistOverviewActivity extends Activity {
+
+    private static final String TAG = "CircleBlocklistOverview";
+
+    private static final int RUNS_SHOWN = 10;
+
+    private TextView     mTvTotal;
+    private LinearLayout mSources;
+    private LinearLayout mCategories;
+    private LinearLayout mSeverities;
+    private LinearLayout mRuns;
+    private Future<?>    mLoad;
+
+    private final ScreenTimer mTimer = new ScreenTimer("BlocklistOverview");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        load();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mLoad != null) mLoad.cancel(true);
+    }
+
+    private void load() {
+        if (mLoad != null) mLoad.cancel(true);
+        mLoad = CircleExecutors.background().submit(() -> {
+            ThreatAggregates.ensureOnce();
+            ThreatAggregates.Overview overview;
+            try (SQLiteDatabase db = ThreatDb.openReadOnly()) {
+                overview = ThreatAggregates.read(db);
+            } catch (Exception e) {
+                Slog.w(TAG, "Cannot read threat database", e);
+                runOnUiThread(() -> {
+                    mTvTotal.setText("Threat database unavailable");
+                    mTimer.contentShown();
+                });
+                return;
+            }
+            runOnUiThread(() -> bind(overview));
+        });
+    }
+
+    private void bind(ThreatAggregates.Overview o) {
+        mTimer.contentShown();
+        if (o.groups.isEmpty() && o.runs.isEmpty()) {
+            mTvTotal.setText("No statistics yet — they appear after the next blocklist update");
+        } else {
+            mTvTotal.setText(String.format(Locale.US, "%,d domains blocked", o.total));
+        }
+
+        SimpleDateFormat sdf = new SimpleDateFormat("MM/dd HH:mm", Locale.US);
+
+        mSources.removeAllViews();
+        Map<String, Long> lastAdded = o.lastAddedBySource();
+        for (Map.Entry<String, Long> e : o.bySource().entrySet()) {
+            long last = lastAdded.getOrDefault(e.getKey(), 0L);
+            mSources.addView(makeStatRow(label(e.getKey()),
+                    String.format(Locale.US, "%,d", e.getValue())
+                    + (last > 0 ? " · added " + sdf.format(new Date(last * 1000)) : "")));
+        }
+
+        mCategories.removeAllViews();
+        for (Map.Entry<String, Long> e : o.byCategory().entrySet()) {
+            mCategories.addView(makeStatRow(label(e.getKey()),
+                    String.format(Locale.US, "%,d", e.getValue())));
+        }
+
+        mSeverities.removeAllViews();
+        for (Map.Entry<String, Long> e : o.bySeverity().entrySet()) {
+            mSeverities.addView(makeStatRow("Severity " + e.getKey(),
+                    String.format(Locale.US, "%,d", e.getValue())));
+        }
+
+        mRuns.removeAllViews();
+        int shown = Math.min(o.runs.size(), RUNS_SHOWN);
+        for (int i = 0; i < shown; i++) {
+            ThreatAggregates.Run r = o.runs.get(i);
+            mRuns.addView(makeStatRow(sdf.format(new Date(r.finishedAt * 1000)),
+                    String.format(Locale.US, "+%,d → %,d", r.added, r.total)));
+        }
+        if (shown == 0) mRuns.addView(makeLabel("No merges recorded", 13, 0xFF888888));
+    }
+
+    private static String label(String key) {
+        return key.isEmpty() ? "(none)" : key;
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        ScrollView scroll = new ScrollView(this);
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+        scroll.addView(root);
+
+        root.addView(makeTitle("Blocklist"));
+
+        LinearLayout summary = makeCard();
+        mTvTotal = makeLabel("Loading…", 16, 0xFF1A1A2E);
+        mTvTotal.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        summary.addView(mTvTotal);
+        root.addView(summary);
+
+        mSources    = addSection(root, "By Source");
+        mCategories = addSection(root, "By Category");
+        mSeverities = addSection(root, "By Severity");
+        mRuns       = addSection(root, "Recent Updates");
+
+        Button check = new Button(this);
+        check.setText("Check Domains…");
+        check.setTextColor(0xFFFFFFFF);
+        check.setBackgroundColor(0xFF1A1A2E);
+        check.setLayoutParams(cardParams());
+        check.setOnClickListener(v -> startActivity(new Intent(this, DomainCheckActivity.class)));
+        root.addView(check);
+
+        Button allow = new Button(this);
+        allow.setText("Allowed Domains…");
+        allow.setTextColor(0xFFFFFFFF);
+        allow.setBackgroundColor(0xFF2E4057);
+        allow.setLayoutParams(cardParams());
+        allow.setOnClickListener(v -> startActivity(new Intent(this, AllowlistActivity.class)));
+        root.addView(allow);
+
+        Button blocked = new Button(this);
+        blocked.setText("Blocked Activity…");
+        blocked.setTextColor(0xFFFFFFFF);
+        blocked.setBackgroundColor(0xFF6B2737);
+        blocked.setLayoutParams(cardParams());
+        blocked.setOnClickListener(v ->
+                startActivity(new Intent(this, BlockedDomainsActivity.class)));
+        root.addView(blocked);
+
+        return scroll;
+    }
+
+    /** Adds a titled card and returns the container for its rows. */
+    private LinearLayout addSection(LinearLayout root, String title) {
+        LinearLayout card = makeCard();
+        card.addView(makeLabel(title, 15, 0xFF1A1A2E));
+        LinearLayout rows = new LinearLayout(this);
+        rows.setOrientation(LinearLayout.VERTICAL);
+        card.addView(rows);
+        root.addView(card);
+        return rows;
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private LinearLayout makeCard() {
+        LinearLayout card = new LinearLayout(this);
+        card.setOrientation(LinearLayout.VERTICAL);
+        card.setBackgroundColor(0xFFFFFFFF);
+        card.setPadding(dp(16), dp(12), dp(16), dp(12));
+        card.setLayoutParams(cardParams());
+        return card;
+    }
+
+    private View makeStatRow(String name, String value) {
+        LinearLayout row = makeRow();
+        row.addView(makeLabel(name, 14, 0xFF666666));
+        row.addView(spacer());
+        row.addView(makeLabel(value, 14, 0xFF1A1A2E));
+        return row;
+    }
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private LinearLayout makeRow() {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setPadding(0, dp(6), 0, dp(2));
+        return row;
+    }
+
+    private View spacer() {
+        View v = new View(this);
+        v.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        return v;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.text.InputType;
+import android.util.Slog;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.BaseAdapter;
+import android.widget.Button;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.ListView;
+import android.widget.TextView;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a pasted list or a picked file of domains against the threat
+ * intelligence blocklist, for incident triage.
+ *
+ * Input is streamed through {@link DomainChecker} on a background thread;
+ * matches and throughput appear as batches complete. Only the first
+ * {@link #MAX_SHOWN} matches are copied for display, and the worker posts
+ * to the main thread at most once per report interval, so a huge log
+ * costs no more memory than a small one.
+ */
+public class DomainCheckActivity extends Activity {
+
+    private static final String TAG = "CircleDomainCheck";
+
+    private static final int REQUEST_OPEN_FILE = 1;
+    private static final int MAX_SHOWN = 1000;
+
+    private EditText mInput;
+    private Button   mBtnCheck;
+    private Button   mBtnFile;
+    private TextView mTvStatus;
+    private final List<DomainChecker.Match> mShown = new ArrayList<>();
+    private ResultAdapter mAdapter;
+    private Future<?> mRun;
+
+    private final ScreenTimer mTimer = new ScreenTimer("DomainCheck");
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        mTimer.begin();
+        setContentView(buildLayout());
+        mTimer.contentShown();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (mRun != null) mRun.cancel(true);
+    }
+
+    @Override
+    protected void onActivityResult(int requestCode, int resultCode, Intent data) {
+        if (requestCode != REQUEST_OPEN_FILE || resultCode != RESULT_OK || data == null) return;
+        Uri uri = data.getData();
+        if (uri == null) return;
+        Context app = getApplicationContext();
+        start(() -> {
+            InputStream in = app.getContentResolver().openInputStream(uri);
+            if (in == null) throw new IOException("Cannot open " + uri);
+            return new InputStreamReader(in, StandardCharsets.UTF_8);
+        });
+    }
+
+    private void onCheckPasted() {
+        String text = mInput.getText().toString();
+        if (text.trim().isEmpty()) return;
+        start(() -> new StringReader(text));
+    }
+
+    private void onPickFile() {
+        Intent pick = new Intent(Intent.ACTION_OPEN_DOCUMENT)
+                .addCategory(Intent.CATEGORY_OPENABLE)
+                .setType("text/*");
+        startActivityForResult(pick, REQUEST_OPEN_FILE);
+    }
+
+    /** Opens the input on the worker thread. */
+    private interface Source {
+        Reader open() throws IOException;
+    }
+
+    private void start(Source source) {
+        if (mRun != null) mRun.cancel(true);
+        mShown.clear();
+        mAdapter.notifyDataSetChanged();
+        mTvStatus.setText("Checking…");
+        setRunning(true);
+
+        mRun = CircleExecutors.background().submit(() -> {
+            Poster poster = new Poster();
+            String summary;
+            try (SQLiteDatabase db = ThreatDb.openReadOnly(); Reader in = source.open()) {
+                DomainChecker.Progress p = new DomainChecker(db).check(in, poster);
+                summary = formatProgress(p, true);
+            } catch (InterruptedException e) {
+                return; // superseded or screen closed
+            } catch (Exception e) {
+                Slog.e(TAG, "Domain check failed", e);
+                summary = "Error: " + e.getMessage();
+            }
+            String done = summary;
+            List<DomainChecker.Match> rest = poster.drain();
+            runOnUiThread(() -> {
+                onBatch(rest, done);
+                setRunning(false);
+            });
+        });
+    }
+
+    /**
+     * Worker side of one run. Copies matches only until {@link #MAX_SHOWN}
+     * have been taken, and hands them to the main thread at most once per
+     * {@link DomainChecker#REPORT_INTERVAL_MS}, however often batches end.
+     */
+    private final class Poster implements DomainChecker.Sink {
+        private List<DomainChecker.Match> mPending = new ArrayList<>();
+        private int  mTaken;
+        private long mLastPostAt;
+
+        @Override
+        public void onBatch(List<DomainChecker.Match> matches, DomainChecker.Progress progress) {
+            int room = MAX_SHOWN - mTaken;
+            if (room > 0 && !matches.isEmpty()) {
+                int n = Math.min(room, matches.size());
+                mPending.addAll(matches.subList(0, n));
+                mTaken += n;
+            }
+            long now = SystemClock.uptimeMillis();
+            if (now - mLastPostAt < DomainChecker.REPORT_INTERVAL_MS) return;
+            mLastPostAt = now;
+            List<DomainChecker.Match> batch = drain();
+            String status = formatProgress(progress, false);
+            runOnUiThread(() -> DomainCheckActivity.this.onBatch(batch, status));
+        }
+
+        /** Matches taken since the last post. */
+        List<DomainChecker.Match> drain() {
+            List<DomainChecker.Match> batch = mPending;
+            mPending = new ArrayList<>();
+            return batch;
+        }
+    }
+
+    private void onBatch(List<DomainChecker.Match> matches, String status) {
+        int room = MAX_SHOWN - mShown.size();
+        if (room > 0 && !matches.isEmpty()) {
+            mShown.addAll(matches.size() <= room ? matches : matches.subList(0, room));
+            mAdapter.notifyDataSetChanged();
+        }
+        mTvStatus.setText(status);
+    }
+
+    private void setRunning(boolean running) {
+        mBtnCheck.setEnabled(!running);
+        mBtnFile.setEnabled(!running);
+    }
+
+    private static String formatProgress(DomainChecker.Progress p, boolean done) {
+        String s = String.format(Locale.US, "%,d checked · %,d listed · %,d domains/s",
+                p.checked, p.matched, p.domainsPerSec());
+        if (done) {
+            s += String.format(Locale.US, " · %.1fs", p.elapsedMs / 1000.0);
+            if (p.matched > MAX_SHOWN) s += "\nShowing the first " + MAX_SHOWN + " matches";
+        }
+        return s;
+    }
+
+    // ── Layout ────────────────────────────────────────────────────────────────
+
+    private View buildLayout() {
+        LinearLayout root = new LinearLayout(this);
+        root.setOrientation(LinearLayout.VERTICAL);
+        root.setBackgroundColor(0xFFF2F2F7);
+        root.setPadding(dp(16), dp(16), dp(16), dp(16));
+
+        root.addView(makeTitle("Domain Check"));
+
+        // Input card
+        LinearLayout inputCard = new LinearLayout(this);
+        inputCard.setOrientation(LinearLayout.VERTICAL);
+        inputCard.setBackgroundColor(0xFFFFFFFF);
+        inputCard.setPadding(dp(16), dp(12), dp(16), dp(12));
+        inputCard.setLayoutParams(cardParams());
+
+        mInput = new EditText(this);
+        mInput.setHint("Paste domains, URLs or log lines");
+        mInput.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_MULTI_LINE
+                | InputType.TYPE_TEXT_FLAG_NO_SUGGESTIONS);
+        mInput.setMinLines(3);
+        mInput.setMaxLines(6);
+        mInput.setTextSize(13);
+        inputCard.addView(mInput);
+
+        LinearLayout buttons = makeRow();
+        mBtnCheck = makeButton("Check", 0xFF1A1A2E);
+        mBtnCheck.setOnClickListener(v -> onCheckPasted());
+        buttons.addView(mBtnCheck);
+        buttons.addView(spacer());
+        mBtnFile = makeButton("Check File…", 0xFF2E4057);
+        mBtnFile.setOnClickListener(v -> onPickFile());
+        buttons.addView(mBtnFile);
+        inputCard.addView(buttons);
+
+        mTvStatus = makeLabel("", 13, 0xFF048A81);
+        mTvStatus.setPadding(0, dp(6), 0, 0);
+        inputCard.addView(mTvStatus);
+        root.addView(inputCard);
+
+        // Results
+        LinearLayout resultCard = new LinearLayout(this);
+        resultCard.setOrientation(LinearLayout.VERTICAL);
+        resultCard.setBackgroundColor(0xFFFFFFFF);
+        resultCard.setPadding(dp(16), dp(12), dp(16), dp(12));
+        LinearLayout.LayoutParams resultLp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, 0, 1f);
+        resultCard.setLayoutParams(resultLp);
+        resultCard.addView(makeLabel("Listed Domains", 15, 0xFF1A1A2E));
+
+        ListView list = new ListView(this);
+        mAdapter = new ResultAdapter();
+        list.setAdapter(mAdapter);
+        resultCard.addView(list);
+        root.addView(resultCard);
+
+        return root;
+    }
+
+    /** Rows for {@link #mShown}. */
+    private final class ResultAdapter extends BaseAdapter {
+        @Override
+        public int getCount() {
+            return mShown.size();
+        }
+
+        @Override
+        public Object getItem(int position) {
+            return mShown.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            LinearLayout row = (LinearLayout) convertView;
+            if (row == null) {
+                row = new LinearLayout(DomainCheckActivity.this);
+                row.setOrientation(LinearLayout.VERTICAL);
+                row.setPadding(0, dp(6), 0, dp(6));
+                row.addView(makeLabel("", 14, 0xFF1A1A2E));
+                row.addView(makeLabel("", 12, 0xFF666666));
+            }
+            DomainChecker.Match m = mShown.get(position);
+            ((TextView) row.getChildAt(0)).setText(m.input);
+            String via = m.matched.equals(m.input) ? "" : "via " + m.matched + " · ";
+            ((TextView) row.getChildAt(1)).setText(via + m.category
+                    + " · severity " + m.severity + " · " + m.source);
+            return row;
+        }
+    }
+
+    // ── Helpers ───────────────────────────────────────────────────────────────
+
+    private TextView makeTitle(String text) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(22);
+        tv.setTextColor(0xFF1A1A2E);
+        tv.setTypeface(android.graphics.Typeface.DEFAULT_BOLD);
+        tv.setPadding(dp(4), dp(8), dp(4), dp(16));
+        return tv;
+    }
+
+    private TextView makeLabel(String text, int sp, int color) {
+        TextView tv = new TextView(this);
+        tv.setText(text);
+        tv.setTextSize(sp);
+        tv.setTextColor(color);
+        return tv;
+    }
+
+    private Button makeButton(String text, int color) {
+        Button b = new Button(this);
+        b.setText(text);
+        b.setTextColor(0xFFFFFFFF);
+        b.setBackgroundColor(color);
+        return b;
+    }
+
+    private LinearLayout makeRow() {
+        LinearLayout row = new LinearLayout(this);
+        row.setOrientation(LinearLayout.HORIZONTAL);
+        row.setPadding(0, dp(6), 0, dp(2));
+        return row;
+    }
+
+    private View spacer() {
+        View v = new View(this);
+        v.setLayoutParams(new LinearLayout.LayoutParams(0,
+                ViewGroup.LayoutParams.WRAP_CONTENT, 1f));
+        return v;
+    }
+
+    private LinearLayout.LayoutParams cardParams() {
+        LinearLayout.LayoutParams lp = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        lp.setMargins(0, 0, 0, dp(8));
+        return lp;
+    }
+
+    private int dp(int dp) {
+        return Math.round(dp * getResources().getDisplayMetrics().density);
+    }
+}
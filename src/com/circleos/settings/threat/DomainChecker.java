@@ -0,0 +1,279 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.SystemClock;
+
+import com.circleos.settings.CircleTrace;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Streams domains from text through batched lookups in threat_domains.
+ *
+ * Input is read a line at a time and may be anything a log export or
+ * blocklist contains: bare domains, URLs, "host:port", hosts-file lines.
+ * Every token that looks like a hostname is checked together with its
+ * parent domains, so "a.ads.example.com" matches a listed "example.com";
+ * the most specific listed suffix wins.
+ *
+ * Domains are looked up in batches of one IN (...) query each, so memory
+ * is bounded by the batch size, not the input. Results go to a
+ * {@link Sink} as batches complete.
+ */
+public final class DomainChecker {
+
+    /** SQLite's default host-parameter limit is 999; stay under it. */
+    private static final int MAX_ARGS_PER_QUERY = 900;
+    /**
+     * Lookups per name: the name itself, then up to this many minus one of
+     * its shortest parents. Deeper names skip their middle labels.
+     */
+    private static final int MAX_SUFFIXES = 8;
+    static final long REPORT_INTERVAL_MS = 250;
+
+    /** One input domain found in the blocklist. */
+    public static final class Match {
+        public final String input;
+        public final String matched;     // input itself or a parent domain
+        public final String category;
+        public final int    severity;
+        public final String source;
+
+        Match(String input, String matched, String category, int severity, String source) {
+            this.input    = input;
+            this.matched  = matched;
+            this.category = category;
+            this.severity = severity;
+            this.source   = source;
+        }
+    }
+
+    /** Running totals, as of the report they arrive with. */
+    public static final class Progress {
+        public long checked;
+        public long matched;
+        public long elapsedMs;
+
+        public long domainsPerSec() {
+            return elapsedMs > 0 ? checked * 1000 / elapsedMs : 0;
+        }
+    }
+
+    /** Called on the checking thread. */
+    public interface Sink {
+        /**
+         * New matches since the last call, possibly none. Called for every
+         * batch with matches, at least every {@link #REPORT_INTERVAL_MS}
+         * otherwise, and once at the end. {@code progress} is reused.
+         */
+        void onBatch(List<Match> matches, Progress progress);
+    }
+
+    private static final class Hit {
+        final String category;
+        final int    severity;
+        final String source;
+
+        Hit(String category, int severity, String source) {
+            this.category = category;
+            this.severity = severity;
+            this.source   = source;
+        }
+    }
+
+    private final SQLiteDatabase mDb;
+    private final int mMaxDomains;
+
+    // Current batch: inputs, and every suffix of them to look up
+    private final List<String> mInputs = new ArrayList<>();
+    private final List<String> mArgs = new ArrayList<>(MAX_ARGS_PER_QUERY);
+    private final HashMap<String, Hit> mHits = new HashMap<>();
+
+    private final Progress mProgress = new Progress();
+    private long mStartedAt;
+    private long mLastReportAt;
+
+    public DomainChecker(SQLiteDatabase db) {
+        this(db, Integer.MAX_VALUE);
+    }
+
+    /** Checks at most {@code maxDomains} hostnames per {@link #check}. */
+    public DomainChecker(SQLiteDatabase db, int maxDomains) {
+        mDb = db;
+        mMaxDomains = maxDomains;
+    }
+
+    /**
+     * Checks everything in {@code in}. Not reentrant. Stops with
+     * {@link InterruptedException} if the calling thread is interrupted,
+     * and with IllegalArgumentException at the first hostname over the
+     * limit.
+     */
+    public Progress check(Reader in, Sink sink) throws IOException, InterruptedException {
+        mStartedAt = SystemClock.elapsedRealtime();
+        mLastReportAt = mStartedAt;
+        mProgress.checked = 0;
+        mProgress.matched = 0;
+        mInputs.clear();
+        mArgs.clear();
+
+        BufferedReader reader = in instanceof BufferedReader
+                ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        int seen = 0;
+        while ((line = reader.readLine()) != null) {
+            int start = 0;
+            int len = line.length();
+            while (start < len) {
+                while (start < len && isSeparator(line.charAt(start))) start++;
+                int end = start;
+                while (end < len && !isSeparator(line.charAt(end))) end++;
+                if (end > start) {
+                    String domain = normalize(line.substring(start, end));
+                    if (domain != null) {
+                        if (++seen > mMaxDomains) {
+                            throw new IllegalArgumentException(
+                                    "At most " + mMaxDomains + " domains per check");
+                        }
+                        add(domain, sink);
+                    }
+                }
+                start = end;
+            }
+        }
+        flush(sink, true);
+        return mProgress;
+    }
+
+    private void add(String domain, Sink sink) throws InterruptedException {
+        if (mArgs.size() + MAX_SUFFIXES > MAX_ARGS_PER_QUERY) flush(sink, false);
+        mInputs.add(domain);
+        // normalize() leaves at least one dot, so the name is never a bare TLD
+        mArgs.add(domain);
+        int n = 1;
+        for (int i = domain.length() - 1, dots = 0; i > 0 && n < MAX_SUFFIXES; i--) {
+            if (domain.charAt(i - 1) == '.') {
+                // A bare TLD is never worth a lookup
+                if (dots > 0) { mArgs.add(domain.substring(i)); n++; }
+            } else if (domain.charAt(i) == '.') {
+                dots++;
+            }
+        }
+    }
+
+    private void flush(Sink sink, boolean last) throws InterruptedException {
+        if (Thread.interrupted()) throw new InterruptedException();
+        List<Match> matches = new ArrayList<>();
+        if (!mInputs.isEmpty()) {
+            lookup();
+            for (String input : mInputs) {
+                Match m = bestMatch(input);
+                if (m != null) matches.add(m);
+            }
+            mProgress.checked += mInputs.size();
+            mProgress.matched += matches.size();
+            mInputs.clear();
+            mArgs.clear();
+            mHits.clear();
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        mProgress.elapsedMs = now - mStartedAt;
+        if (last || !matches.isEmpty() || now - mLastReportAt >= REPORT_INTERVAL_MS) {
+            mLastReportAt = now;
+            sink.onBatch(matches, mProgress);
+        }
+    }
+
+    private void lookup() {
+        StringBuilder sql = new StringBuilder(64 + mArgs.size() * 2)
+                .append("SELECT ").append(ThreatDb.COL_DOMAIN)
+                .append(", ").append(ThreatDb.COL_CATEGORY)
+                .append(", ").append(ThreatDb.COL_SEVERITY)
+                .append(", ").append(ThreatDb.COL_SOURCE)
+                .append(" FROM ").append(ThreatDb.TABLE_DOMAINS)
+                .append(" WHERE ").append(ThreatDb.COL_DOMAIN).append(" IN (");
+        for (int i = 0; i < mArgs.size(); i++) sql.append(i == 0 ? "?" : ",?");
+        sql.append(')');
+
+        CircleTrace.begin("db checkDomains");
+        try (Cursor c = mDb.rawQuery(sql.toString(), mArgs.toArray(new String[0]))) {
+            while (c.moveToNext()) {
+                mHits.put(c.getString(0), new Hit(c.getString(1), c.getInt(2), c.getString(3)));
+            }
+        } finally {
+            CircleTrace.end();
+        }
+    }
+
+    /** Most specific listed suffix of {@code input}, or null. */
+    private Match bestMatch(String input) {
+        for (int i = 0; i < input.length(); i++) {
+            if (i != 0 && input.charAt(i - 1) != '.') continue;
+            Hit hit = mHits.get(i == 0 ? input : input.substring(i));
+            if (hit != null) {
+                return new Match(input, input.substring(i), hit.category, hit.severity, hit.source);
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ' ' || c == '\t' || c == ',' || c == ';' || c == '"' || c == '\''
+                || c == '|' || c == '<' || c == '>' || c == '(' || c == ')';
+    }
+
+    /**
+     * Reduces a token to a lowercase hostname, or null if it isn't one:
+     * drops any scheme, userinfo, port, path and trailing dot, and rejects
+     * IP addresses and names without a dot.
+     */
+    static String normalize(String token) {
+        String s = token;
+        int scheme = s.indexOf("://");
+        if (scheme >= 0) s = s.substring(scheme + 3);
+        int cut = indexOfAny(s, "/?#");
+        if (cut >= 0) s = s.substring(0, cut);
+        int at = s.lastIndexOf('@');
+        if (at >= 0) s = s.substring(at + 1);
+        int colon = s.indexOf(':');
+        if (colon >= 0) s = s.substring(0, colon);
+        if (s.endsWith(".")) s = s.substring(0, s.length() - 1);
+        if (s.isEmpty() || s.length() > 253) return null;
+
+        boolean dot = false;
+        boolean letter = false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '.') {
+                if (i == 0 || s.charAt(i - 1) == '.') return null;
+                dot = true;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                letter = true;
+            } else if (!(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return null;
+            }
+        }
+        // No letters at all means an IPv4 address or a number
+        if (!dot || !letter) return null;
+        return s.toLowerCase(Locale.ROOT);
+    }
+
+    private static int indexOfAny(String s, String chars) {
+        for (int i = 0; i < s.length(); i++) {
+            if (chars.indexOf(s.charAt(i)) >= 0) return i;
+        }
+        return -1;
+    }
+}
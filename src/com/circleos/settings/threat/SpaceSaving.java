@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Space-Saving top-K summary (Metwally et al.) over string keys, in fixed
+ * memory. Tracks at most {@code capacity} keys; when full, an unseen key
+ * takes over the slot with the smallest count and inherits it as error.
+ * Any key whose true count exceeds total/capacity is guaranteed present,
+ * and each reported count over-estimates by at most its error.
+ *
+ * Not thread-safe.
+ */
+final class SpaceSaving {
+
+    /** One tracked key. {@code count - error} is a lower bound on the true count. */
+    static final class Item {
+        final String key;
+        final long   count;
+        final long   error;
+
+        Item(String key, long count, long error) {
+            this.key   = key;
+            this.count = count;
+            this.error = error;
+        }
+    }
+
+    private final int      mCapacity;
+    private final String[] mKeys;
+    private final long[]   mCounts;
+    private final long[]   mErrors;
+    private final HashMap<String, Integer> mIndex;
+    private int  mSize;
+    private long mTotal;
+
+    SpaceSaving(int capacity) {
+        mCapacity = capacity;
+        mKeys   = new String[capacity];
+        mCounts = new long[capacity];
+        mErrors = new long[capacity];
+        mIndex  = new HashMap<>(capacity * 2);
+    }
+
+    void offer(String key) {
+        mTotal++;
+        track(key, 1, 0);
+    }
+
+    /**
+     * Adds {@code count} to {@code key}'s slot, carrying {@code error}, and
+     * evicts the smallest slot if {@code key} is new and the summary full.
+     * Does not touch the total.
+     */
+    private void track(String key, long count, long error) {
+        Integer slot = mIndex.get(key);
+        if (slot != null) {
+            mCounts[slot] += count;
+            mErrors[slot] += error;
+            return;
+        }
+        if (mSize < mCapacity) {
+            put(mSize++, key, count, error);
+            return;
+        }
+        int min = 0;
+        for (int i = 1; i < mSize; i++) {
+            if (mCounts[i] < mCounts[min]) min = i;
+        }
+        long floor = mCounts[min];
+        mIndex.remove(mKeys[min]);
+        put(min, key, floor + count, floor + error);
+    }
+
+    private void put(int slot, String key, long count, long error) {
+        mKeys[slot]   = key;
+        mCounts[slot] = count;
+        mErrors[slot] = error;
+        mIndex.put(key, slot);
+    }
+
+    /**
+     * Folds {@code other} into this summary. The total grows by exactly
+     * other's total: tracked counts include inherited error, so they are
+     * not added to it.
+     */
+    void addAll(SpaceSaving other) {
+        for (int i = 0; i < other.mSize; i++) {
+            track(other.mKeys[i], other.mCounts[i], other.mErrors[i]);
+        }
+        mTotal += other.mTotal;
+    }
+
+    /** Total occurrences offered, tracked or not. */
+    long total() {
+        return mTotal;
+    }
+
+    boolean isEmpty() {
+        return mTotal == 0;
+    }
+
+    void clear() {
+        for (int i = 0; i < mSize; i++) mKeys[i] = null;
+        mIndex.clear();
+        mSize = 0;
+        mTotal = 0;
+    }
+
+    /** Up to {@code n} keys by descending count. */
+    List<Item> top(int n) {
+        List<Item> out = new ArrayList<>(mSize);
+        for (int i = 0; i < mSize; i++) out.add(new Item(mKeys[i], mCounts[i], mErrors[i]));
+        out.sort((a, b) -> Long.compare(b.count, a.count));
+        return out.size() > n ? new ArrayList<>(out.subList(0, n)) : out;
+    }
+}
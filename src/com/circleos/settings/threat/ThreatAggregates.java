@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+import android.util.Slog;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Row counts for threat_domains by (source, category, severity), kept in
+ * threat_aggregates by triggers, plus a log of merge runs.
+ *
+ * The triggers fire inside whatever transaction changes threat_domains,
+ * so the counts are exact whoever inserts, deletes or edits rows (the
+ * updater's merge, the filter service, an expiry). The blocklist overview
+ * then reads a few dozen rows instead of scanning the domain table.
+ *
+ * last_added is the newest added_at ever inserted for the group; deleting
+ * rows does not move it back.
+ */
+public final class ThreatAggregates {
+
+    private static final String TAG = "CircleThreatAggregates";
+
+    static final String TABLE_AGGREGATES = "threat_aggregates";
+    static final String TABLE_RUNS       = "threat_merge_runs";
+
+    /** Merge runs kept for the growth history. */
+    private static final int MAX_RUNS = 30;
+
+    // NULL keys would never conflict in the primary key, so fold them to ''/0
+    private static final String KEY_NEW =
+            "IFNULL(NEW.source, ''), IFNULL(NEW.category, ''), IFNULL(NEW.severity, 0)";
+    private static final String MATCH_OLD =
+            "source = IFNULL(OLD.source, '') AND category = IFNULL(OLD.category, '')"
+            + " AND severity = IFNULL(OLD.severity, 0)";
+
+    private static final String[] SCHEMA = {
+        "CREATE TABLE IF NOT EXISTS " + TABLE_AGGREGATES + " ("
+                + "source TEXT NOT NULL, category TEXT NOT NULL, severity INTEGER NOT NULL, "
+                + "count INTEGER NOT NULL, last_added INTEGER, "
+                + "PRIMARY KEY (source, category, severity))",
+
+        "CREATE TABLE IF NOT EXISTS " + TABLE_RUNS + " ("
+                + "id INTEGER PRIMARY KEY AUTOINCREMENT, finished_at INTEGER NOT NULL, "
+                + "source TEXT, added INTEGER NOT NULL, total INTEGER NOT NULL)",
+
+        "CREATE TRIGGER IF NOT EXISTS threat_agg_insert AFTER INSERT ON threat_domains BEGIN "
+                + "INSERT INTO " + TABLE_AGGREGATES + " VALUES (" + KEY_NEW + ", 1, NEW.added_at) "
+                + "ON CONFLICT (source, category, severity) DO UPDATE SET count = count + 1, "
+                + "last_added = MAX(IFNULL(last_added, 0), IFNULL(excluded.last_added, 0)); "
+                + "END",
+
+        "CREATE TRIGGER IF NOT EXISTS threat_agg_delete AFTER DELETE ON threat_domains BEGIN "
+                + "UPDATE " + TABLE_AGGREGATES + " SET count = count - 1 WHERE " + MATCH_OLD + "; "
+                + "DELETE FROM " + TABLE_AGGREGATES + " WHERE count <= 0; "
+                + "END",
+
+        "CREATE TRIGGER IF NOT EXISTS threat_agg_update "
+                + "AFTER UPDATE OF source, category, severity ON threat_domains BEGIN "
+                + "UPDATE " + TABLE_AGGREGATES + " SET count = count - 1 WHERE " + MATCH_OLD + "; "
+                + "DELETE FROM " + TABLE_AGGREGATES + " WHERE count <= 0; "
+                + "INSERT INTO " + TABLE_AGGREGATES + " VALUES (" + KEY_NEW + ", 1, NEW.added_at) "
+                + "ON CONFLICT (source, category, severity) DO UPDATE SET count = count + 1, "
+                + "last_added = MAX(IFNULL(last_added, 0), IFNULL(excluded.last_added, 0)); "
+                + "END",
+    };
+
+    /** One (source, category, severity) group. */
+    public static final class Group {
+        public final String source;
+        public final String category;
+        public final int    severity;
+        public final long   count;
+        public final long   lastAdded;    // epoch seconds, 0 if unknown
+
+        Group(String source, String category, int severity, long count, long lastAdded) {
+            this.source    = source;
+            this.category  = category;
+            this.severity  = severity;
+            this.count     = count;
+            this.lastAdded = lastAdded;
+        }
+    }
+
+    /** One merge run. */
+    public static final class Run {
+        public final long   finishedAt;   // epoch seconds
+        public final String source;
+        public final long   added;
+        public final long   total;
+
+        Run(long finishedAt, String source, long added, long total) {
+            this.finishedAt = finishedAt;
+            this.source     = source;
+            this.added      = added;
+            this.total      = total;
+        }
+    }
+
+    /** Everything the overview shows. */
+    public static final class Overview {
+        public final List<Group> groups = new ArrayList<>();
+        public final List<Run>   runs   = new ArrayList<>();    // newest first
+        public long total;
+
+        /** Row counts summed by one dimension, largest first. */
+        public Map<String, Long> bySource()   { return sum(0); }
+        public Map<String, Long> byCategory() { return sum(1); }
+        public Map<String, Long> bySeverity() { return sum(2); }
+
+        /** Newest last_added per source. */
+        public Map<String, Long> lastAddedBySource() {
+            Map<String, Long> out = new LinkedHashMap<>();
+            for (Group g : groups) out.merge(g.source, g.lastAdded, Math::max);
+            return out;
+        }
+
+        private Map<String, Long> sum(int dimension) {
+            Map<String, Long> acc = new LinkedHashMap<>();
+            for (Group g : groups) {
+                String key = dimension == 0 ? g.source
+                        : dimension == 1 ? g.category : String.valueOf(g.severity);
+                acc.merge(key, g.count, Long::sum);
+            }
+            List<Map.Entry<String, Long>> sorted = new ArrayList<>(acc.entrySet());
+            sorted.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+            Map<String, Long> out = new LinkedHashMap<>();
+            for (Map.Entry<String, Long> e : sorted) out.put(e.getKey(), e.getValue());
+            return out;
+        }
+    }
+
+    private static volatile boolean sEnsured;
+
+    private ThreatAggregates() {}
+
+    /**
+     * Runs {@link #ensure} once per process on a writable handle of its
+     * own, so screens opened before the first merge still get counts.
+     * Worker thread. If the database cannot be opened for writing yet, the
+     * next call tries again.
+     */
+    public static void ensureOnce() {
+        if (sEnsured) return;
+        synchronized (ThreatAggregates.class) {
+            if (sEnsured) return;
+            try (SQLiteDatabase db = ThreatDb.openReadWrite()) {
+                ensure(db);
+                sEnsured = true;
+            } catch (SQLiteException e) {
+                Slog.w(TAG, "Cannot set up threat aggregates", e);
+            }
+        }
+    }
+
+    /**
+     * Creates the aggregate tables and triggers if missing. The first time,
+     * backfills the counts with one scan of threat_domains. Needs a writable
+     * handle; call outside any other transaction.
+     */
+    public static void ensure(SQLiteDatabase db) {
+        boolean exists;
+        try (Cursor c = db.rawQuery(
+                "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?",
+                new String[] { TABLE_AGGREGATES })) {
+            exists = c.moveToFirst();
+        }
+        if (exists) return;
+
+        db.beginTransaction();
+        try {
+            for (String sql : SCHEMA) db.execSQL(sql);
+            db.execSQL("INSERT INTO " + TABLE_AGGREGATES
+                    + " SELECT IFNULL(source, ''), IFNULL(category, ''), IFNULL(severity, 0), "
+                    + "COUNT(*), MAX(added_at) FROM threat_domains GROUP BY 1, 2, 3");
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Logs a finished merge. Call inside the merge's transaction so the
+     * run and its rows commit together.
+     */
+    public static void recordRun(SQLiteDatabase db, String source, long added, long finishedAt) {
+        db.execSQL("INSERT INTO " + TABLE_RUNS + " (finished_at, source, added, total) "
+                + "SELECT ?, ?, ?, IFNULL(SUM(count), 0) FROM " + TABLE_AGGREGATES,
+                new Object[] { finishedAt, source, added });
+        db.execSQL("DELETE FROM " + TABLE_RUNS + " WHERE id <= "
+                + "(SELECT MAX(id) FROM " + TABLE_RUNS + ") - " + MAX_RUNS);
+    }
+
+    /** Reads the overview. Returns an empty one if the tables don't exist yet. */
+    public static Overview read(SQLiteDatabase db) {
+        Overview o = new Overview();
+        try (Cursor c = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'table' "
+                + "AND name = ?", new String[] { TABLE_AGGREGATES })) {
+            if (!c.moveToFirst()) return o;
+        }
+        try (Cursor c = db.rawQuery("SELECT source, category, severity, count, "
+                + "IFNULL(last_added, 0) FROM " + TABLE_AGGREGATES, null)) {
+            while (c.moveToNext()) {
+                Group g = new Group(c.getString(0), c.getString(1), c.getInt(2),
+                        c.getLong(3), c.getLong(4));
+                o.groups.add(g);
+                o.total += g.count;
+            }
+        }
+        try (Cursor c = db.rawQuery("SELECT finished_at, source, added, total FROM "
+                + TABLE_RUNS + " ORDER BY id DESC", null)) {
+            while (c.moveToNext()) {
+                o.runs.add(new Run(c.getLong(0), c.getString(1), c.getLong(2), c.getLong(3)));
+            }
+        }
+        return o;
+    }
+}
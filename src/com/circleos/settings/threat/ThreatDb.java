@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.database.sqlite.SQLiteDatabase;
+
+/**
+ * Location and schema of the threat intelligence database shared with
+ * CircleDomainFilterService and maintained by ThreatIntelUpdater.
+ *
+ *   threat_domains(domain TEXT UNIQUE, category TEXT, severity INTEGER,
+ *                  added_at INTEGER, source TEXT)
+ */
+public final class ThreatDb {
+
+    private static volatile String sDir = "/data/circle";
+
+    public static final String TABLE_DOMAINS = "threat_domains";
+
+    public static final String COL_DOMAIN   = "domain";
+    public static final String COL_CATEGORY = "category";
+    public static final String COL_SEVERITY = "severity";
+    public static final String COL_ADDED_AT = "added_at";
+    public static final String COL_SOURCE   = "source";
+
+    private ThreatDb() {}
+
+    public static String path() {
+        return sDir + "/threat_intel.db";
+    }
+
+    /** This app's own database next to it; see {@link Allowlist}. */
+    static String allowlistPath() {
+        return sDir + "/threat_allowlist.db";
+    }
+
+    /**
+     * Moves both databases into {@code dir}, which JVM tests own. Call
+     * before anything opens them.
+     */
+    public static void setDirectoryForTest(String dir) {
+        sDir = dir;
+    }
+
+    /** Read-only handle for lookups; the caller closes it. */
+    public static SQLiteDatabase openReadOnly() {
+        return SQLiteDatabase.openDatabase(path(), null, SQLiteDatabase.OPEN_READONLY);
+    }
+
+    /** Handle for the updater and allowlist edits; the caller closes it. */
+    public static SQLiteDatabase openReadWrite() {
+        return SQLiteDatabase.openDatabase(path(), null, SQLiteDatabase.OPEN_READWRITE);
+    }
+}
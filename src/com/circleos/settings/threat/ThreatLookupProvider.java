@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.threat;
+
+import android.content.ContentProvider;
+import android.content.ContentValues;
+import android.content.UriMatcher;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.net.Uri;
+import android.util.Slog;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Read-only lookup of domains against threat_domains for other privileged
+ * components. Requires com.circleos.permission.QUERY_THREAT_INTEL.
+ *
+ *   content://com.circleos.settings.threat/check
+ *
+ * Domains are passed as selectionArgs, or as a comma-separated
+ * "domains" query parameter, in any form {@link DomainChecker} accepts.
+ * Returns one row per input that is listed, directly or through a parent
+ * domain: input, domain (the listed entry), category, severity, source.
+ */
+public class ThreatLookupProvider extends ContentProvider {
+
+    private static final String TAG = "CircleThreatLookup";
+
+    public static final String AUTHORITY = "com.circleos.settings.threat";
+
+    public static final String COL_INPUT = "input";
+
+    private static final String[] COLUMNS = {
+        COL_INPUT, ThreatDb.COL_DOMAIN, ThreatDb.COL_CATEGORY,
+        ThreatDb.COL_SEVERITY, ThreatDb.COL_SOURCE
+    };
+
+    /** Most hostnames one query may look up, however they are split into arguments. */
+    private static final int MAX_DOMAINS = 10_000;
+
+    private static final int MATCH_CHECK = 1;
+
+    private static final UriMatcher sMatcher = new UriMatcher(UriMatcher.NO_MATCH);
+    static {
+        sMatcher.addURI(AUTHORITY, "check", MATCH_CHECK);
+    }
+
+    @Override
+    public boolean onCreate() {
+        return true;
+    }
+
+    @Override
+    public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs,
+                        String sortOrder) {
+        if (sMatcher.match(uri) != MATCH_CHECK) {
+            throw new IllegalArgumentException("Unknown URI " + uri);
+        }
+
+        StringBuilder input = new StringBuilder();
+        if (selectionArgs != null) {
+            for (String d : selectionArgs) input.append(d).append('\n');
+        }
+        String param = uri.getQueryParameter("domains");
+        if (param != null) input.append(param.replace(',', '\n'));
+
+        // One argument can hold many names; the checker counts each one it
+        // looks up and throws at the first past the limit
+        MatrixCursor out = new MatrixCursor(COLUMNS);
+        try (SQLiteDatabase db = ThreatDb.openReadOnly()) {
+            DomainChecker checker = new DomainChecker(db, MAX_DOMAINS);
+            checker.check(new StringReader(input.toString()), (matches, p) -> {
+                for (DomainChecker.Match m : matches) {
+                    out.addRow(new Object[] { m.input, m.matched, m.category, m.severity, m.source });
+                }
+            });
+        } catch (IOException e) {
+            Slog.w(TAG, "Lookup failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return out;
+    }
+
+    @Override
+    public String getType(Uri uri) {
+        return null;
+    }
+
+    @Override
+    public Uri insert(Uri uri, ContentValues values) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int delete(Uri uri, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+
+    @Override
+    public int update(Uri uri, ContentValues values, String selection, String[] selectionArgs) {
+        throw new UnsupportedOperationException("Read-only");
+    }
+}
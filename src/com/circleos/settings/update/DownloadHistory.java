@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.update;
+
+import android.content.Context;
+import android.util.AtomicFile;
+import android.util.Slog;
+
+import com.circleos.settings.CircleTrace;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The last {@link #MAX_ENTRIES} OTA downloads seen by this app, newest
+ * first, for diagnosing slow delivery. Stored as JSON in filesDir.
+ */
+public final class DownloadHistory {
+
+    private static final String TAG  = "CircleOtaHistory";
+    private static final String FILE = "ota_download_history.json";
+    static final int MAX_ENTRIES = 20;
+
+    public static final String OUTCOME_COMPLETE  = "complete";
+    public static final String OUTCOME_FAILED    = "failed";
+    public static final String OUTCOME_ABANDONED = "abandoned";
+
+    public static final class Entry {
+        public String version;
+        public long   startedAt;        // wall clock
+        public long   durationMs;
+        public double avgPercentPerMin;  // over the time actually observed
+        public boolean partial;          // not watched from start to end
+        public int    retries;
+        public int    stalls;
+        public String outcome;
+
+        JSONObject toJson() throws JSONException {
+            return new JSONObject()
+                    .put("version", version)
+                    .put("startedAt", startedAt)
+                    .put("durationMs", durationMs)
+                    .put("avgPercentPerMin", avgPercentPerMin)
+                    .put("retries", retries)
+                    .put("stalls", stalls)
+                    .put("outcome", outcome)
+                    .put("partial", partial);
+        }
+
+        static Entry fromJson(JSONObject o) throws JSONException {
+            Entry e = new Entry();
+            e.version          = o.optString("version", null);
+            e.startedAt        = o.getLong("startedAt");
+            e.durationMs       = o.getLong("durationMs");
+            e.avgPercentPerMin = o.getDouble("avgPercentPerMin");
+            e.retries          = o.getInt("retries");
+            e.stalls           = o.getInt("stalls");
+            e.outcome          = o.getString("outcome");
+            e.partial          = o.optBoolean("partial", false);
+            return e;
+        }
+    }
+
+    private DownloadHistory() {}
+
+    public static List<Entry> load(Context context) {
+        List<Entry> out = new ArrayList<>();
+        AtomicFile file = file(context);
+        if (!file.exists()) return out;
+        CircleTrace.begin("file loadDownloadHistory");
+        try {
+            JSONArray items = new JSONArray(new String(file.readFully(), StandardCharsets.UTF_8));
+            for (int i = 0; i < items.length(); i++) {
+                out.add(Entry.fromJson(items.getJSONObject(i)));
+            }
+        } catch (IOException | JSONException e) {
+            Slog.w(TAG, "Unreadable OTA download history", e);
+        } finally {
+            CircleTrace.end();
+        }
+        return out;
+    }
+
+    /** Prepends {@code entry}, dropping the oldest beyond the limit. Worker thread. */
+    static synchronized void append(Context context, Entry entry) {
+        List<Entry> entries = load(context);
+        entries.add(0, entry);
+        while (entries.size() > MAX_ENTRIES) entries.remove(entries.size() - 1);
+
+        AtomicFile file = file(context);
+        FileOutputStream out = null;
+        CircleTrace.begin("file saveDownloadHistory");
+        try {
+            JSONArray items = new JSONArray();
+            for (Entry e : entries) items.put(e.toJson());
+            out = file.startWrite();
+            out.write(items.toString().getBytes(StandardCharsets.UTF_8));
+            file.finishWrite(out);
+        } catch (IOException | JSONException e) {
+            Slog.w(TAG, "Failed to save OTA download history", e);
+            if (out != null) file.failWrite(out);
+        } finally {
+            CircleTrace.end();
+        }
+    }
+
+    private static AtomicFile file(Context context) {
+        return new AtomicFile(new File(context.getFilesDir(), FILE));
+    }
+}
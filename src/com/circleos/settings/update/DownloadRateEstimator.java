@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.update;
+
+/**
+ * Sliding-window throughput estimator for one download, fed with
+ * (time, progress) samples. Pure Java with no Android dependencies, so
+ * recorded progress traces can be replayed through it off-device.
+ *
+ * Progress is in arbitrary units up to {@code total} (percent for
+ * circle.update). The rate is measured from the oldest sample still
+ * inside the window up to "now", so it decays towards zero while progress
+ * is stuck rather than freezing at the last good value.
+ *
+ * A drop in progress means the service restarted the transfer; it is
+ * counted as a retry and the window starts over.
+ *
+ * Samples may stop for a while, e.g. when nobody is watching and the
+ * status is not polled. Two samples further apart than {@code maxGapMs}
+ * mark a gap. Neither the time nor the progress across a gap counts
+ * towards {@link #averageRate}, and a download with a gap, or first seen
+ * part-way through, is not {@link #fullyObserved}. Not thread-safe.
+ */
+public final class DownloadRateEstimator {
+
+    private static final int CAPACITY = 64;   // power of two
+    private static final int MASK     = CAPACITY - 1;
+
+    private final long mWindowMs;
+    private final long mStallMs;
+    private final long mTotal;
+    private final long mMaxGapMs;
+
+    private final long[] mTime     = new long[CAPACITY];
+    private final long[] mProgress = new long[CAPACITY];
+    private int mHead;
+    private int mSize;
+
+    private long    mStartedAt = -1;
+    private long    mStartProgress;
+    private long    mLastChangeAt;
+    private long    mLastProgress = -1;
+    private long    mPrevAt = -1;     // time of the previous sample
+    private long    mObservedMs;      // time between samples, gaps excluded
+    private long    mTransferred;     // units moved while observed, summed across retries
+    private int     mGaps;
+    private int     mRetries;
+    private int     mStalls;
+    private boolean mStalled;
+
+    /**
+     * @param windowMs span the rate is averaged over
+     * @param stallMs  how long progress must stand still to count as a stall
+     * @param total    progress value at completion
+     * @param maxGapMs longest spacing of samples that still counts as observed
+     */
+    public DownloadRateEstimator(long windowMs, long stallMs, long total, long maxGapMs) {
+        mWindowMs = windowMs;
+        mStallMs  = stallMs;
+        mTotal    = total;
+        mMaxGapMs = maxGapMs;
+    }
+
+    /** Adds one observation. Samples must arrive in time order. */
+    public void addSample(long now, long progress) {
+        boolean gap = mPrevAt >= 0 && now - mPrevAt > mMaxGapMs;
+        if (gap) mGaps++;
+        else if (mPrevAt >= 0) mObservedMs += now - mPrevAt;
+        mPrevAt = now;
+
+        if (mStartedAt < 0) {
+            mStartedAt     = now;
+            mStartProgress = progress;
+            mLastChangeAt  = now;
+        } else if (mLastProgress < 0) {
+            mLastChangeAt = now;        // first sample after markRetry()
+        } else if (progress < mLastProgress) {
+            markRetry();
+            mLastChangeAt = now;
+        } else if (progress > mLastProgress) {
+            if (!gap) mTransferred += progress - mLastProgress;
+            mLastChangeAt = now;
+        }
+        mLastProgress = progress;
+        updateStall(now);
+
+        if (mSize == CAPACITY) {
+            mHead = (mHead + 1) & MASK;
+            mSize--;
+        }
+        int i = (mHead + mSize) & MASK;
+        mTime[i]     = now;
+        mProgress[i] = progress;
+        mSize++;
+        evict(now);
+    }
+
+    /**
+     * Records a restart reported out of band (e.g. the service failed and
+     * resumed). The next sample re-anchors the window without counting a
+     * second retry.
+     */
+    public void markRetry() {
+        mRetries++;
+        mHead = 0;
+        mSize = 0;
+        mLastProgress = -1;
+    }
+
+    /** Units per second over the window ending at {@code now}; 0 if unknown. */
+    public double rate(long now) {
+        evict(now);
+        if (mSize == 0) return 0;
+        long t0 = mTime[mHead];
+        long p0 = mProgress[mHead];
+        long dt = now - t0;
+        if (dt <= 0) return 0;
+        return Math.max(0, mLastProgress - p0) * 1000.0 / dt;
+    }
+
+    /** Estimated time to completion, or -1 if there is no usable rate. */
+    public long etaMs(long now) {
+        double rate = rate(now);
+        if (rate <= 0) return -1;
+        return (long) ((mTotal - mLastProgress) * 1000.0 / rate);
+    }
+
+    /** True once progress has not moved for the stall period. */
+    public boolean isStalled(long now) {
+        updateStall(now);
+        return mStalled;
+    }
+
+    /** Mean rate over the observed time, in units per second; 0 if none. */
+    public double averageRate() {
+        return mObservedMs > 0 ? mTransferred * 1000.0 / mObservedMs : 0;
+    }
+
+    /**
+     * True if the download was seen from zero progress, with no gap
+     * between samples and none between the last sample and {@code now}.
+     */
+    public boolean fullyObserved(long now) {
+        return mStartedAt >= 0 && mStartProgress == 0 && mGaps == 0
+                && now - mPrevAt <= mMaxGapMs;
+    }
+
+    public long startedAt()       { return mStartedAt; }
+    public long startProgress()   { return mStartProgress; }
+    public long lastProgress()    { return mLastProgress; }
+    public long observedMs()      { return mObservedMs; }
+    public int  retries()         { return mRetries; }
+    /** Number of distinct stalls seen so far. */
+    public int  stalls()          { return mStalls; }
+
+    /** Keeps one sample at or before the window start as the rate anchor. */
+    private void evict(long now) {
+        long cutoff = now - mWindowMs;
+        while (mSize > 1 && mTime[(mHead + 1) & MASK] <= cutoff) {
+            mHead = (mHead + 1) & MASK;
+            mSize--;
+        }
+    }
+
+    private void updateStall(long now) {
+        boolean stalled = mStartedAt >= 0 && mLastProgress >= 0 && mLastProgress < mTotal
+                && now - mLastChangeAt >= mStallMs;
+        if (stalled && !mStalled) mStalls++;
+        mStalled = stalled;
+    }
+}
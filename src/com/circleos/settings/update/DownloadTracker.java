@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.update;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.os.SystemProperties;
+
+import com.circleos.settings.CircleExecutors;
+
+import java.util.Objects;
+
+/**
+ * Follows the current OTA download through the statuses published by
+ * {@link UpdateStatusMonitor}, feeding a {@link DownloadRateEstimator}, and
+ * appends a {@link DownloadHistory} entry when the download ends.
+ *
+ * A FAILED state followed by DOWNLOADING for the same version is counted
+ * as a retry of the same download. Status is only polled while someone
+ * watches the update screen, so a download is often seen in part; such
+ * entries are marked partial and their average covers only the time seen.
+ * Thread-safe.
+ */
+final class DownloadTracker {
+
+    static final long WINDOW_MS = 30_000;
+    /** Stall threshold; overridable per device for slow-link testing. */
+    static final String PROP_STALL_SEC = "persist.circle.ota.stall_sec";
+    static final long DEFAULT_STALL_SEC = 60;
+    /** Longer than an active poll interval plus its timeout. */
+    static final long MAX_GAP_MS = 15_000;
+
+    private static final DownloadTracker sInstance = new DownloadTracker();
+
+    private Context               mContext;        // for history; null until attached
+    private DownloadRateEstimator mEstimator;      // null when no download is tracked
+    private String                mVersion;
+    private long                  mWallStart;
+    private boolean               mFailed;
+
+    private DownloadTracker() {}
+
+    static DownloadTracker get() {
+        return sInstance;
+    }
+
+    synchronized void attach(Context context) {
+        if (mContext == null) mContext = context.getApplicationContext();
+    }
+
+    /** Called for every published status, from any thread. */
+    synchronized void onStatus(UpdateStatusMonitor.UpdateStatus s) {
+        if (s.error != null) return;
+        long now = SystemClock.elapsedRealtime();
+        switch (s.state) {
+            case UpdateStatusMonitor.STATE_DOWNLOADING:
+                if (mEstimator != null && !Objects.equals(mVersion, s.version)) {
+                    finish(DownloadHistory.OUTCOME_ABANDONED, now);
+                }
+                if (mEstimator == null) {
+                    long stallSec = SystemProperties.getLong(PROP_STALL_SEC, DEFAULT_STALL_SEC);
+                    mEstimator = new DownloadRateEstimator(WINDOW_MS, stallSec * 1000, 100,
+                            MAX_GAP_MS);
+                    mVersion   = s.version;
+                    mWallStart = System.currentTimeMillis();
+                } else if (mFailed) {
+                    mEstimator.markRetry();
+                }
+                mFailed = false;
+                if (s.progress >= 0) mEstimator.addSample(now, s.progress);
+                break;
+            case UpdateStatusMonitor.STATE_READY_TO_INSTALL:
+            case UpdateStatusMonitor.STATE_INSTALLING:
+                if (mEstimator != null) finish(DownloadHistory.OUTCOME_COMPLETE, now);
+                break;
+            case UpdateStatusMonitor.STATE_FAILED:
+                mFailed = mEstimator != null;
+                break;
+            default:
+                if (mEstimator != null) {
+                    finish(mFailed ? DownloadHistory.OUTCOME_FAILED
+                            : DownloadHistory.OUTCOME_ABANDONED, now);
+                }
+                break;
+        }
+    }
+
+    /** Fills {@code out} for display; returns false if no download is tracked. */
+    synchronized boolean read(Progress out) {
+        if (mEstimator == null || mFailed) return false;
+        long now = SystemClock.elapsedRealtime();
+        out.percentPerMin = mEstimator.rate(now) * 60;
+        out.etaMs         = mEstimator.etaMs(now);
+        out.stalled       = mEstimator.isStalled(now);
+        out.retries       = mEstimator.retries();
+        return true;
+    }
+
+    private void finish(String outcome, long now) {
+        DownloadHistory.Entry e = new DownloadHistory.Entry();
+        e.version          = mVersion;
+        e.startedAt        = mWallStart;
+        e.durationMs       = now - mEstimator.startedAt();
+        e.avgPercentPerMin = mEstimator.averageRate() * 60;
+        e.partial          = !mEstimator.fullyObserved(now);
+        e.retries          = mEstimator.retries();
+        e.stalls           = mEstimator.stalls();
+        e.outcome          = outcome;
+        mEstimator = null;
+        mVersion   = null;
+        mFailed    = false;
+
+        Context context = mContext;
+        if (context != null) {
+            CircleExecutors.background().execute(() -> DownloadHistory.append(context, e));
+        }
+    }
+
+    /** Caller-owned display values. */
+    static final class Progress {
+        double  percentPerMin;
+        long    etaMs;           // -1 if unknown
+        boolean stalled;
+        int     retries;
+    }
+}
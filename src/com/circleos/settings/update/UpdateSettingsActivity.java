@@ -5,12 +5,10 @@
 package com.circleos.settings.update;
 
 import android.app.Activity;
+import android.content.Context;
 import android.os.Bundle;
 import android.os.Handler;
-import android.os.IBinder;
 import android.os.Looper;
-import android.os.RemoteException;
-import android.os.ServiceManager;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Button;
@@ -19,11 +17,15 @@ import android.widget.RadioButton;
 import android.widget.RadioGroup;
 import android.widget.TextView;
 
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.ScreenTimer;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Locale;
-
-import za.co.circleos.update.ICircleUpdateService;
+import java.util.Objects;
+import java.util.concurrent.Future;
 
 /**
  * OTA update settings screen.
@@ -31,23 +33,26 @@ import za.co.circleos.update.ICircleUpdateService;
  * Shows:
  *  - Current update state (IDLE / CHECKING / DOWNLOADING / READY / INSTALLING / FAILED)
  *  - Available version (if found)
- *  - Download progress (if downloading)
+ *  - Download progress with rate, ETA and a stall warning (if downloading)
  *  - Last check time
  *  - Channel picker: stable / beta / nightly
  *  - "Check Now" button
  *  - "Install Now" button (shown when READY_TO_INSTALL)
+ *  - Recent downloads: duration, average rate, retries, stalls
+ *
+ * Status comes from {@link UpdateStatusMonitor} while the screen is
+ * visible: one consistent snapshot at a time, with progress refreshed about
+ * once a second during a download.
  */
-public class UpdateSettingsActivity extends Activity {
+public class UpdateSettingsActivity extends Activity
+        implements UpdateStatusMonitor.Listener {
 
-    private static final int STATE_IDLE             = 0;
-    private static final int STATE_CHECKING         = 1;
-    private static final int STATE_DOWNLOADING      = 2;
-    private static final int STATE_READY_TO_INSTALL = 3;
-    private static final int STATE_INSTALLING       = 4;
-    private static final int STATE_FAILED           = 5;
+    private static final int STATE_IDLE             = UpdateStatusMonitor.STATE_IDLE;
+    private static final int STATE_DOWNLOADING      = UpdateStatusMonitor.STATE_DOWNLOADING;
+    private static final int STATE_READY_TO_INSTALL = UpdateStatusMonitor.STATE_READY_TO_INSTALL;
+    private static final int STATE_FAILED           = UpdateStatusMonitor.STATE_FAILED;
 
-    private ICircleUpdateService mUpdate;
-    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private static final int HISTORY_SHOWN = 5;
 
     private TextView    mTvState;
     private TextView    mTvVersion;
@@ -60,121 +65,170 @@ public class UpdateSettingsActivity extends Activity {
     private Button      mBtnCheckNow;
     private Button      mBtnInstall;
 
-    private final Runnable mRefreshRunnable = new Runnable() {
+    private TextView    mTvStall;
+    private LinearLayout mHistoryCard;
+    private LinearLayout mHistoryList;
+
+    private UpdateStatusMonitor.UpdateStatus mShown;
+    private final DownloadTracker.Progress mProgress = new DownloadTracker.Progress();
+    private final Handler mUiHandler = new Handler(Looper.getMainLooper());
+    private final ScreenTimer mTimer = new ScreenTimer("UpdateSettings");
+    private final Runnable mProgressTick = new Runnable() {
         @Override public void run() {
-            if (!isFinishing()) {
-                refreshStatus();
-                mUiHandler.postDelayed(this, 10_000);
-            }
+            renderProgress();
+            mUiHandler.postDelayed(this, 1_000);
         }
     };
+    private Future<?> mHistoryLoad;
+    private boolean mBindingChannel;   // suppresses echoing the service's channel back
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        mTimer.begin();
         setContentView(buildLayout());
-        connectService();
+        DownloadTracker.get().attach(this);
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        mUiHandler.post(mRefreshRunnable);
+        UpdateStatusMonitor.get().addListener(this);
+        loadHistory();
     }
 
     @Override
     protected void onPause() {
         super.onPause();
-        mUiHandler.removeCallbacks(mRefreshRunnable);
+        UpdateStatusMonitor.get().removeListener(this);
+        mUiHandler.removeCallbacks(mProgressTick);
+        if (mHistoryLoad != null) mHistoryLoad.cancel(true);
     }
 
-    private void connectService() {
-        new Thread(() -> {
-            IBinder binder = ServiceManager.getService("circle.update");
-            if (binder != null) {
-                mUpdate = ICircleUpdateService.Stub.asInterface(binder);
-            }
-            mUiHandler.post(this::refreshStatus);
-        }).start();
-    }
+    @Override
+    public void onUpdateStatus(UpdateStatusMonitor.UpdateStatus s) {
+        UpdateStatusMonitor.UpdateStatus prev = mShown;
+        mShown = s;
+        mTimer.contentShown();
+        mUiHandler.removeCallbacks(mProgressTick);
+        if (s.error != null) {
+            mTvState.setText(s.error);
+            mTvState.setTextColor(0xFF888888);
+            mTvProgress.setVisibility(View.GONE);
+            mTvStall.setVisibility(View.GONE);
+            return;
+        }
 
-    private void refreshStatus() {
-        if (mUpdate == null) {
-            mTvState.setText("Service unavailable");
+        if (s.state == STATE_DOWNLOADING && s.progress >= 0) {
+            mProgressTick.run(); // re-renders each second so ETA and stall stay current
+        } else {
+            mTvProgress.setVisibility(View.GONE);
+            mTvStall.setVisibility(View.GONE);
+        }
+        if (prev != null && prev.state == STATE_DOWNLOADING && s.state != STATE_DOWNLOADING) {
+            loadHistory(); // the tracker has just recorded the finished download
+        }
+        // During a download most updates are progress-only; skip the rest
+        if (prev != null && prev.error == null && prev.state == s.state
+                && prev.lastCheck == s.lastCheck && Objects.equals(prev.version, s.version)
+                && Objects.equals(prev.channel, s.channel)) {
             return;
         }
-        new Thread(() -> {
-            try {
-                int    state     = mUpdate.getState();
-                String version   = mUpdate.getAvailableVersion();
-                int    progress  = mUpdate.getDownloadProgress();
-                long   lastCheck = mUpdate.getLastCheckTime();
-                String channel   = mUpdate.getChannel();
-
-                mUiHandler.post(() -> {
-                    mTvState.setText(stateName(state));
-                    mTvState.setTextColor(stateColor(state));
-
-                    mTvVersion.setText(version != null ? version : "—");
-
-                    if (state == STATE_DOWNLOADING && progress >= 0) {
-                        mTvProgress.setText("Downloading: " + progress + "%");
-                        mTvProgress.setVisibility(View.VISIBLE);
-                    } else {
-                        mTvProgress.setVisibility(View.GONE);
-                    }
-
-                    if (lastCheck > 0) {
-                        SimpleDateFormat sdf = new SimpleDateFormat("MMM d, HH:mm", Locale.getDefault());
-                        mTvLastCheck.setText("Last check: " + sdf.format(new Date(lastCheck)));
-                    } else {
-                        mTvLastCheck.setText("Never checked");
-                    }
-
-                    // Set channel radio
-                    if ("beta".equals(channel))         mRbBeta.setChecked(true);
-                    else if ("nightly".equals(channel)) mRbNightly.setChecked(true);
-                    else                                 mRbStable.setChecked(true);
-
-                    // Show Install button only when ready
-                    mBtnInstall.setVisibility(
-                            state == STATE_READY_TO_INSTALL ? View.VISIBLE : View.GONE);
-
-                    // Disable Check Now during active states
-                    mBtnCheckNow.setEnabled(
-                            state == STATE_IDLE || state == STATE_FAILED);
-                });
-            } catch (RemoteException e) {
-                mUiHandler.post(() -> mTvState.setText("Error: " + e.getMessage()));
-            }
-        }).start();
+
+        mTvState.setText(UpdateStatusMonitor.stateName(s.state));
+        mTvState.setTextColor(stateColor(s.state));
+
+        mTvVersion.setText(s.version != null ? s.version : "—");
+
+        if (s.lastCheck > 0) {
+            SimpleDateFormat sdf = new SimpleDateFormat("MMM d, HH:mm", Locale.getDefault());
+            mTvLastCheck.setText("Last check: " + sdf.format(new Date(s.lastCheck)));
+        } else {
+            mTvLastCheck.setText("Never checked");
+        }
+
+        // Set channel radio
+        mBindingChannel = true;
+        if ("beta".equals(s.channel))         mRbBeta.setChecked(true);
+        else if ("nightly".equals(s.channel)) mRbNightly.setChecked(true);
+        else                                   mRbStable.setChecked(true);
+        mBindingChannel = false;
+
+        // Show Install button only when ready
+        mBtnInstall.setVisibility(
+                s.state == STATE_READY_TO_INSTALL ? View.VISIBLE : View.GONE);
+        mBtnInstall.setEnabled(true);
+
+        // Disable Check Now during active states
+        mBtnCheckNow.setEnabled(
+                s.state == STATE_IDLE || s.state == STATE_FAILED);
+    }
+
+    private void renderProgress() {
+        StringBuilder sb = new StringBuilder("Downloading: ").append(mShown.progress).append('%');
+        boolean tracked = DownloadTracker.get().read(mProgress);
+        if (tracked && mProgress.percentPerMin > 0) {
+            sb.append(String.format(Locale.getDefault(), " · %.1f%%/min", mProgress.percentPerMin));
+            if (mProgress.etaMs >= 0) sb.append(" · ").append(formatEta(mProgress.etaMs)).append(" left");
+        }
+        if (tracked && mProgress.retries > 0) {
+            sb.append(" · ").append(mProgress.retries)
+              .append(mProgress.retries == 1 ? " retry" : " retries");
+        }
+        mTvProgress.setText(sb);
+        mTvProgress.setVisibility(View.VISIBLE);
+        mTvStall.setVisibility(tracked && mProgress.stalled ? View.VISIBLE : View.GONE);
+    }
+
+    private void loadHistory() {
+        if (mHistoryLoad != null) mHistoryLoad.cancel(true);
+        Context app = getApplicationContext();
+        mHistoryLoad = CircleExecutors.background().submit(() -> {
+            List<DownloadHistory.Entry> entries = DownloadHistory.load(app);
+            mUiHandler.post(() -> {
+                if (!isDestroyed()) showHistory(entries);
+            });
+        });
+    }
+
+    private void showHistory(List<DownloadHistory.Entry> entries) {
+        mHistoryList.removeAllViews();
+        mHistoryCard.setVisibility(entries.isEmpty() ? View.GONE : View.VISIBLE);
+        SimpleDateFormat sdf = new SimpleDateFormat("MMM d, HH:mm", Locale.getDefault());
+        for (int i = 0; i < Math.min(entries.size(), HISTORY_SHOWN); i++) {
+            DownloadHistory.Entry e = entries.get(i);
+            String line = sdf.format(new Date(e.startedAt))
+                    + "  " + (e.version != null ? e.version : "—")
+                    + "  " + e.outcome + (e.partial ? " (partly seen)" : "")
+                    + String.format(Locale.getDefault(), "\n%s · %.1f%%/min · %d retries · %d stalls",
+                            formatEta(e.durationMs), e.avgPercentPerMin, e.retries, e.stalls);
+            TextView tv = makeLabel(line, 12, 0xFF444444);
+            tv.setPadding(0, dp(4), 0, dp(4));
+            mHistoryList.addView(tv);
+        }
+    }
+
+    private static String formatEta(long ms) {
+        long sec = ms / 1000;
+        if (sec < 60)   return sec + "s";
+        if (sec < 3600) return (sec / 60) + " min";
+        return (sec / 3600) + "h " + (sec % 3600 / 60) + "m";
     }
 
     private void onChannelSelected(String channel) {
-        if (mUpdate == null) return;
-        new Thread(() -> {
-            try { mUpdate.setChannel(channel); }
-            catch (RemoteException e) { /* ignore */ }
-        }).start();
+        if (mBindingChannel || mShown == null || mShown.error != null) return;
+        if (channel.equals(mShown.channel)) return;
+        UpdateStatusMonitor.get().setChannel(channel);
     }
 
     private void onCheckNow() {
-        if (mUpdate == null) return;
         mBtnCheckNow.setEnabled(false);
-        new Thread(() -> {
-            try { mUpdate.checkNow(); }
-            catch (RemoteException e) { /* ignore */ }
-            mUiHandler.postDelayed(this::refreshStatus, 2_000);
-        }).start();
+        UpdateStatusMonitor.get().checkNow();
     }
 
     private void onInstall() {
-        if (mUpdate == null) return;
         mBtnInstall.setEnabled(false);
-        new Thread(() -> {
-            try { mUpdate.applyUpdate(); }
-            catch (RemoteException e) { /* ignore */ }
-        }).start();
+        UpdateStatusMonitor.get().applyUpdate();
     }
 
     // ── Layout ────────────────────────────────────────────────────────────────
@@ -209,6 +263,11 @@ public class UpdateSettingsActivity extends Activity {
         mTvProgress.setVisibility(View.GONE);
         statusCard.addView(mTvProgress);
 
+        mTvStall = makeLabel("Download has not progressed for a while. "
+                + "Check your connection.", 13, 0xFFCC7700);
+        mTvStall.setVisibility(View.GONE);
+        statusCard.addView(mTvStall);
+
         mTvLastCheck = makeLabel("", 12, 0xFF888888);
         mTvLastCheck.setPadding(0, dp(4), 0, 0);
         statusCard.addView(mTvLastCheck);
@@ -264,23 +323,24 @@ public class UpdateSettingsActivity extends Activity {
         mBtnInstall.setOnClickListener(v -> onInstall());
         root.addView(mBtnInstall);
 
+        // Recent downloads
+        mHistoryCard = new LinearLayout(this);
+        mHistoryCard.setOrientation(LinearLayout.VERTICAL);
+        mHistoryCard.setBackgroundColor(0xFFFFFFFF);
+        mHistoryCard.setPadding(dp(16), dp(12), dp(16), dp(12));
+        mHistoryCard.setLayoutParams(cardParams());
+        mHistoryCard.setVisibility(View.GONE);
+        mHistoryCard.addView(makeLabel("Recent Downloads", 15, 0xFF1A1A2E));
+        mHistoryList = new LinearLayout(this);
+        mHistoryList.setOrientation(LinearLayout.VERTICAL);
+        mHistoryCard.addView(mHistoryList);
+        root.addView(mHistoryCard);
+
         return root;
     }
 
     // ── Helpers ───────────────────────────────────────────────────────────────
 
-    private static String stateName(int state) {
-        switch (state) {
-            case STATE_IDLE:             return "Up to date";
-            case STATE_CHECKING:         return "Checking…";
-            case STATE_DOWNLOADING:      return "Downloading…";
-            case STATE_READY_TO_INSTALL: return "Ready to install";
-            case STATE_INSTALLING:       return "Installing…";
-            case STATE_FAILED:           return "Failed";
-            default:                     return "Unknown";
-        }
-    }
-
     private static int stateColor(int state) {
         switch (state) {
             case STATE_READY_TO_INSTALL: return 0xFF048A81;
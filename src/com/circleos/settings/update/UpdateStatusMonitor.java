@@ -0,0 +1,348 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.update;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.RemoteException;
+import android.util.Slog;
+
+import com.circleos.settings.CircleExecutors;
+import com.circleos.settings.CircleIpc;
+import com.circleos.settings.CircleServices;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import za.co.circleos.update.ICircleUpdateService;
+
+/**
+ * Process-wide source of circle.update status.
+ *
+ * Listeners get one coherent {@link UpdateStatus} at a time on the main
+ * thread, and only when something in it changed. The v1
+ * ICircleUpdateService has no callback registration, so status comes from
+ * {@link PollingSource}, which runs only while someone is listening.
+ * A binder-callback source can replace it behind {@link Source} once the
+ * service can push progress.
+ */
+public final class UpdateStatusMonitor {
+
+    private static final String TAG = "CircleUpdateMonitor";
+
+    public static final int STATE_IDLE             = 0;
+    public static final int STATE_CHECKING         = 1;
+    public static final int STATE_DOWNLOADING      = 2;
+    public static final int STATE_READY_TO_INSTALL = 3;
+    public static final int STATE_INSTALLING       = 4;
+    public static final int STATE_FAILED           = 5;
+
+    /** Receives status changes on the main thread. */
+    public interface Listener {
+        void onUpdateStatus(UpdateStatus status);
+    }
+
+    /** Where status comes from; pushes every observation into {@link #publish}. */
+    interface Source {
+        /** Called once, before any other method. */
+        void attach(UpdateStatusMonitor sink);
+        void start();
+        void stop();
+        /** Asks for a full snapshot as soon as possible. */
+        void refresh();
+    }
+
+    /** Immutable, internally consistent view of the service. */
+    public static final class UpdateStatus {
+        public final int    state;         // -1 until known
+        public final String version;
+        public final int    progress;      // percent, -1 if not downloading
+        public final long   lastCheck;
+        public final String channel;
+        /** Non-null while the service is unavailable; user-facing. */
+        public final String error;
+
+        UpdateStatus(int state, String version, int progress, long lastCheck,
+                String channel, String error) {
+            this.state     = state;
+            this.version   = version;
+            this.progress  = progress;
+            this.lastCheck = lastCheck;
+            this.channel   = channel;
+            this.error     = error;
+        }
+
+        UpdateStatus withProgress(int progress) {
+            return new UpdateStatus(state, version, progress, lastCheck, channel, null);
+        }
+
+        static UpdateStatus error(String reason) {
+            return new UpdateStatus(-1, null, -1, 0, null, reason);
+        }
+
+        boolean sameAs(UpdateStatus o) {
+            return state == o.state && progress == o.progress && lastCheck == o.lastCheck
+                    && Objects.equals(version, o.version) && Objects.equals(channel, o.channel)
+                    && Objects.equals(error, o.error);
+        }
+
+        static final UpdateStatus UNKNOWN = new UpdateStatus(-1, null, -1, 0, null, null);
+    }
+
+    private static final UpdateStatusMonitor sInstance =
+            new UpdateStatusMonitor(new PollingSource());
+
+    private final Handler mMain = new Handler(Looper.getMainLooper());
+    private final List<Listener> mListeners = new ArrayList<>();  // main thread only
+    private final Source mSource;
+    private volatile UpdateStatus mStatus = UpdateStatus.UNKNOWN;
+
+    UpdateStatusMonitor(Source source) {
+        mSource = source;
+        mSource.attach(this);
+    }
+
+    public static UpdateStatusMonitor get() {
+        return sInstance;
+    }
+
+    /** Main thread. Replays the current status if known, then delivers changes. */
+    public void addListener(Listener l) {
+        if (mListeners.contains(l)) return;
+        mListeners.add(l);
+        if (mStatus != UpdateStatus.UNKNOWN) l.onUpdateStatus(mStatus);
+        if (mListeners.size() == 1) mSource.start();
+    }
+
+    /** Main thread. The source stops when the last listener goes. */
+    public void removeListener(Listener l) {
+        if (mListeners.remove(l) && mListeners.isEmpty()) mSource.stop();
+    }
+
+    public void refresh() {
+        mSource.refresh();
+    }
+
+    // ── Commands ─────────────────────────────────────────────────────────────
+
+    public void setChannel(String channel) {
+        command("setChannel", s -> s.setChannel(channel), 0);
+    }
+
+    /** Starts a check; a snapshot follows shortly so the new state shows up. */
+    public void checkNow() {
+        command("checkNow", ICircleUpdateService::checkNow, 2_000);
+    }
+
+    public void applyUpdate() {
+        command("applyUpdate", ICircleUpdateService::applyUpdate, 1_000);
+    }
+
+    private interface Call {
+        void run(ICircleUpdateService service) throws RemoteException;
+    }
+
+    /** Repeated taps while the same command is in flight collapse into one call. */
+    private void command(String name, Call call, long refreshDelayMs) {
+        CircleIpc.enqueue(null, CircleServices.UPDATE, "update." + name, () -> {
+            ICircleUpdateService service = CircleServices.update();
+            if (service == null) return null;
+            try {
+                call.run(service);
+            } catch (RemoteException e) {
+                Slog.w(TAG, name + " failed", e);
+            }
+            CircleExecutors.scheduler().schedule(
+                    mSource::refresh, refreshDelayMs, TimeUnit.MILLISECONDS);
+            return null;
+        }, null);
+    }
+
+    /** Latest status, from any thread. */
+    UpdateStatus current() {
+        return mStatus;
+    }
+
+    /**
+     * Called by the source from any thread. Every observation feeds the
+     * {@link DownloadTracker}; listeners are dispatched only on change.
+     */
+    void publish(UpdateStatus next) {
+        DownloadTracker.get().onStatus(next);
+        if (mStatus.sameAs(next)) return;
+        mStatus = next;
+        mMain.post(() -> {
+            if (mStatus != next) return; // superseded before it was delivered
+            for (Listener l : new ArrayList<>(mListeners)) l.onUpdateStatus(next);
+        });
+    }
+
+    /** User-facing name of a service state. */
+    public static String stateName(int state) {
+        switch (state) {
+            case STATE_IDLE:             return "Up to date";
+            case STATE_CHECKING:         return "Checking…";
+            case STATE_DOWNLOADING:      return "Downloading…";
+            case STATE_READY_TO_INSTALL: return "Ready to install";
+            case STATE_INSTALLING:       return "Installing…";
+            case STATE_FAILED:           return "Failed";
+            default:                     return "Unknown";
+        }
+    }
+
+    static boolean isActive(int state) {
+        return state == STATE_CHECKING || state == STATE_DOWNLOADING || state == STATE_INSTALLING;
+    }
+
+    /**
+     * Polls the service. While idle, takes a full snapshot every
+     * {@link #IDLE_POLL_MS}. While a check, download or install is running,
+     * polls only state and progress every {@link #ACTIVE_POLL_MS}, and takes
+     * a full snapshot whenever the state moves.
+     *
+     * The service has no single snapshot call, so a snapshot reads the state
+     * before and after the other fields and retries if it moved in between.
+     *
+     * Snapshots and polls coalesce under separate keys, so one of each can
+     * be in flight. Each takes a sequence number when it starts reading, and
+     * a result is dropped if one that started later has already been
+     * published; otherwise a slow snapshot could roll the screen back.
+     */
+    static final class PollingSource implements Source, CircleServices.Listener {
+        static final long IDLE_POLL_MS   = 10_000;
+        static final long ACTIVE_POLL_MS = 1_000;
+        static final long POLL_TIMEOUT_MS = 8_000;
+        static final int  SNAPSHOT_TRIES = 3;
+
+        private volatile UpdateStatusMonitor mSink;
+        private ScheduledFuture<?>   mTask;          // guarded by this
+        private boolean              mRunning;       // guarded by this
+        private final AtomicLong     mSeq = new AtomicLong();
+        private long                 mPublishedSeq;  // guarded by mSeq
+
+        /** A hung poll never reschedules itself; keep the cycle going. */
+        private final CircleIpc.Callback<Void> mPollTimedOut = new CircleIpc.Callback<Void>() {
+            @Override public void onResult(Void ignored) {}
+            @Override public void onError(Exception e) {
+                Slog.w(TAG, "Update status poll failed", e);
+                reschedule(IDLE_POLL_MS);
+            }
+        };
+
+        @Override
+        public void attach(UpdateStatusMonitor sink) {
+            mSink = sink;
+        }
+
+        @Override
+        public synchronized void start() {
+            mRunning = true;
+            reschedule(0);
+            CircleServices.addListener(this);
+        }
+
+        @Override
+        public synchronized void stop() {
+            mRunning = false;
+            if (mTask != null) mTask.cancel(false);
+            mTask = null;
+            CircleServices.removeListener(this);
+        }
+
+        @Override
+        public void onServiceDied(String name) {
+            if (CircleServices.UPDATE.equals(name)) refresh();
+        }
+
+        @Override
+        public void onServiceAvailable(String name) {
+            if (CircleServices.UPDATE.equals(name)) refresh();
+        }
+
+        @Override
+        public void refresh() {
+            enqueuePoll(true);
+        }
+
+        private synchronized void reschedule(long delayMs) {
+            if (mTask != null) mTask.cancel(false);
+            mTask = !mRunning ? null : CircleExecutors.scheduler().schedule(
+                    () -> enqueuePoll(false), delayMs, TimeUnit.MILLISECONDS);
+        }
+
+        /** Binder calls run on {@link CircleIpc}; overlapping polls of one kind coalesce. */
+        private void enqueuePoll(boolean forceSnapshot) {
+            CircleIpc.enqueue(null, CircleServices.UPDATE,
+                    forceSnapshot ? "update.snapshot" : "update.poll",
+                    POLL_TIMEOUT_MS, () -> {
+                        poll(forceSnapshot);
+                        return null;
+                    }, mPollTimedOut);
+        }
+
+        private void poll(boolean forceSnapshot) {
+            long seq = mSeq.incrementAndGet();
+            UpdateStatus prev = mSink.current();
+            UpdateStatus next;
+            ICircleUpdateService update = CircleServices.update();
+            if (update == null) {
+                publish(seq, UpdateStatus.error("Service unavailable"));
+                reschedule(IDLE_POLL_MS);
+                return;
+            }
+            try {
+                if (!forceSnapshot && prev.error == null && isActive(prev.state)) {
+                    int state = update.getState();
+                    next = state == prev.state
+                            ? prev.withProgress(state == STATE_DOWNLOADING
+                                    ? update.getDownloadProgress() : -1)
+                            : snapshot(update);
+                } else {
+                    next = snapshot(update);
+                }
+            } catch (RemoteException e) {
+                Slog.w(TAG, "Update status poll failed", e);
+                CircleServices.invalidate(CircleServices.UPDATE);
+                publish(seq, UpdateStatus.error("Error: " + e.getMessage()));
+                reschedule(IDLE_POLL_MS);
+                return;
+            }
+            if (publish(seq, next)) {
+                reschedule(isActive(next.state) ? ACTIVE_POLL_MS : IDLE_POLL_MS);
+            }
+        }
+
+        /**
+         * Publishes unless a read that started after {@code seq} already has.
+         * A dropped result leaves rescheduling to that newer read.
+         */
+        private boolean publish(long seq, UpdateStatus next) {
+            synchronized (mSeq) {
+                if (seq < mPublishedSeq) return false;
+                mPublishedSeq = seq;
+                mSink.publish(next);
+                return true;
+            }
+        }
+
+        private UpdateStatus snapshot(ICircleUpdateService update) throws RemoteException {
+            UpdateStatus s = null;
+            for (int i = 0; i < SNAPSHOT_TRIES; i++) {
+                int    state     = update.getState();
+                String version   = update.getAvailableVersion();
+                int    progress  = state == STATE_DOWNLOADING ? update.getDownloadProgress() : -1;
+                long   lastCheck = update.getLastCheckTime();
+                String channel   = update.getChannel();
+                s = new UpdateStatus(state, version, progress, lastCheck, channel, null);
+                if (update.getState() == state) break;
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * The sliding one-minute counts behind {@link UsageAnomalyDetector}: which
+ * uses fall inside the window, and how slots are shared once full.
+ */
+public class UsageWindowsTest {
+
+    private static final long T      = 1_700_000_000_000L;    // on a bucket boundary
+    private static final long BUCKET = UsageWindows.BUCKET_MS;
+    private static final long WINDOW = UsageWindows.BUCKETS * BUCKET;
+
+    @Test
+    public void offer_countsUsesWithinTheMinute() {
+        UsageWindows w = new UsageWindows(4);
+        for (int i = 1; i <= 300; i++) {
+            assertEquals(i, w.offer("a", T + i * 150L));    // 300 uses in 45 s
+        }
+    }
+
+    @Test
+    public void offer_dropsBucketsOlderThanTheWindow() {
+        UsageWindows w = new UsageWindows(4);
+        for (int b = 0; b < UsageWindows.BUCKETS; b++) {
+            w.offer("a", T + b * BUCKET);
+            w.offer("a", T + b * BUCKET + 1);
+        }
+        // All six buckets hold two uses each
+        assertEquals(13, w.offer("a", T + WINDOW - 1));
+        // The next bucket reuses the first one's slot: its two uses drop out
+        assertEquals(12, w.offer("a", T + WINDOW));
+        // A minute of silence empties the window
+        assertEquals(1, w.offer("a", T + 3 * WINDOW));
+    }
+
+    @Test
+    public void offer_keysCountedApart() {
+        UsageWindows w = new UsageWindows(4);
+        for (int i = 0; i < 10; i++) w.offer("a", T + i);
+        assertEquals(1, w.offer("b", T + 10));
+        assertEquals(11, w.offer("a", T + 11));
+        assertEquals(2, w.size());
+    }
+
+    @Test
+    public void offer_reusesOnlyIdleSlotsOnceFull() {
+        UsageWindows w = new UsageWindows(2);
+        w.offer("a", T);
+        w.offer("b", T + 2 * BUCKET);
+        // Both slots in use within the last minute: the new key is not counted
+        assertEquals(0, w.offer("c", T + 3 * BUCKET));
+        assertEquals(2, w.size());
+
+        // "a" has been idle a whole window; "c" takes its slot from empty
+        assertEquals(1, w.offer("c", T + WINDOW + BUCKET));
+        assertEquals(2, w.offer("b", T + WINDOW + BUCKET));
+        assertEquals(2, w.size());
+
+        // "a" comes back to find "b" and "c" busy
+        assertEquals(0, w.offer("a", T + WINDOW + BUCKET + 1));
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays progress traces from res/traces through {@link DownloadRateEstimator}
+ * with the parameters {@link DownloadTracker} uses. Each trace line is
+ * "elapsed-ms percent", one per status poll.
+ */
+public class DownloadRateEstimatorTest {
+
+    private static final long WINDOW_MS  = 30_000;
+    private static final long STALL_MS   = 60_000;
+    private static final long MAX_GAP_MS = 15_000;
+
+    @Test
+    public void steady_rateAndEtaMatchTransfer() throws IOException {
+        List<long[]> trace = load("steady");
+        DownloadRateEstimator est = newEstimator();
+        for (long[] s : trace) {
+            est.addSample(s[0], s[1]);
+            if (s[1] == 50) {
+                // 1% per 1.2 s: 50% left is about 60 s
+                assertEquals(1 / 1.2, est.rate(s[0]), 0.05);
+                assertEquals(60_000, est.etaMs(s[0]), 5_000);
+            }
+        }
+        long end = last(trace)[0];
+        assertEquals(1 / 1.2, est.averageRate(), 0.02);
+        assertEquals(0, est.retries());
+        assertEquals(0, est.stalls());
+        assertTrue(est.fullyObserved(end));
+    }
+
+    @Test
+    public void stall_countedOnceAndEtaUnknownWhileStuck() throws IOException {
+        List<long[]> trace = load("stall");
+        DownloadRateEstimator est = newEstimator();
+        boolean sawStall = false;
+        for (long[] s : trace) {
+            est.addSample(s[0], s[1]);
+            if (s[0] >= 80_000 && s[0] < 130_000) {
+                // More than a window without progress
+                assertEquals(-1, est.etaMs(s[0]));
+            }
+            if (s[0] >= 105_000 && s[0] < 130_000) {
+                assertTrue(est.isStalled(s[0]));
+                sawStall = true;
+            }
+        }
+        long end = last(trace)[0];
+        assertTrue(sawStall);
+        assertFalse(est.isStalled(end));
+        assertEquals(1, est.stalls());
+        // The flat stretch is observed time too
+        assertEquals(100.0 * 1000 / end, est.averageRate(), 0.01);
+        assertTrue(est.fullyObserved(end));
+    }
+
+    @Test
+    public void retry_countedAndBothAttemptsSummed() throws IOException {
+        List<long[]> trace = load("retry");
+        DownloadRateEstimator est = newEstimator();
+        for (long[] s : trace) {
+            est.addSample(s[0], s[1]);
+            if (est.retries() == 1 && s[1] == 1) {
+                // Window restarted: no rate until a second sample
+                assertEquals(-1, est.etaMs(s[0]));
+            }
+        }
+        assertEquals(1, est.retries());
+        assertEquals(0, est.stalls());
+        // 54% before the restart and 99% after, at 2% per s
+        assertEquals(2.0, est.averageRate(), 0.15);
+        assertTrue(est.fullyObserved(last(trace)[0]));
+    }
+
+    @Test
+    public void gap_excludedFromAverageAndMarksPartial() throws IOException {
+        List<long[]> trace = load("gap");
+        DownloadRateEstimator est = newEstimator();
+        for (long[] s : trace) est.addSample(s[0], s[1]);
+        long end = last(trace)[0];
+
+        // Only the ~100 s the screen was open count, at 1% per 4 s
+        assertTrue(est.observedMs() < 120_000);
+        assertEquals(0.25, est.averageRate(), 0.02);
+        assertFalse(est.fullyObserved(end));
+        assertEquals(0, est.stalls());
+    }
+
+    @Test
+    public void firstSeenPartWay_isPartial() {
+        DownloadRateEstimator est = newEstimator();
+        for (long t = 0; t <= 70_000; t += 1_000) est.addSample(t, 30 + t / 1_000);
+        assertEquals(1.0, est.averageRate(), 0.01);
+        assertFalse(est.fullyObserved(70_000));
+    }
+
+    @Test
+    public void finishedLongAfterLastSample_isPartial() {
+        DownloadRateEstimator est = newEstimator();
+        for (long t = 0; t <= 50_000; t += 1_000) est.addSample(t, t / 1_000);
+        assertTrue(est.fullyObserved(50_000 + MAX_GAP_MS));
+        assertFalse(est.fullyObserved(50_000 + MAX_GAP_MS + 1));
+    }
+
+    private static DownloadRateEstimator newEstimator() {
+        return new DownloadRateEstimator(WINDOW_MS, STALL_MS, 100, MAX_GAP_MS);
+    }
+
+    private static long[] last(List<long[]> trace) {
+        return trace.get(trace.size() - 1);
+    }
+
+    private static List<long[]> load(String name) throws IOException {
+        List<long[]> samples = new ArrayList<>();
+        try (InputStream in = DownloadRateEstimatorTest.class
+                        .getResourceAsStream("/traces/" + name + ".txt");
+                BufferedReader r = new BufferedReader(
+                        new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = r.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) continue;
+                String[] parts = line.split("\\s+");
+                samples.add(new long[] { Long.parseLong(parts[0]), Long.parseLong(parts[1]) });
+            }
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import android.circleos.AppPrivacyPolicy;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Round-trip properties of {@link PolicyBits} over random policies, and
+ * timings of the word form against field-by-field comparison. The timings
+ * are printed for reference only; wall-clock numbers on a shared test host
+ * are too noisy to fail a build on.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PolicyBitsTest {
+
+    private static final int RUNS = 10_000;
+    private static final String[] SENSORS = {
+        "ACCELEROMETER", "GYROSCOPE", "BAROMETER", "MAGNETOMETER",
+        "TEST_HEART_RATE", "TEST_PROXIMITY"         // registered on first use
+    };
+
+    private final Random mRandom = new Random(46);
+
+    @Test
+    public void decodeOfEncode_keepsCodedFields() {
+        for (int i = 0; i < RUNS; i++) {
+            AppPrivacyPolicy p = randomPolicy();
+            AppPrivacyPolicy q = PolicyBits.decode(PolicyBits.encode(p));
+            assertSameGrants(p, q);
+        }
+    }
+
+    @Test
+    public void encodeOfDecode_isIdentity() {
+        for (int i = 0; i < RUNS; i++) {
+            long bits = PolicyBits.encode(randomPolicy());
+            assertEquals(bits, PolicyBits.encode(PolicyBits.decode(bits)));
+        }
+    }
+
+    @Test
+    public void apply_overwritesOnlyCodedFields() {
+        for (int i = 0; i < RUNS; i++) {
+            AppPrivacyPolicy source = randomPolicy();
+            AppPrivacyPolicy target = randomPolicy();
+            PolicyBits.apply(PolicyBits.encode(source), target);
+            assertSameGrants(source, target);
+        }
+    }
+
+    @Test
+    public void noPolicy_roundTripsAsNull() {
+        assertEquals(PolicyBits.NO_POLICY, PolicyBits.encode(null));
+        assertNull(PolicyBits.decode(PolicyBits.NO_POLICY));
+        assertNull(PolicyBits.decode(PolicyBits.NO_POLICY | PolicyBits.NETWORK));
+    }
+
+    @Test
+    public void wordOperations_matchSetAlgebra() {
+        for (int i = 0; i < RUNS; i++) {
+            long before = PolicyBits.encode(randomPolicy());
+            long after = PolicyBits.encode(randomPolicy());
+            long granted = PolicyBits.granted(before, after);
+            long revoked = PolicyBits.revoked(before, after);
+            assertEquals(0, granted & revoked);
+            assertEquals(after, (before | granted) & ~revoked);
+            long flag = 1L << mRandom.nextInt(4);
+            assertTrue(PolicyBits.has(PolicyBits.with(before, flag, true), flag));
+            assertEquals(before & ~flag, PolicyBits.with(before, flag, false));
+        }
+    }
+
+    @Test
+    public void sensorBits_namedAndStable() {
+        for (String sensor : SENSORS) {
+            long bit = PolicyBits.sensorBit(sensor);
+            assertEquals(1, Long.bitCount(bit));
+            assertEquals(0, bit & ~PolicyBits.SENSORS_MASK);
+            assertEquals(sensor, PolicyBits.sensorName(bit));
+            assertEquals(bit, PolicyBits.sensorBit(sensor));
+        }
+        assertEquals(PolicyBits.sensorBit("ACCELEROMETER") << 1, PolicyBits.sensorBit("GYROSCOPE"));
+    }
+
+    @Test
+    public void wordDiff_countsLikeFieldCompare_andReportsTimings() {
+        int n = 2000;
+        AppPrivacyPolicy[] a = new AppPrivacyPolicy[n];
+        AppPrivacyPolicy[] b = new AppPrivacyPolicy[n];
+        for (int i = 0; i < n; i++) {
+            a[i] = randomPolicy();
+            b[i] = randomPolicy();
+        }
+        long[] wa = new long[n];
+        long[] wb = new long[n];
+
+        int rounds = 50;
+        long wordSink = 0, fieldSink = 0;
+        long encodeNs = 0, wordNs = 0, fieldNs = 0;
+        for (int r = 0; r < rounds + 10; r++) {      // the first 10 warm up
+            long t0 = System.nanoTime();
+            for (int i = 0; i < n; i++) {
+                wa[i] = PolicyBits.encode(a[i]);
+                wb[i] = PolicyBits.encode(b[i]);
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < n; i++) wordSink += Long.bitCount(wa[i] ^ wb[i]);
+            long t2 = System.nanoTime();
+            for (int i = 0; i < n; i++) fieldSink += fieldDiff(a[i], b[i]);
+            long t3 = System.nanoTime();
+            if (r < 10) continue;
+            encodeNs += t1 - t0;
+            wordNs   += t2 - t1;
+            fieldNs  += t3 - t2;
+        }
+        long ops = (long) rounds * n;
+        System.out.println("PolicyBits encode=" + (encodeNs / (2 * ops)) + "ns/policy"
+                + " wordDiff=" + (wordNs / ops) + "ns fieldDiff=" + (fieldNs / ops)
+                + "ns");
+        // The sums also keep the loops from being optimized away
+        assertEquals(fieldSink, wordSink);
+    }
+
+    private AppPrivacyPolicy randomPolicy() {
+        AppPrivacyPolicy p = new AppPrivacyPolicy();
+        p.networkAllowed  = mRandom.nextBoolean();
+        p.contactsAllowed = mRandom.nextBoolean();
+        p.storageAllowed  = mRandom.nextBoolean();
+        p.lobbyMode       = mRandom.nextBoolean();
+        p.allowedSensors  = new ArrayList<>();
+        for (String s : SENSORS) {
+            if (mRandom.nextBoolean()) p.allowedSensors.add(s);
+        }
+        return p;
+    }
+
+    private static void assertSameGrants(AppPrivacyPolicy expected, AppPrivacyPolicy actual) {
+        assertEquals(expected.networkAllowed,  actual.networkAllowed);
+        assertEquals(expected.contactsAllowed, actual.contactsAllowed);
+        assertEquals(expected.storageAllowed,  actual.storageAllowed);
+        assertEquals(expected.lobbyMode,       actual.lobbyMode);
+        // Sensors come back in bit order; only membership is coded
+        assertEquals(new HashSet<>(expected.allowedSensors), new HashSet<>(actual.allowedSensors));
+        assertEquals(expected.allowedSensors.size(), actual.allowedSensors.size());
+    }
+
+    /** Number of differing grants, the way a caller without PolicyBits would count them. */
+    private static int fieldDiff(AppPrivacyPolicy a, AppPrivacyPolicy b) {
+        int d = 0;
+        if (a.networkAllowed  != b.networkAllowed)  d++;
+        if (a.contactsAllowed != b.contactsAllowed) d++;
+        if (a.storageAllowed  != b.storageAllowed)  d++;
+        if (a.lobbyMode       != b.lobbyMode)       d++;
+        List<String> as = a.allowedSensors;
+        List<String> bs = b.allowedSensors;
+        for (String s : as) if (!bs.contains(s)) d++;
+        for (String s : bs) if (!as.contains(s)) d++;
+        return d;
+    }
+}
@@ -0,0 +1,266 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings;
+
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.app.Activity;
+import android.content.ContentValues;
+import android.content.Intent;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Looper;
+
+import com.circleos.settings.fake.FakeServices;
+import com.circleos.settings.mesh.MeshSettingsActivity;
+import com.circleos.settings.privacy.AppPrivacyDetailActivity;
+import com.circleos.settings.privacy.AutoRevokePreviewActivity;
+import com.circleos.settings.privacy.PrivacyDashboardActivity;
+import com.circleos.settings.threat.Allowlist;
+import com.circleos.settings.threat.AllowlistActivity;
+import com.circleos.settings.threat.BlockAnalytics;
+import com.circleos.settings.threat.BlockedDomainsActivity;
+import com.circleos.settings.threat.BlocklistOverviewActivity;
+import com.circleos.settings.threat.DomainCheckActivity;
+import com.circleos.settings.threat.ThreatAggregates;
+import com.circleos.settings.threat.ThreatDb;
+import com.circleos.settings.update.UpdateSettingsActivity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.android.controller.ActivityController;
+import org.robolectric.annotation.LooperMode;
+import org.robolectric.shadows.ShadowPackageManager;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Opens every activity in the manifest against {@link FakeServices} and
+ * fails if it takes longer than its budget to show content, or keeps the
+ * main thread busy for longer than its budget on the way.
+ *
+ * Data is sized like a heavily used device: {@link #APPS} user apps with
+ * {@link #AUDIT_RECORDS} audit records between them, and a threat
+ * database, allowlist and block history seeded in a scratch directory.
+ * The app detail screen is also opened with the whole audit log on one app.
+ *
+ * Robolectric's clock does not move on its own, so times are measured
+ * here in real time: from launch until {@link ScreenTimer} reports the
+ * screen's first content, and the part of that spent running the main
+ * looper. Budgets are for a JVM on a build machine, several times what
+ * the screens take there, so a failure means a real regression rather
+ * than a slow run.
+ */
+@RunWith(RobolectricTestRunner.class)
+@LooperMode(LooperMode.Mode.PAUSED)
+public class ScreenBenchmarkTest {
+
+    private static final long LATENCY_MS    = 5;
+    private static final int  APPS          = 2_000;
+    private static final int  AUDIT_RECORDS = 50_000;
+    private static final int  PEERS         = 8;
+
+    /** The fake returns the same number of records for every app. */
+    private static final int  USAGE_RECORDS = AUDIT_RECORDS / APPS;
+
+    private static final int  THREAT_DOMAINS = 50_000;
+    private static final int  ALLOWED        = 50;
+    private static final int  BLOCK_EVENTS   = 50_000;
+
+    /** Give up on a screen that never shows content. */
+    private static final long WAIT_MS = 120_000;
+
+    private final Set<String> mShown = new HashSet<>();
+
+    @BeforeClass
+    public static void seed() throws IOException {
+        FakeServices.enableForTest(LATENCY_MS, USAGE_RECORDS, PEERS);
+
+        File dir = Files.createTempDirectory("circle-threat").toFile();
+        dir.deleteOnExit();
+        ThreatDb.setDirectoryForTest(dir.getPath());
+        String[] sources = { "urlhaus", "stevenblack", "oisd", "local" };
+        String[] categories = { "malware", "phishing", "tracker", "ads" };
+        try (SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(ThreatDb.path(), null)) {
+            db.execSQL("CREATE TABLE " + ThreatDb.TABLE_DOMAINS + " ("
+                    + ThreatDb.COL_DOMAIN + " TEXT UNIQUE, " + ThreatDb.COL_CATEGORY + " TEXT, "
+                    + ThreatDb.COL_SEVERITY + " INTEGER, " + ThreatDb.COL_ADDED_AT + " INTEGER, "
+                    + ThreatDb.COL_SOURCE + " TEXT)");
+            db.beginTransaction();
+            try {
+                ContentValues row = new ContentValues();
+                for (int i = 0; i < THREAT_DOMAINS; i++) {
+                    row.put(ThreatDb.COL_DOMAIN, "host" + i + ".example" + (i % 500) + ".com");
+                    row.put(ThreatDb.COL_CATEGORY, categories[i % categories.length]);
+                    row.put(ThreatDb.COL_SEVERITY, i % 5);
+                    row.put(ThreatDb.COL_ADDED_AT, 1_700_000_000L + i);
+                    row.put(ThreatDb.COL_SOURCE, sources[i % sources.length]);
+                    db.insert(ThreatDb.TABLE_DOMAINS, null, row);
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            ThreatAggregates.ensure(db);
+        }
+        for (int i = 0; i < ALLOWED; i++) Allowlist.add("*.example" + i + ".com");
+
+        for (int i = 0; i < BLOCK_EVENTS; i++) {
+            BlockAnalytics.get().record(10_000 + i % APPS, "host" + (i % 997) + ".example.com");
+        }
+    }
+
+    @Before
+    public void setUp() {
+        ScreenTimer.setListener((screen, ttfcMs, blockedMs) -> mShown.add(screen));
+        ShadowPackageManager pm =
+                shadowOf(RuntimeEnvironment.getApplication().getPackageManager());
+        for (int i = 0; i < APPS; i++) {
+            PackageInfo pi = new PackageInfo();
+            pi.packageName = "com.example.app" + i;
+            pi.applicationInfo = new ApplicationInfo();
+            pi.applicationInfo.packageName = pi.packageName;
+            pi.applicationInfo.uid = 10_000 + i;
+            pm.installPackage(pi);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ScreenTimer.reset();
+    }
+
+    @Test
+    public void hub() throws Exception {
+        measure(CircleSettingsActivity.class, null, "Hub", 1_000, 500);
+    }
+
+    @Test
+    public void privacyDashboard() throws Exception {
+        // Two service calls per app
+        measure(PrivacyDashboardActivity.class, null, "PrivacyDashboard", 20_000, 2_000);
+    }
+
+    @Test
+    public void appPrivacyDetail() throws Exception {
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(),
+                AppPrivacyDetailActivity.class)
+                .putExtra(AppPrivacyDetailActivity.EXTRA_PACKAGE, "com.example.app0");
+        measure(AppPrivacyDetailActivity.class, intent, "AppPrivacyDetail", 1_000, 500);
+    }
+
+    @Test
+    public void appPrivacyDetail_wholeAuditLog() throws Exception {
+        FakeServices.enableForTest(LATENCY_MS, AUDIT_RECORDS, PEERS);
+        try {
+            Intent intent = new Intent(RuntimeEnvironment.getApplication(),
+                    AppPrivacyDetailActivity.class)
+                    .putExtra(AppPrivacyDetailActivity.EXTRA_PACKAGE, "com.example.app1");
+            measure(AppPrivacyDetailActivity.class, intent, "AppPrivacyDetail", 2_000, 1_000);
+        } finally {
+            FakeServices.enableForTest(LATENCY_MS, USAGE_RECORDS, PEERS);
+        }
+    }
+
+    @Test
+    public void autoRevokePreview() throws Exception {
+        // One usage log per app
+        measure(AutoRevokePreviewActivity.class, null, "AutoRevokePreview", 20_000, 1_000);
+    }
+
+    @Test
+    public void meshSettings() throws Exception {
+        measure(MeshSettingsActivity.class, null, "MeshSettings", 1_000, 500);
+    }
+
+    @Test
+    public void updateSettings() throws Exception {
+        measure(UpdateSettingsActivity.class, null, "UpdateSettings", 1_000, 500);
+    }
+
+    @Test
+    public void policyBackup() throws Exception {
+        measure(PolicyBackupActivity.class, null, "PolicyBackup", 1_000, 500);
+    }
+
+    @Test
+    public void policyProfile() throws Exception {
+        measure(PolicyProfileActivity.class, null, "PolicyProfile", 1_000, 500);
+    }
+
+    @Test
+    public void blocklistOverview() throws Exception {
+        measure(BlocklistOverviewActivity.class, null, "BlocklistOverview", 2_000, 500);
+    }
+
+    @Test
+    public void allowlist() throws Exception {
+        measure(AllowlistActivity.class, null, "Allowlist", 2_000, 500);
+    }
+
+    @Test
+    public void blockedDomains() throws Exception {
+        measure(BlockedDomainsActivity.class, null, "BlockedDomains", 2_000, 500);
+    }
+
+    @Test
+    public void domainCheck() throws Exception {
+        measure(DomainCheckActivity.class, null, "DomainCheck", 1_000, 500);
+    }
+
+    @Test
+    public void setupWizard() throws Exception {
+        measure(SetupWizardActivity.class, null, "SetupWizard", 1_000, 500);
+    }
+
+    @Test
+    public void permissionDialog() throws Exception {
+        Intent intent = new Intent(RuntimeEnvironment.getApplication(),
+                CirclePermissionDialog.class)
+                .putExtra(CirclePermissionDialog.EXTRA_PACKAGE_NAME, "com.example.app0")
+                .putExtra(CirclePermissionDialog.EXTRA_PERMISSION, CirclePermissions.NETWORK);
+        measure(CirclePermissionDialog.class, intent, "PermissionDialog", 1_000, 500);
+    }
+
+    private void measure(Class<? extends Activity> activity, Intent intent, String screen,
+            long ttfcBudgetMs, long blockedBudgetMs) throws InterruptedException {
+        Looper main = Looper.getMainLooper();
+        long start = System.nanoTime();
+        ActivityController<? extends Activity> controller =
+                Robolectric.buildActivity(activity, intent).setup();
+        long blocked = System.nanoTime() - start;
+
+        while (!mShown.contains(screen)) {
+            assertTrue(screen + " showed no content in " + WAIT_MS + " ms",
+                    System.nanoTime() - start < WAIT_MS * 1_000_000);
+            Thread.sleep(2);    // let the IPC and background threads run
+            long t = System.nanoTime();
+            shadowOf(main).idle();
+            blocked += System.nanoTime() - t;
+        }
+        long ttfcMs    = (System.nanoTime() - start) / 1_000_000;
+        long blockedMs = blocked / 1_000_000;
+        controller.pause().stop().destroy();
+
+        System.out.println(screen + " ttfc=" + ttfcMs + "ms blocked=" + blockedMs + "ms");
+        assertTrue(screen + " took " + ttfcMs + " ms to show content, budget "
+                + ttfcBudgetMs + " ms", ttfcMs <= ttfcBudgetMs);
+        assertTrue(screen + " blocked the main thread for " + blockedMs + " ms, budget "
+                + blockedBudgetMs + " ms", blockedMs <= blockedBudgetMs);
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/** Saving and restoring {@link MeshHistory}, including across a reboot. */
+@RunWith(RobolectricTestRunner.class)
+public class MeshHistoryTest {
+
+    private static final int  MAGIC   = 0x4D484931;
+    private static final long MINUTE  = 60_000L;
+    private static final long HOUR    = 60 * MINUTE;
+    private static final long WALL    = 1_700_000_000_000L;
+
+    @Test
+    public void restore_keepsOnlyTheLastDay() throws IOException {
+        // One sample every 15 min over 30 h, newest 1 min ago
+        int n = 30 * 4;
+        long[] wall = new long[n];
+        int[] peers = new int[n];
+        for (int i = 0; i < n; i++) {
+            wall[i]  = WALL - MINUTE - (n - 1 - i) * 15 * MINUTE;
+            peers[i] = i % 13;
+        }
+        MeshHistory history = new MeshHistory();
+        history.readFrom(file(wall, peers), WALL, 5 * HOUR);
+
+        long[][] saved = saved(history, WALL, 5 * HOUR);
+        assertEquals(24 * 4, saved.length);
+        for (int k = 0; k < saved.length; k++) {
+            int i = n - saved.length + k;
+            assertEquals(wall[i], saved[k][0]);
+            assertEquals(peers[i], saved[k][1]);
+        }
+    }
+
+    @Test
+    public void restore_acrossReboot_keepsWallTimes() throws IOException {
+        long[] wall = { WALL - 3 * HOUR, WALL - 2 * HOUR, WALL - HOUR };
+        int[] peers = { 4, 5, 6 };
+        MeshHistory before = new MeshHistory();
+        before.readFrom(file(wall, peers), WALL, 100 * HOUR);
+        long[][] saved = saved(before, WALL, 100 * HOUR);
+
+        // Ten minutes later, two minutes after a reboot
+        MeshHistory after = new MeshHistory();
+        after.readFrom(bytes(saved), WALL + 10 * MINUTE, 2 * MINUTE);
+        long[][] again = saved(after, WALL + 10 * MINUTE, 2 * MINUTE);
+        assertEquals(3, again.length);
+        for (int k = 0; k < 3; k++) {
+            assertEquals(wall[k], again[k][0]);
+            assertEquals(peers[k], again[k][1]);
+        }
+    }
+
+    @Test
+    public void restore_dropsSamplesOutOfOrder() throws IOException {
+        long[] wall = { WALL - 3 * HOUR, WALL - 4 * HOUR, WALL - HOUR, WALL - HOUR };
+        int[] peers = { 1, 2, 3, 4 };
+        MeshHistory history = new MeshHistory();
+        history.readFrom(file(wall, peers), WALL, 10 * HOUR);
+        long[][] saved = saved(history, WALL, 10 * HOUR);
+        assertEquals(2, saved.length);
+        assertEquals(1, saved[0][1]);
+        assertEquals(3, saved[1][1]);
+    }
+
+    @Test
+    public void restore_rejectsForeignFile() {
+        try {
+            new MeshHistory().readFrom(new DataInputStream(
+                    new ByteArrayInputStream(new byte[] { 1, 2, 3, 4, 0, 0, 0, 0 })), WALL, HOUR);
+            fail("read a file without the magic number");
+        } catch (IOException expected) {
+        }
+    }
+
+    private static DataInputStream file(long[] wall, int[] peers) throws IOException {
+        long[][] rows = new long[wall.length][];
+        for (int i = 0; i < wall.length; i++) rows[i] = new long[] { wall[i], peers[i], 1 };
+        return bytes(rows);
+    }
+
+    private static DataInputStream bytes(long[][] rows) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(rows.length);
+        for (long[] r : rows) {
+            out.writeLong(r[0]);
+            out.writeInt((int) r[1]);
+            out.writeByte((int) r[2]);
+        }
+        return new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    /** Rows of (wall time, peers, running) as {@code history} would save them. */
+    private static long[][] saved(MeshHistory history, long nowWall, long nowElapsed)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        history.writeTo(new DataOutputStream(bytes), nowWall, nowElapsed);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals(MAGIC, in.readInt());
+        long[][] rows = new long[in.readInt()][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new long[] { in.readLong(), in.readInt(), in.readByte() };
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.mesh;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Replays random join/leave/update/reset deltas into a {@link MeshPeerTable}
+ * and checks it against a map after every drain.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class MeshPeerTableTest {
+
+    private int mQueued;
+
+    @Test
+    public void drain_matchesModel() {
+        Random random = new Random(32);
+        MeshPeerTable table = new MeshPeerTable(() -> mQueued++);
+        Map<Long, long[]> model = new HashMap<>();
+        List<Long> ids = new ArrayList<>();
+
+        for (int round = 0; round < 200; round++) {
+            int deltas = random.nextInt(500);
+            for (int i = 0; i < deltas; i++) {
+                int op = random.nextInt(10);
+                if (op < 5 || ids.isEmpty()) {
+                    // Small id space so joins often hit existing peers and probes collide
+                    long id = random.nextInt(4096) * 0x100000001L;
+                    long seen = random.nextLong();
+                    int signal = -random.nextInt(100);
+                    int hops = random.nextInt(8);
+                    table.onPeerJoined(id, seen, signal, hops);
+                    if (!model.containsKey(id)) ids.add(id);
+                    model.put(id, new long[] { seen, signal, hops });
+                } else if (op < 8) {
+                    long id = ids.get(random.nextInt(ids.size()));
+                    long seen = random.nextLong();
+                    table.onPeerUpdated(id, seen, -1, 1);
+                    model.put(id, new long[] { seen, -1, 1 });
+                } else {
+                    long id = ids.remove(random.nextInt(ids.size()));
+                    table.onPeerLeft(id);
+                    model.remove(id);
+                }
+            }
+            if (round % 50 == 49) {
+                table.onPeersReset();
+                model.clear();
+                ids.clear();
+            }
+            table.drain();
+            assertSame(model, table);
+        }
+        assertTrue(mQueued > 0);
+    }
+
+    @Test
+    public void drain_nothingQueued_reportsNoChange() {
+        MeshPeerTable table = new MeshPeerTable(() -> {});
+        assertFalse(table.drain());
+        table.onPeerJoined(7, 1, -50, 1);
+        assertTrue(table.drain());
+        assertFalse(table.drain());
+        assertEquals(1, table.size());
+    }
+
+    @Test
+    public void leaveOfUnknownPeer_isIgnored() {
+        MeshPeerTable table = new MeshPeerTable(() -> {});
+        table.onPeerJoined(1, 1, -50, 1);
+        table.onPeerLeft(2);
+        table.drain();
+        assertEquals(1, table.size());
+        assertEquals(1, table.idAt(0));
+    }
+
+    private static void assertSame(Map<Long, long[]> model, MeshPeerTable table) {
+        assertEquals(model.size(), table.size());
+        for (int i = 0; i < table.size(); i++) {
+            long[] want = model.get(table.idAt(i));
+            assertTrue("unexpected peer " + table.idAt(i), want != null);
+            assertEquals(want[0], table.lastSeenAt(i));
+            assertEquals(want[1], table.signalAt(i));
+            assertEquals(want[2], table.hopsAt(i));
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2024 CircleOS
+ *
+ * SPDX-License-Identifier: Apache-2.0
+ */
+package com.circleos.settings.privacy;
+
+import static org.junit.Assert.assertEquals;
+
+import android.circleos.AppPrivacyPolicy;
+import android.content.pm.ApplicationInfo;
+
+import com.circleos.settings.PolicyBits;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Measures the heap the dashboard keeps for 2000 apps, in the per-row
+ * object form it used to keep and in the packed cache plus
+ * {@link DashboardSnapshot} it keeps now, and prints both:
+ *
+ *   DashboardHeap apps=2000 objects=... bytes snapshot=... bytes
+ *
+ * Each side is built from the same package names, which both forms share
+ * with the package manager and so are not counted. Retained size is the
+ * difference in used heap, after repeated GCs, between before a form is
+ * built and while it is still referenced.
+ *
+ * That difference depends on the VM and its collector, so the test only
+ * reports the sizes; it fails only if a form loses apps. For numbers to
+ * act on, take a heap dump of the dashboard on a device.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DashboardHeapTest {
+
+    private static final int APPS = 2000;
+    private static final String[] SENSORS = {
+        "ACCELEROMETER", "GYROSCOPE", "BAROMETER", "MAGNETOMETER"
+    };
+
+    /** The row the dashboard used to keep per app. */
+    private static final class OldRow {
+        final ApplicationInfo  app;
+        final int              score;
+        final AppPrivacyPolicy policy;
+
+        OldRow(ApplicationInfo app, int score, AppPrivacyPolicy policy) {
+            this.app    = app;
+            this.score  = score;
+            this.policy = policy;
+        }
+    }
+
+    @Test
+    public void reportRetainedHeap() throws InterruptedException {
+        List<String> packages = new ArrayList<>(APPS);
+        for (int i = 0; i < APPS; i++) packages.add(("com.example.vendor" + i + ".app").intern());
+
+        long before = usedHeap();
+        Map<String, OldRow> rows = buildRows(packages);
+        List<OldRow> sorted = new ArrayList<>(rows.values());
+        sorted.sort((a, b) -> Integer.compare(a.score, b.score));
+        long objectsBytes = usedHeap() - before;
+        assertEquals(APPS, rows.size());        // keeps both live through the measurement
+        assertEquals(APPS, sorted.size());
+        rows = null;
+        sorted = null;
+
+        before = usedHeap();
+        Map<String, Long> summaries = new HashMap<>();
+        Set<String> members = new HashSet<>();
+        for (int i = 0; i < APPS; i++) {
+            String pkg = packages.get(i);
+            summaries.put(pkg, DashboardSnapshot.pack(score(i), PolicyBits.encode(policy(i))));
+            members.add(pkg);
+        }
+        DashboardSnapshot snapshot = DashboardSnapshot.of(Collections.singletonList(0),
+                Collections.singletonMap(0, "This user"),
+                Collections.singletonMap(0, members), summaries);
+        snapshot.byScore();
+        long snapshotBytes = usedHeap() - before;
+        assertEquals(APPS, summaries.size());   // the cache is kept alongside the snapshot
+        assertEquals(APPS, members.size());
+        assertEquals(APPS, snapshot.size());
+
+        System.out.println("DashboardHeap apps=" + APPS + " objects=" + objectsBytes
+                + " bytes snapshot=" + snapshotBytes + " bytes");
+    }
+
+    /** Rows as the old load built them, with ApplicationInfo filled in as the PM does. */
+    private static Map<String, OldRow> buildRows(List<String> packages) {
+        Map<String, OldRow> rows = new HashMap<>();
+        for (int i = 0; i < APPS; i++) {
+            String pkg = packages.get(i);
+            ApplicationInfo app = new ApplicationInfo();
+            app.packageName      = pkg;
+            app.processName      = pkg;
+            app.className        = pkg + ".App";
+            app.sourceDir        = "/data/app/~~" + Integer.toHexString(pkg.hashCode())
+                    + "==/" + pkg + "-" + Integer.toHexString(i * 31) + "==/base.apk";
+            app.publicSourceDir  = app.sourceDir;
+            app.dataDir          = "/data/user/0/" + pkg;
+            app.nativeLibraryDir = "/data/app/~~" + Integer.toHexString(pkg.hashCode())
+                    + "==/" + pkg + "/lib/arm64";
+            app.uid              = 10_000 + i;
+            rows.put(pkg, new OldRow(app, score(i), policy(i)));
+        }
+        return rows;
+    }
+
+    private static int score(int i) {
+        return (i * 37) % 101;
+    }
+
+    private static AppPrivacyPolicy policy(int i) {
+        AppPrivacyPolicy p = new AppPrivacyPolicy();
+        p.networkAllowed  = i % 2 == 0;
+        p.contactsAllowed = i % 3 == 0;
+        p.storageAllowed  = i % 5 == 0;
+        p.lobbyMode       = i % 7 == 0;
+        p.allowedSensors  = new ArrayList<>();
+        for (int s = 0; s < SENSORS.length; s++) {
+            if ((i >> s & 1) != 0) p.allowedSensors.add(SENSORS[s]);
+        }
+        return p;
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime rt = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(20);
+            used = Math.min(used, rt.totalMemory() - rt.freeMemory());
+        }
+        return used;
+    }
+}